@@ -0,0 +1,109 @@
+package simpledb.buffer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes dirty buffers to disk before they are needed for other blocks.
+ * <p>
+ * Without the writer, a miss whose victim is dirty has to force the
+ * log and write out the victim's block before it can read its own.
+ * The writer's threads go round the partitions of the pool and, in
+ * each partition, write the dirty buffers among the next victims of
+ * its replacement policy, so that the next {@link #CLEAN_FRACTION}
+ * of the partition's buffers to be replaced are clean and a miss
+ * only pays for its read. A buffer is written the same way a miss
+ * would write it, forcing the log up to the buffer's LSN first,
+ * so the write-ahead rule holds. The partition is not locked
+ * during the write; instead the buffer is frozen, so that a
+ * thread that needs that very buffer waits for the write.
+ * <p>
+ * Each thread looks after its share of the partitions, every
+ * {@link #DELAY_MS} milliseconds, or sooner when a miss in one of
+ * them found a dirty victim. The threads are daemons.
+ */
+public class BackgroundWriter {
+    /**
+     * The share of each partition's buffers, taken in victim
+     * order, that the writer tries to keep clean
+     */
+    public static double CLEAN_FRACTION = 0.25;
+    /**
+     * How long a thread sleeps between rounds, in milliseconds
+     */
+    public static long DELAY_MS = 100;
+    private final BufferMgr bm;
+    private final Thread[] threads;
+    private final AtomicLong written = new AtomicLong();
+    private volatile boolean stopped = false;
+
+    /**
+     * Starts the specified number of threads that write
+     * the dirty buffers of the specified pool.
+     *
+     * @param bm       the buffer manager of the pool
+     * @param nthreads the number of writer threads
+     */
+    BackgroundWriter(BufferMgr bm, int nthreads) {
+        this.bm = bm;
+        threads = new Thread[Math.max(1, Math.min(nthreads, bm.partitionCount()))];
+        for (int t = 0; t < threads.length; t++) {
+            int first = t;
+            threads[t] = new Thread(() -> run(first), "background-writer-" + t);
+            threads[t].setDaemon(true);
+            threads[t].start();
+        }
+    }
+
+    /**
+     * Returns the number of buffers the writer has written so far.
+     *
+     * @return the number of buffers written
+     */
+    public long written() {
+        return written.get();
+    }
+
+    /**
+     * Makes the thread that looks after the specified
+     * partition start its next round right away.
+     *
+     * @param partition the index of the partition
+     */
+    void wakeup(int partition) {
+        LockSupport.unpark(threads[partition % threads.length]);
+    }
+
+    /**
+     * Stops the threads and waits for them to finish
+     * the buffer they are writing.
+     */
+    void stop() {
+        stopped = true;
+        for (Thread t : threads) {
+            LockSupport.unpark(t);
+        }
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void run(int first) {
+        while (!stopped) {
+            for (int p = first; p < bm.partitionCount() && !stopped; p += threads.length) {
+                try {
+                    written.addAndGet(bm.cleanAhead(p, CLEAN_FRACTION));
+                } catch (RuntimeException e) {
+                    // the buffer stays dirty, and the miss that replaces it writes it
+                    e.printStackTrace();
+                }
+            }
+            LockSupport.parkNanos(DELAY_MS * 1000000);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package simpledb.buffer;
+
+import simpledb.file.BlockId;
+import simpledb.file.FileMgr;
+import simpledb.file.Page;
+import simpledb.log.LogMgr;
+import simpledb.server.SimpleDB;
+
+import java.util.Random;
+
+/**
+ * Compares the cost of a pin that misses with and without the
+ * background writer. A transaction modifies random blocks of a
+ * file four times as large as the pool, so nearly every pin
+ * misses and finds a dirty victim unless the writer has cleaned
+ * it. Between two modifications the transaction does some work
+ * of its own, which gives the writer time to run.
+ * At the end the buffers are flushed and every block is read
+ * back from disk and checked.
+ */
+public class BackgroundWriterTest {
+    private static final int POOL_SIZE = 256;
+    private static final int NUM_BLOCKS = 1024;
+    private static final int OPS = 20000;
+    private static final int TXNUM = 1;
+    /**
+     * Keeps the compiler from dropping the transaction's own work
+     */
+    private static long sink;
+
+    public static void main(String[] args) {
+        int defaultThreads = SimpleDB.BG_WRITER_THREADS;
+        for (int threads : new int[]{0, 1}) {
+            SimpleDB.BG_WRITER_THREADS = threads;
+            SimpleDB db = new SimpleDB("backgroundwritertest-" + threads, 400, POOL_SIZE);
+            FileMgr fm = db.fileMgr();
+            LogMgr lm = db.logMgr();
+            BufferMgr bm = db.bufferMgr();
+            while (fm.length("testfile") < NUM_BLOCKS) {
+                fm.append("testfile");
+            }
+
+            int[] expected = new int[NUM_BLOCKS];
+            Random rand = new Random(0);
+            long pinNanos = 0;
+            long work = 0;
+            for (int i = 1; i <= OPS; i++) {
+                int b = rand.nextInt(NUM_BLOCKS);
+                long start = System.nanoTime();
+                Buffer buff = bm.pin(new BlockId("testfile", b));
+                pinNanos += System.nanoTime() - start;
+                buff.contents().setInt(0, i);
+                int lsn = lm.append(new byte[]{(byte) i});
+                buff.setModified(TXNUM, lsn);
+                bm.unpin(buff);
+                expected[b] = i;
+                for (int j = 0; j < 100000; j++) {
+                    work += j ^ i;
+                }
+            }
+            bm.flushAll(TXNUM);
+            long written = threads > 0 ? bm.startWriter(threads).written() : 0;
+            bm.stopWriter();
+
+            int errors = 0;
+            Page p = new Page(fm.blockSize());
+            for (int b = 0; b < NUM_BLOCKS; b++) {
+                fm.read(new BlockId("testfile", b), p);
+                if (p.getInt(0) != expected[b]) {
+                    errors++;
+                }
+            }
+            System.out.println(threads + " writer threads: " + pinNanos / OPS + " ns/pin, "
+                    + written + " buffers written in the background, " + errors + " errors");
+            sink += work;
+        }
+        SimpleDB.BG_WRITER_THREADS = defaultThreads;
+    }
+}
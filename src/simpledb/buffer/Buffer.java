@@ -3,8 +3,12 @@ package simpledb.buffer;
 import simpledb.file.BlockId;
 import simpledb.file.FileMgr;
 import simpledb.file.Page;
+import simpledb.file.PageArena;
 import simpledb.log.LogMgr;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 /**
  * An individual buffer. A databuffer wraps a page
  * and stores information about its status,
@@ -19,18 +23,66 @@ public class Buffer {
     private FileMgr fm;
     private LogMgr lm;
     private Page contents;
+    /**
+     * The page the buffer was created with, which
+     * it uses again for blocks of the default size.
+     */
+    private final Page frame;
+    /**
+     * The arena that lends the buffer pages of other sizes,
+     * or null if the buffer allocates them itself
+     */
+    private final PageArena arena;
+    /**
+     * The buffer manager to tell when a transaction first modifies
+     * the buffer, or null if the buffer is not part of a pool
+     */
+    private final BufferMgr owner;
     private BlockId blk = null;
     private int pins = 0;
-    private int txnum = -1;
+    private volatile int txnum = -1;
     private int lsn = -1;
+    /**
+     * The read that is loading the block into the page,
+     * or null if the page is already loaded.
+     */
+    private volatile CompletableFuture<Void> pendingLoad = null;
+    /**
+     * The background write of the page, or null if none is in progress.
+     * While it is in progress the buffer is frozen: pinning,
+     * reassigning, flushing or discarding it waits for the write.
+     */
+    private volatile CompletableFuture<Void> pendingWrite = null;
 
     public Buffer(FileMgr fm, LogMgr lm) {
+        this(fm, lm, fm.newPage(fm.blockSize()), null, null);
+    }
+
+    /**
+     * Creates a buffer that holds its blocks in the specified page,
+     * such as a frame of the pool's {@link simpledb.file.PageArena}.
+     *
+     * @param frame a page of the default block size
+     * @param arena the arena to borrow pages of other sizes from
+     * @param owner the buffer manager of the pool the buffer is part of
+     */
+    Buffer(FileMgr fm, LogMgr lm, Page frame, PageArena arena, BufferMgr owner) {
         this.fm = fm;
         this.lm = lm;
-        contents = new Page(fm.blockSize());
+        this.frame = frame;
+        this.arena = arena;
+        this.owner = owner;
+        contents = frame;
     }
 
+    /**
+     * Returns the buffer's page, first waiting for
+     * the block to finish loading if necessary.
+     *
+     * @return the buffer's page
+     */
     public Page contents() {
+        awaitLoad();
         return contents;
     }
 
@@ -44,7 +96,29 @@ public class Buffer {
         return blk;
     }
 
+    /**
+     * Returns the size of the buffer's page,
+     * which is the block size of the last block
+     * assigned to the buffer.
+     *
+     * @return the size of the page in bytes
+     */
+    int pageSize() {
+        return contents.size();
+    }
+
+    /**
+     * Records that the specified transaction modified the page.
+     * The first modification by a transaction is reported to the
+     * buffer manager, so that the transaction's commit can find
+     * the buffer without scanning the pool.
+     *
+     * @param txnum the id of the modifying transaction
+     * @param lsn   the LSN of the log record of the change, or a negative value if none
+     */
     public void setModified(int txnum, int lsn) {
+        if (txnum != this.txnum && owner != null)
+            owner.modifiedBy(txnum, this);
         this.txnum = txnum;
         if (lsn >= 0)
             this.lsn = lsn;
@@ -65,24 +139,74 @@ public class Buffer {
     }
 
     /**
-     * Reads the contents of the specified block into
+     * Starts reading the contents of the specified block into
      * the contents of the buffer.
      * If the buffer was dirty, then its previous contents
      * are first written to disk.
+     * The method does not wait for the read to complete;
+     * the first call to {@link #contents()} does.
+     * With a synchronous file manager the read is
+     * already complete when this method returns.
      *
      * @param b a reference to the data block
      */
     void assignToBlock(BlockId b) {
+        bindToBlock(b);
+        pendingLoad = fm.readAsync(blk, contents);
+    }
+
+    /**
+     * Associates the buffer with the specified block
+     * without reading the block's contents.
+     * If the buffer was dirty, then its previous contents
+     * are first written to disk.
+     * The caller is responsible for loading the page,
+     * as the buffer manager does when it reads several
+     * consecutive blocks with one call.
+     * If the block's file has a different block size
+     * than the current page, a page of the right size
+     * replaces it; for the default size, that is the
+     * buffer's own frame again, and other sizes are
+     * borrowed from the arena and given back to it.
+     *
+     * @param b a reference to the data block
+     */
+    void bindToBlock(BlockId b) {
+        awaitLoad();
+        awaitWrite();
         flush();
+        int size = fm.blockSize(b.fileName());
+        if (contents.size() != size) {
+            if (contents != frame && arena != null) {
+                arena.give(contents);
+            }
+            if (size == frame.size()) {
+                contents = frame;
+            } else {
+                contents = arena != null ? arena.take(size) : fm.newPage(size);
+            }
+        }
         blk = b;
-        fm.read(blk, contents);
         pins = 0;
     }
 
+    /**
+     * Records the read that is loading the block into the page
+     * of a buffer bound with {@link #bindToBlock(BlockId)},
+     * as the buffer manager does when it prefetches blocks.
+     * The first call to {@link #contents()} waits for the read.
+     *
+     * @param load the read of the block
+     */
+    void loadInBackground(CompletableFuture<Void> load) {
+        pendingLoad = load;
+    }
+
     /**
      * Write the buffer to its disk block if it is dirty.
      */
     void flush() {
+        awaitWrite();
         if (txnum >= 0) {
             lm.flush(lsn);
             fm.write(blk, contents);
@@ -90,10 +214,87 @@ public class Buffer {
         }
     }
 
+    /**
+     * Detaches the buffer from its block without writing it,
+     * because the block's file is being deleted.
+     */
+    void discard() {
+        awaitLoad();
+        awaitWrite();
+        blk = null;
+        txnum = -1;
+    }
+
+    /**
+     * Freezes the buffer for a background write, if it is
+     * unpinned and dirty and not being written already.
+     * Called while holding the lock of the buffer's partition,
+     * so that nobody can pin the buffer in between.
+     *
+     * @return true if the buffer must now be written with {@link #completeWrite()}
+     */
+    boolean beginWrite() {
+        if (pins > 0 || txnum < 0 || pendingWrite != null) {
+            return false;
+        }
+        pendingWrite = new CompletableFuture<>();
+        return true;
+    }
+
+    /**
+     * Writes the frozen buffer to its disk block, forcing the log
+     * first, and unfreezes it. Called without holding any lock:
+     * while the buffer is frozen, nobody else reads or changes
+     * its block, page, or modification status.
+     */
+    void completeWrite() {
+        try {
+            lm.flush(lsn);
+            fm.write(blk, contents);
+            txnum = -1;
+        } finally {
+            CompletableFuture<Void> write = pendingWrite;
+            pendingWrite = null;
+            write.complete(null);
+        }
+    }
+
+    /**
+     * Waits until the background write of the page, if any, is done.
+     */
+    private void awaitWrite() {
+        CompletableFuture<Void> write = pendingWrite;
+        if (write != null) {
+            write.join();
+        }
+    }
+
+    /**
+     * Waits until the page has been loaded from disk.
+     * A failed read is reported as a RuntimeException.
+     */
+    private void awaitLoad() {
+        CompletableFuture<Void> load = pendingLoad;
+        if (load == null) {
+            return;
+        }
+        try {
+            load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        } finally {
+            pendingLoad = null;
+        }
+    }
+
     /**
      * Increase the buffer's pin count.
      */
     void pin() {
+        awaitWrite();
         pins++;
     }
 
@@ -0,0 +1,130 @@
+package simpledb.buffer;
+
+import simpledb.file.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The buffer pool statistics of one file: how its pins fared,
+ * how many of its blocks were evicted, and how long its pins
+ * waited for buffers.
+ * <p>
+ * The counters are LongAdders, so concurrent pins in different
+ * partitions do not contend on them.
+ */
+public class BufferFileStats {
+    private final String fileName;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder prefetches = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder dirtyEvictions = new LongAdder();
+    private final LongAdder aborts = new LongAdder();
+    private final LatencyHistogram pinWaits = new LatencyHistogram();
+
+    public BufferFileStats(String fileName) {
+        this.fileName = fileName;
+    }
+
+    /**
+     * Records a pin that found its block buffered,
+     * including a block that is still being prefetched.
+     */
+    void recordHit() {
+        hits.increment();
+    }
+
+    /**
+     * Records a pin that had to read its block.
+     */
+    void recordMiss() {
+        misses.increment();
+    }
+
+    /**
+     * Records a block read ahead of the pins that will want it.
+     */
+    void recordPrefetch() {
+        prefetches.increment();
+    }
+
+    /**
+     * Records that a block of the file was replaced by another.
+     *
+     * @param dirty true if the buffer had to be written first
+     */
+    void recordEviction(boolean dirty) {
+        evictions.increment();
+        if (dirty) {
+            dirtyEvictions.increment();
+        }
+    }
+
+    /**
+     * Records a pin that threw a {@link BufferAbortException}.
+     */
+    void recordAbort() {
+        aborts.increment();
+    }
+
+    /**
+     * Records how long a pin waited for a buffer.
+     *
+     * @param nanos the waiting time
+     */
+    void recordPinWait(long nanos) {
+        pinWaits.record(nanos);
+    }
+
+    public String fileName() {
+        return fileName;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long prefetches() {
+        return prefetches.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the number of evictions that wrote the buffer first
+     */
+    public long dirtyEvictions() {
+        return dirtyEvictions.sum();
+    }
+
+    public long aborts() {
+        return aborts.sum();
+    }
+
+    public LatencyHistogram pinWaits() {
+        return pinWaits;
+    }
+
+    public void reset() {
+        hits.reset();
+        misses.reset();
+        prefetches.reset();
+        evictions.reset();
+        dirtyEvictions.reset();
+        aborts.reset();
+        pinWaits.reset();
+    }
+
+    @Override
+    public String toString() {
+        return fileName + ": hits=" + hits() + " misses=" + misses() + " prefetches=" + prefetches()
+                + " evictions=" + evictions() + " (" + dirtyEvictions() + " dirty) aborts=" + aborts()
+                + " pin waits (" + pinWaits + ")";
+    }
+}
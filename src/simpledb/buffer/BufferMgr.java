@@ -2,142 +2,1016 @@ package simpledb.buffer;
 
 import simpledb.file.BlockId;
 import simpledb.file.FileMgr;
+import simpledb.file.LatencyHistogram;
+import simpledb.file.Page;
+import simpledb.file.PageArena;
 import simpledb.log.LogMgr;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
  * Manages the pinning and unpinning of buffers to blocks.
+ * <p>
+ * The pool is split into partitions, and each block belongs to
+ * the partition chosen by hashing its BlockId. A partition has
+ * its own buffers, page table, {@link ReplacementPolicy}, lock and
+ * queue of waiting threads, so pins of blocks in different
+ * partitions do not contend with each other, and an unpin only
+ * wakes the threads waiting for a buffer of its own partition.
+ * Within a partition, a page table maps each buffered block to its
+ * buffer, so finding a buffered block takes constant time.
+ * <p>
+ * A pin that finds no available buffer in its partition waits
+ * in the partition's line of waiting threads. The threads get
+ * the buffers in the order in which they started waiting: an unpin
+ * wakes only the first thread in line, and only if there are enough
+ * available buffers for it, and a miss never takes a buffer while
+ * other threads are waiting. A pin of a block that is already
+ * buffered does not need a free buffer, so it never waits.
+ * <p>
+ * A block can only use the buffers of its own partition, so a
+ * pool is split only if every partition gets at least
+ * {@link #MIN_PARTITION_SIZE} buffers; small pools have a
+ * single partition.
+ * <p>
+ * When the blocks of a file are pinned in order, the buffer
+ * manager prefetches the blocks that follow in the background,
+ * see {@link #PREFETCH_BLOCKS}; clients that know which blocks
+ * they are about to read can also ask for them with
+ * {@link #prefetch(BlockId, int)}.
+ * <p>
+ * A scan that reads or writes each block of a large file once can
+ * pin its blocks through a {@link BufferRing}, see {@link #newRing()},
+ * so that it reuses a few buffers of its own instead of pushing
+ * the other blocks out of the pool.
+ * <p>
+ * The pages of the buffers are frames of a single {@link PageArena},
+ * allocated when the pool is created, so that even a very large
+ * pool takes a few allocations of off-heap memory.
  *
  * @author Edward Sciore
  */
 public class BufferMgr {
-    private Buffer[] bufferPool;
-    private int numAvailable;
-    private static final long MAX_TIME = 10000; // 10 seconds
+    /**
+     * The largest number of partitions of a pool
+     */
+    public static int PARTITIONS = 16;
+    /**
+     * The smallest number of buffers of a partition
+     */
+    public static int MIN_PARTITION_SIZE = 64;
+    /**
+     * Consecutive blocks are assigned to partitions in groups of
+     * this size, so that a read-ahead run mostly falls into one
+     * partition and is read with one scatter read
+     */
+    private static final int PARTITION_RUN = 8;
+    /**
+     * How many blocks ahead of a sequential scan to prefetch;
+     * 0 turns the detection of sequential scans off
+     */
+    public static int PREFETCH_BLOCKS = 16;
+    /**
+     * The largest number of blocks prefetched with one background scatter read
+     */
+    private static final int PREFETCH_BATCH = 8;
+    /**
+     * How long a pin waits for a buffer before giving up
+     * with a {@link BufferAbortException}
+     */
+    public static long MAX_WAIT_MILLIS = 10000;
+    private FileMgr fm;
+    private int numbuffs;
+    private Partition[] partitions;
+    private AtomicInteger numAvailable;
+    private volatile BackgroundWriter writer;
+    /**
+     * Detects sequential scans, or null if PREFETCH_BLOCKS was 0
+     */
+    private SequentialDetector detector;
+    private final BufferStats stats = new BufferStats(this);
+    /**
+     * The buffers each transaction has modified since its last
+     * {@link #flushAll(int)}. A buffer stays in the set after it is
+     * written or reassigned; flushAll skips it then.
+     */
+    private final Map<Integer, Set<Buffer>> dirtyByTx = new ConcurrentHashMap<>();
 
     /**
      * Creates a buffer manager having the specified number
-     * of buffer slots.
+     * of buffer slots, which replaces the least recently
+     * unpinned buffer.
      * This constructor depends on a {@link FileMgr} and
      * {@link LogMgr LogMgr} object.
      *
      * @param numbuffs the number of buffer slots to allocate
      */
     public BufferMgr(FileMgr fm, LogMgr lm, int numbuffs) {
-        bufferPool = new Buffer[numbuffs];
-        numAvailable = numbuffs;
-        for (int i = 0; i < numbuffs; i++) {
-            bufferPool[i] = new Buffer(fm, lm);
+        this(fm, lm, numbuffs, ReplacementPolicy.Kind.LRU);
+    }
+
+    /**
+     * Creates a buffer manager having the specified number
+     * of buffer slots, each partition of which uses a
+     * replacement policy of the specified kind.
+     *
+     * @param numbuffs the number of buffer slots to allocate
+     * @param policy   the kind of policy that chooses the buffers to replace
+     */
+    public BufferMgr(FileMgr fm, LogMgr lm, int numbuffs, ReplacementPolicy.Kind policy) {
+        this.fm = fm;
+        this.numbuffs = numbuffs;
+        numAvailable = new AtomicInteger(numbuffs);
+        if (PREFETCH_BLOCKS > 0) {
+            detector = new SequentialDetector(PREFETCH_BLOCKS);
+        }
+        PageArena arena = fm.newArena(numbuffs);
+        int n = Math.max(1, Math.min(PARTITIONS, numbuffs / MIN_PARTITION_SIZE));
+        partitions = new Partition[n];
+        for (int i = 0, next = 0; i < n; i++) {
+            // the first numbuffs % n partitions get one buffer more
+            int size = numbuffs / n + (i < numbuffs % n ? 1 : 0);
+            Buffer[] frames = new Buffer[size];
+            for (int j = 0; j < size; j++) {
+                frames[j] = new Buffer(fm, lm, arena.frame(next++), arena, this);
+            }
+            partitions[i] = new Partition(i, frames, policy.newPolicy());
+        }
+    }
+
+    /**
+     * Starts a {@link BackgroundWriter} that keeps the next victims
+     * of each partition clean, unless one is already running.
+     *
+     * @param nthreads the number of writer threads
+     * @return the background writer
+     */
+    public synchronized BackgroundWriter startWriter(int nthreads) {
+        if (writer == null) {
+            writer = new BackgroundWriter(this, nthreads);
+        }
+        return writer;
+    }
+
+    /**
+     * Stops the background writer, if one is running.
+     * Misses then write their dirty victims themselves.
+     */
+    public synchronized void stopWriter() {
+        if (writer != null) {
+            writer.stop();
+            writer = null;
+        }
+    }
+
+    /**
+     * Creates a ring for a scan that reads or writes each block
+     * of a large file once. The ring reuses at most
+     * {@link BufferRing#SIZE} buffers, spread over the partitions,
+     * but never more than a quarter of a partition.
+     *
+     * @return a new buffer ring
+     */
+    public BufferRing newRing() {
+        int n = partitions.length;
+        int perPartition = Math.max(BufferRing.SIZE / n, 2 * PARTITION_RUN);
+        return new BufferRing(n, Math.max(1, Math.min(perPartition, numbuffs / n / 4)));
+    }
+
+    /**
+     * @return the number of buffers in the pool
+     */
+    public int poolSize() {
+        return numbuffs;
+    }
+
+    /**
+     * Returns the blocks held by the pool, the hottest first.
+     * Within a partition, the pinned blocks come first, followed by
+     * the unpinned ones in the reverse of the order in which the
+     * replacement policy would replace them; the partitions take
+     * turns, so that any prefix of the list is spread over them.
+     * Each partition is locked only while its blocks are listed.
+     *
+     * @return the blocks in the pool, hottest first
+     */
+    public List<BlockId> residentBlocks() {
+        List<List<BlockId>> lists = new ArrayList<>();
+        for (Partition part : partitions) {
+            List<BlockId> blocks = new ArrayList<>();
+            part.lock.lock();
+            try {
+                for (Buffer buff : part.frames) {
+                    if (buff.isPinned()) {
+                        blocks.add(buff.block());
+                    }
+                }
+                List<Buffer> victims = part.policy.nextVictims(part.frames.length);
+                for (int i = victims.size() - 1; i >= 0; i--) {
+                    blocks.add(victims.get(i).block());
+                }
+            } finally {
+                part.lock.unlock();
+            }
+            lists.add(blocks);
+        }
+        List<BlockId> result = new ArrayList<>();
+        for (int i = 0; result.size() < numbuffs; i++) {
+            boolean more = false;
+            for (List<BlockId> blocks : lists) {
+                if (i < blocks.size()) {
+                    result.add(blocks.get(i));
+                    more = true;
+                }
+            }
+            if (!more) {
+                break;
+            }
         }
+        return result;
     }
 
     /**
-     * Returns the number of available (i.e. unpinned) buffers.
+     * @return the statistics of the pool
+     */
+    public BufferStats stats() {
+        return stats;
+    }
+
+    /**
+     * Returns how long the pins that had to wait for a buffer waited,
+     * whether they got one or not. Pins that did not wait are not recorded.
+     *
+     * @return the histogram of the waiting times
+     */
+    public LatencyHistogram pinWaits() {
+        return stats.pinWaits();
+    }
+
+    /**
+     * @return the number of pins that gave up waiting for a buffer
+     */
+    public long pinTimeouts() {
+        return stats.getPinTimeouts();
+    }
+
+    /**
+     * Returns the number of available (i.e. unpinned) buffers
+     * in the whole pool.
      *
      * @return the number of available buffers
      */
-    public synchronized int available() {
-        return numAvailable;
+    public int available() {
+        return numAvailable.get();
     }
 
     /**
-     * Flushes the dirty buffers modified by the specified transaction.
+     * Returns how many of the specified number of consecutive
+     * blocks, starting at the specified block, could be pinned
+     * right now without waiting, counting from the first block.
+     * Every block counts as needing an available buffer of its
+     * partition, even if it is already buffered, so the answer
+     * errs on the low side.
+     * The partitions are not locked, so the answer is only a hint,
+     * as is that of {@link #available()}.
+     *
+     * @param first a reference to the first disk block
+     * @param count the number of consecutive blocks
+     * @return the length of the longest run of blocks that could be pinned
+     */
+    public int available(BlockId first, int count) {
+        int[] needed = new int[partitions.length];
+        for (int i = 0; i < count; i++) {
+            int p = partitionIndex(new BlockId(first.fileName(), first.number() + i));
+            if (++needed[p] > partitions[p].available) {
+                return i;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Flushes the dirty buffers modified by the specified transaction,
+     * then forces any file writes the file manager has not yet
+     * synced to disk. Only the buffers the transaction has modified
+     * are visited, so the cost depends on the size of the transaction
+     * and not on the size of the pool. Each buffer is flushed
+     * holding the lock of its partition only.
+     * The sync happens outside the partition locks,
+     * so other threads can keep pinning while the disk catches up.
      *
      * @param txnum the transaction's id number
      */
-    public synchronized void flushAll(int txnum) {
-        for (Buffer buff : bufferPool) {
-            if (buff.modifyingTx() == txnum) {
-                buff.flush();
+    public void flushAll(int txnum) {
+        Set<Buffer> dirty = dirtyByTx.remove(txnum);
+        if (dirty != null) {
+            for (Buffer buff : dirty) {
+                BlockId blk = buff.block();
+                if (blk == null || buff.modifyingTx() != txnum) {
+                    continue;
+                }
+                Partition part = partitionOf(blk);
+                part.lock.lock();
+                try {
+                    // a buffer that was reassigned meanwhile was written first
+                    if (blk.equals(buff.block()) && buff.modifyingTx() == txnum) {
+                        buff.flush();
+                    }
+                } finally {
+                    part.lock.unlock();
+                }
+            }
+        }
+        fm.syncAll();
+    }
+
+    /**
+     * Records that the specified transaction has started
+     * modifying the buffer, for {@link #flushAll(int)}.
+     *
+     * @param txnum the id of the modifying transaction
+     * @param buff  the modified buffer
+     */
+    void modifiedBy(int txnum, Buffer buff) {
+        dirtyByTx.computeIfAbsent(txnum, k -> ConcurrentHashMap.newKeySet()).add(buff);
+    }
+
+    /**
+     * Writes the dirty buffers assigned to blocks of the specified file,
+     * whichever transaction modified them. The writes are not synced.
+     *
+     * @param fileName the name of the file
+     */
+    public void flushFile(String fileName) {
+        for (Partition part : partitions) {
+            part.lock.lock();
+            try {
+                for (Buffer buff : part.frames) {
+                    BlockId b = buff.block();
+                    if (b != null && b.fileName().equals(fileName)) {
+                        buff.flush();
+                    }
+                }
+            } finally {
+                part.lock.unlock();
             }
         }
     }
 
+    /**
+     * Detaches the unpinned buffers assigned to blocks of the
+     * specified file without writing them, so that they are
+     * never written to the file after it has been deleted.
+     *
+     * @param fileName the name of the file
+     */
+    public void discard(String fileName) {
+        for (Partition part : partitions) {
+            part.lock.lock();
+            try {
+                for (Buffer buff : part.frames) {
+                    BlockId b = buff.block();
+                    if (b != null && b.fileName().equals(fileName) && !buff.isPinned()) {
+                        part.pageTable.remove(b);
+                        buff.discard();
+                        part.policy.discarded(buff);
+                    }
+                }
+            } finally {
+                part.lock.unlock();
+            }
+        }
+        if (detector != null) {
+            detector.forget(fileName);
+        }
+    }
+
     /**
      * Unpins the specified data buffer. If its pin count
-     * goes to zero, then notify any waiting threads.
+     * goes to zero, then wake the threads waiting for
+     * a buffer of its partition.
      *
      * @param buff the buffer to be unpinned
      */
-    public synchronized void unpin(Buffer buff) {
-        buff.unpin();
-        if (!buff.isPinned()) {
-            numAvailable++;
-            notifyAll();
+    public void unpin(Buffer buff) {
+        Partition part = partitionOf(buff.block());
+        part.lock.lock();
+        try {
+            part.unpin(buff);
+        } finally {
+            part.lock.unlock();
         }
     }
 
     /**
      * Pins a buffer to the specified block, potentially
-     * waiting until a buffer becomes available.
+     * waiting until a buffer of the block's partition
+     * becomes available.
      * If no buffer becomes available within a fixed
      * time period, then a {@link BufferAbortException} is thrown.
+     * If the pin continues a sequential scan of the block's file,
+     * the blocks that follow are prefetched.
      *
      * @param blk a reference to a disk block
      * @return the buffer pinned to that block
      */
-    public synchronized Buffer pin(BlockId blk) {
+    public Buffer pin(BlockId blk) {
+        return pin(blk, null);
+    }
+
+    /**
+     * Pins a buffer to the specified block as {@link #pin(BlockId)}
+     * does, except that a miss reuses a buffer of the specified ring
+     * when the ring is full, and so do the blocks prefetched for it.
+     *
+     * @param blk  a reference to a disk block
+     * @param ring the ring of the scan, or null to use the whole pool
+     * @return the buffer pinned to that block
+     */
+    public Buffer pin(BlockId blk, BufferRing ring) {
+        Buffer buff = pinInPartition(blk, ring);
+        if (detector != null) {
+            // outside the partition's lock, since the prefetch locks other partitions
+            BlockId next = detector.pinned(blk);
+            if (next != null) {
+                prefetch(next, blk.number() + 1 + detector.window() - next.number(), 2, ring);
+            }
+        }
+        return buff;
+    }
+
+    /**
+     * Starts reading the specified number of consecutive blocks,
+     * starting at the specified block, into unpinned buffers,
+     * and returns without waiting for the reads.
+     * A later pin of one of the blocks finds it buffered,
+     * and only waits for its read, if it is still in progress,
+     * when the contents of the buffer are first used.
+     * Blocks that are already buffered or lie past the end of
+     * the file are skipped, as are blocks whose partitions have
+     * no available buffers; nothing waits for a buffer.
+     *
+     * @param first a reference to the first disk block
+     * @param count the number of consecutive blocks
+     */
+    public void prefetch(BlockId first, int count) {
+        prefetch(first, count, 1, null);
+    }
+
+    /**
+     * Prefetches blocks in batches of at most PREFETCH_BATCH blocks,
+     * each read with one background scatter read, using at most
+     * the specified share of the available buffers of each partition.
+     *
+     * @param share the denominator of the share of the available buffers to use
+     * @param ring  the ring to take the buffers from, or null
+     */
+    private void prefetch(BlockId first, int count, int share, BufferRing ring) {
+        String fileName = first.fileName();
+        count = Math.min(count, fm.length(fileName) - first.number());
+        for (int start = 0; start < count; start += PREFETCH_BATCH) {
+            BlockId batchFirst = new BlockId(fileName, first.number() + start);
+            prefetchBatch(batchFirst, Math.min(PREFETCH_BATCH, count - start), share, ring);
+        }
+    }
+
+    private void prefetchBatch(BlockId first, int count, int share, BufferRing ring) {
+        TreeSet<Integer> involved = new TreeSet<>();
+        for (int i = 0; i < count; i++) {
+            involved.add(partitionIndex(new BlockId(first.fileName(), first.number() + i)));
+        }
+        for (int i : involved) {
+            partitions[i].lock.lock();
+        }
         try {
-            long timestamp = System.currentTimeMillis();
-            Buffer buff = tryToPin(blk);
-            while (buff == null && !waitingTooLong(timestamp)) {
-                wait(MAX_TIME);
-                buff = tryToPin(blk);
+            Map<Partition, Integer> budget = new HashMap<>();
+            int size = fm.blockSize(first.fileName());
+            Buffer[] buffs = new Buffer[count];
+            for (int i = 0; i < count; i++) {
+                BlockId blk = new BlockId(first.fileName(), first.number() + i);
+                Partition part = partitionOf(blk);
+                // waiting threads come first
+                int left = budget.computeIfAbsent(part, p -> p.waiters.isEmpty() ? p.available / share : 0);
+                if (left == 0 || part.pageTable.containsKey(blk)) {
+                    continue;
+                }
+                Buffer buff = part.victim(size, ring);
+                part.map(buff, blk);
+                buff.bindToBlock(blk);
+                if (ring != null) {
+                    ring.add(part.index, buff, false);
+                }
+                // pinned until the batch is done, so that no policy chooses
+                // the buffer again for a later block of the batch
+                part.pin(buff);
+                budget.put(part, left - 1);
+                buffs[i] = buff;
+                stats.file(blk.fileName()).recordPrefetch();
             }
-            if (buff == null) {
-                throw new BufferAbortException();
+            // start a background read for each run of prefetched blocks
+            int i = 0;
+            while (i < count) {
+                if (buffs[i] == null) {
+                    i++;
+                    continue;
+                }
+                int runStart = i;
+                while (i < count && buffs[i] != null) {
+                    i++;
+                }
+                Page[] pages = new Page[i - runStart];
+                for (int j = runStart; j < i; j++) {
+                    pages[j - runStart] = buffs[j].contents();
+                }
+                CompletableFuture<Void> load = fm.readBlocksAsync(buffs[runStart].block(), pages);
+                for (int j = runStart; j < i; j++) {
+                    buffs[j].loadInBackground(load);
+                }
+            }
+            // the prefetch counts as a reference, as a pin and unpin does
+            for (Buffer buff : buffs) {
+                if (buff != null) {
+                    partitionOf(buff.block()).unpin(buff);
+                }
+            }
+        } finally {
+            for (int i : involved.descendingSet()) {
+                partitions[i].lock.unlock();
             }
-            return buff;
-        } catch (InterruptedException e) {
-            throw new BufferAbortException();
         }
     }
 
-    private boolean waitingTooLong(long starttime) {
-        return System.currentTimeMillis() - starttime > MAX_TIME;
+    private Buffer pinInPartition(BlockId blk, BufferRing ring) {
+        Partition part = partitionOf(blk);
+        part.lock.lock();
+        try {
+            if (part.waiters.isEmpty() || part.pageTable.containsKey(blk)) {
+                Buffer buff = part.tryToPin(blk, ring);
+                if (buff != null) {
+                    return buff;
+                }
+            }
+            // wait in line
+            long start = System.nanoTime();
+            Waiter w = new Waiter();
+            part.enqueue(w);
+            try {
+                while (true) {
+                    if (part.waiters.peekFirst() == w) {
+                        Buffer buff = part.tryToPin(blk, ring);
+                        if (buff != null) {
+                            return buff;
+                        }
+                    }
+                    part.await(w, start);
+                }
+            } catch (BufferAbortException e) {
+                stats.file(blk.fileName()).recordAbort();
+                throw e;
+            } finally {
+                part.leave(w);
+                stats.recordPinWait(blk.fileName(), System.nanoTime() - start);
+            }
+        } finally {
+            part.lock.unlock();
+        }
     }
 
     /**
-     * Tries to pin a buffer to the specified block.
-     * If there is already a buffer assigned to that block
-     * then that buffer is used;
-     * otherwise, an unpinned buffer from the pool is chosen.
-     * Returns a null value if there are no available buffers.
+     * Pins buffers to the specified number of consecutive blocks,
+     * starting at the specified block, potentially waiting until
+     * enough buffers become available.
+     * The blocks that are not already buffered are read with
+     * as few calls to {@link FileMgr#readBlocks} as possible.
+     * The partitions of the blocks are locked in a fixed order,
+     * so that two such calls cannot deadlock.
+     * A partition that is short of buffers is waited for in its line,
+     * like a single pin; if the buffers do not become available within
+     * {@link #MAX_WAIT_MILLIS}, then a {@link BufferAbortException} is thrown.
      *
-     * @param blk a reference to a disk block
-     * @return the pinned buffer
+     * @param first a reference to the first disk block
+     * @param count the number of consecutive blocks
+     * @return the pinned buffers, in block order
      */
-    private Buffer tryToPin(BlockId blk) {
-        Buffer buff = findExistingBuffer(blk);
-        if (buff == null) {
-            buff = chooseUnpinnedBuffer();
-            if (buff == null) {
-                return null;
+    public Buffer[] pin(BlockId first, int count) {
+        TreeSet<Integer> involved = new TreeSet<>();
+        for (int i = 0; i < count; i++) {
+            involved.add(partitionIndex(new BlockId(first.fileName(), first.number() + i)));
+        }
+        long start = System.nanoTime();
+        Waiter w = new Waiter();
+        // the partition in whose line the thread waits, if any
+        Partition queued = null;
+        try {
+            while (true) {
+                for (int i : involved) {
+                    partitions[i].lock.lock();
+                }
+                try {
+                    Object result = tryToPin(first, count, w);
+                    if (result instanceof Buffer[]) {
+                        return (Buffer[]) result;
+                    }
+                    Partition shortPart = (Partition) result;
+                    if (shortPart != queued) {
+                        // move to the line of the partition that is short now
+                        if (queued != null) {
+                            queued.leave(w);
+                        }
+                        shortPart.enqueue(w);
+                        queued = shortPart;
+                    }
+                } finally {
+                    for (int i : involved.descendingSet()) {
+                        partitions[i].lock.unlock();
+                    }
+                }
+                queued.lock.lock();
+                try {
+                    queued.await(w, start);
+                } finally {
+                    queued.lock.unlock();
+                }
+            }
+        } catch (BufferAbortException e) {
+            stats.file(first.fileName()).recordAbort();
+            throw e;
+        } finally {
+            if (queued != null) {
+                queued.lock.lock();
+                try {
+                    queued.leave(w);
+                } finally {
+                    queued.lock.unlock();
+                }
+                stats.recordPinWait(first.fileName(), System.nanoTime() - start);
             }
-            buff.assignToBlock(blk);
         }
-        if (!buff.isPinned()) {
-            numAvailable--;
+    }
+
+    /**
+     * Tries to pin buffers to consecutive blocks, holding the
+     * locks of all their partitions.
+     * Blocks that are already buffered reuse their buffers;
+     * each run of consecutive unbuffered blocks is assigned
+     * unpinned buffers and read with a single scatter read.
+     * If a partition does not have enough available buffers, or
+     * other threads are waiting for its buffers ahead of the
+     * specified waiter, nothing is pinned and that partition is
+     * returned instead, with the number of buffers needed from it
+     * recorded in the waiter.
+     *
+     * @param first a reference to the first disk block
+     * @param count the number of consecutive blocks
+     * @param w     the calling thread's place in line
+     * @return the pinned buffers, or the partition that is short of buffers
+     */
+    private Object tryToPin(BlockId first, int count, Waiter w) {
+        Buffer[] buffs = new Buffer[count];
+        Map<Partition, Integer> needed = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            BlockId blk = new BlockId(first.fileName(), first.number() + i);
+            Partition part = partitionOf(blk);
+            buffs[i] = part.pageTable.get(blk);
+            // a miss needs an available buffer, and so does a hit on an unpinned buffer
+            if (buffs[i] == null || !buffs[i].isPinned()) {
+                needed.merge(part, 1, Integer::sum);
+            }
         }
-        buff.pin();
-        return buff;
+        for (Map.Entry<Partition, Integer> e : needed.entrySet()) {
+            Partition part = e.getKey();
+            Waiter head = part.waiters.peekFirst();
+            if (part.available < e.getValue() || (head != null && head != w)) {
+                w.needed = e.getValue();
+                return part;
+            }
+        }
+        // pin the buffered blocks first, so that the policies cannot choose them as victims
+        BufferFileStats fileStats = stats.file(first.fileName());
+        for (int i = 0; i < count; i++) {
+            if (buffs[i] != null) {
+                partitionOf(buffs[i].block()).pin(buffs[i]);
+                fileStats.recordHit();
+            } else {
+                fileStats.recordMiss();
+            }
+        }
+        int size = fm.blockSize(first.fileName());
+        int i = 0;
+        while (i < count) {
+            if (buffs[i] != null) {
+                i++;
+                continue;
+            }
+            int runStart = i;
+            while (i < count && buffs[i] == null) {
+                i++;
+            }
+            Page[] pages = new Page[i - runStart];
+            for (int j = runStart; j < i; j++) {
+                BlockId blk = new BlockId(first.fileName(), first.number() + j);
+                Partition part = partitionOf(blk);
+                Buffer buff = part.victim(size, null);
+                part.map(buff, blk);
+                buff.bindToBlock(blk);
+                part.pin(buff);
+                buffs[j] = buff;
+                pages[j - runStart] = buff.contents();
+            }
+            fm.readBlocks(buffs[runStart].block(), pages);
+        }
+        return buffs;
     }
 
-    private Buffer findExistingBuffer(BlockId blk) {
-        for (Buffer buff : bufferPool) {
-            BlockId b = buff.block();
-            if (b != null && b.equals(blk)) {
-                return buff;
+    int partitionCount() {
+        return partitions.length;
+    }
+
+    /**
+     * Returns the first of the specified blocks that the pool has
+     * room for, in the same order: each partition takes blocks
+     * until it has as many as it has buffers, and then skips the rest.
+     *
+     * @param blocks the blocks, the most wanted first
+     * @return the blocks that fit in the pool
+     */
+    List<BlockId> fitting(List<BlockId> blocks) {
+        int[] room = new int[partitions.length];
+        for (int i = 0; i < partitions.length; i++) {
+            room[i] = partitions[i].frames.length;
+        }
+        List<BlockId> result = new ArrayList<>();
+        for (BlockId blk : blocks) {
+            int p = partitionIndex(blk);
+            if (room[p] > 0) {
+                room[p]--;
+                result.add(blk);
             }
         }
-        return null;
+        return result;
     }
 
-    private Buffer chooseUnpinnedBuffer() {
-        for (Buffer buff : bufferPool) {
-            if (!buff.isPinned()) {
+    /**
+     * Writes the dirty buffers among the next victims of the
+     * specified partition, so that the specified share of the
+     * partition's buffers is clean when it is needed.
+     * Each buffer is frozen while holding the partition's lock,
+     * and written after releasing it, so pins in the partition
+     * only wait for the write if they need that very buffer.
+     *
+     * @param index    the index of the partition
+     * @param fraction the share of the partition's buffers to clean
+     * @return the number of buffers written
+     */
+    int cleanAhead(int index, double fraction) {
+        Partition part = partitions[index];
+        int window = (int) Math.ceil(part.frames.length * fraction);
+        List<Buffer> dirty = new ArrayList<>();
+        part.lock.lock();
+        try {
+            for (Buffer buff : part.policy.nextVictims(window)) {
+                if (buff.modifyingTx() >= 0) {
+                    dirty.add(buff);
+                }
+            }
+        } finally {
+            part.lock.unlock();
+        }
+        int written = 0;
+        for (Buffer buff : dirty) {
+            boolean frozen;
+            part.lock.lock();
+            try {
+                // the buffer may have been pinned or written since
+                frozen = buff.beginWrite();
+            } finally {
+                part.lock.unlock();
+            }
+            if (frozen) {
+                buff.completeWrite();
+                written++;
+            }
+        }
+        return written;
+    }
+
+    private Partition partitionOf(BlockId blk) {
+        return partitions[partitionIndex(blk)];
+    }
+
+    private int partitionIndex(BlockId blk) {
+        if (partitions.length == 1) {
+            return 0;
+        }
+        int h = 31 * blk.fileName().hashCode() + blk.number() / PARTITION_RUN;
+        // spread the bits, as HashMap does
+        return Math.floorMod(h ^ (h >>> 16), partitions.length);
+    }
+
+    /**
+     * A partition of the buffer pool. All fields are guarded by the lock.
+     */
+    private class Partition {
+        final int index;
+        final ReentrantLock lock = new ReentrantLock();
+        final Buffer[] frames;
+        /**
+         * The buffer assigned to each block of the partition
+         */
+        final Map<BlockId, Buffer> pageTable = new HashMap<>();
+        final ReplacementPolicy policy;
+        /**
+         * Volatile so that {@link BufferMgr#available(BlockId, int)} can read it without the lock
+         */
+        volatile int available;
+        /**
+         * The threads waiting for buffers of the partition, in the
+         * order in which they started waiting
+         */
+        final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+
+        Partition(int index, Buffer[] frames, ReplacementPolicy policy) {
+            this.index = index;
+            this.frames = frames;
+            this.policy = policy;
+            available = frames.length;
+            policy.init(frames);
+        }
+
+        /**
+         * Tries to pin a buffer to the specified block.
+         * If there is already a buffer assigned to that block
+         * then that buffer is used;
+         * otherwise, the ring or the policy chooses an unpinned buffer.
+         * Returns a null value if there are no available buffers.
+         */
+        Buffer tryToPin(BlockId blk, BufferRing ring) {
+            Buffer buff = pageTable.get(blk);
+            if (buff == null) {
+                buff = victim(fm.blockSize(blk.fileName()), ring);
+                if (buff == null) {
+                    return null;
+                }
+                stats.file(blk.fileName()).recordMiss();
+                map(buff, blk);
+                buff.assignToBlock(blk);
+                if (ring != null) {
+                    ring.add(index, buff, true);
+                }
+            } else {
+                stats.file(blk.fileName()).recordHit();
+                if (ring != null) {
+                    ring.pinned(index, buff);
+                }
+            }
+            pin(buff);
+            return buff;
+        }
+
+        /**
+         * Chooses an unpinned buffer for a block that is not buffered:
+         * a buffer that the ring can reuse, if there is a ring,
+         * or else the policy's victim.
+         * Returns a null value if there are no available buffers.
+         */
+        Buffer victim(int size, BufferRing ring) {
+            Buffer buff = ring == null ? null : ring.recycle(index, policy);
+            if (buff != null) {
+                // the ring writes its own dirty buffers
                 return buff;
             }
+            buff = policy.victim(size);
+            if (buff != null && buff.modifyingTx() >= 0) {
+                wakeWriter();
+            }
+            return buff;
+        }
+
+        /**
+         * Tells the background writer, if there is one, that a miss
+         * had to write its victim, so the partition needs cleaning.
+         */
+        void wakeWriter() {
+            BackgroundWriter w = writer;
+            if (w != null) {
+                w.wakeup(index);
+            }
         }
-        return null;
+
+        /**
+         * Moves the buffer's page table entry to the block
+         * it is about to be assigned to, counting the eviction
+         * of the block it held.
+         */
+        void map(Buffer buff, BlockId blk) {
+            if (buff.block() != null) {
+                pageTable.remove(buff.block());
+                stats.file(buff.block().fileName()).recordEviction(buff.modifyingTx() >= 0);
+            }
+            pageTable.put(blk, buff);
+        }
+
+        /**
+         * Increases the pin count of the buffer, telling the
+         * policy when the buffer stops being a candidate for
+         * replacement.
+         */
+        void pin(Buffer buff) {
+            if (!buff.isPinned()) {
+                available--;
+                numAvailable.decrementAndGet();
+                buff.pin();
+                policy.pinned(buff);
+            } else {
+                buff.pin();
+            }
+        }
+
+        void unpin(Buffer buff) {
+            buff.unpin();
+            if (!buff.isPinned()) {
+                available++;
+                numAvailable.incrementAndGet();
+                policy.unpinned(buff);
+                wakeNext();
+            }
+        }
+
+        /**
+         * Puts the waiter at the end of the partition's line.
+         */
+        void enqueue(Waiter w) {
+            w.ready = lock.newCondition();
+            waiters.addLast(w);
+        }
+
+        /**
+         * Takes the waiter out of the line, and passes its turn on.
+         */
+        void leave(Waiter w) {
+            waiters.remove(w);
+            wakeNext();
+        }
+
+        /**
+         * Wakes the first waiting thread, if there are enough
+         * available buffers for it. The others keep sleeping
+         * until it has taken its buffers.
+         */
+        void wakeNext() {
+            Waiter head = waiters.peekFirst();
+            if (head != null && available >= head.needed) {
+                head.ready.signal();
+            }
+        }
+
+        /**
+         * Waits until the waiter is first in line and the partition
+         * has enough available buffers for it. The lock must be held.
+         * If the pin has waited {@link #MAX_WAIT_MILLIS} since it
+         * started, then a {@link BufferAbortException} is thrown.
+         *
+         * @param w     the waiter
+         * @param start the time the pin started waiting, from System.nanoTime
+         */
+        void await(Waiter w, long start) {
+            long nanos = MAX_WAIT_MILLIS * 1_000_000 - (System.nanoTime() - start);
+            try {
+                while (waiters.peekFirst() != w || available < w.needed) {
+                    if (nanos <= 0) {
+                        stats.recordPinTimeout();
+                        throw new BufferAbortException();
+                    }
+                    nanos = w.ready.awaitNanos(nanos);
+                }
+            } catch (InterruptedException e) {
+                throw new BufferAbortException();
+            }
+        }
+    }
+
+    /**
+     * A thread's place in the line of a partition.
+     */
+    private static class Waiter {
+        /**
+         * Signalled when the thread is first in line and its buffers are available
+         */
+        Condition ready;
+        /**
+         * The number of buffers of the partition the thread needs
+         */
+        int needed = 1;
     }
 }
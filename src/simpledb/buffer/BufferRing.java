@@ -0,0 +1,138 @@
+package simpledb.buffer;
+
+import simpledb.file.BlockId;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A small ring of buffers that a large scan recycles, so that
+ * it does not push the rest of the pool's blocks out.
+ * <p>
+ * A scan that reads or writes each block of a large file once,
+ * such as a table scan, the run merge of a sort or a bulk load,
+ * would otherwise replace one buffer per block, and with an LRU
+ * policy the blocks it will never read again push out every block
+ * that other transactions use over and over. A scan that pins its
+ * blocks through a ring takes the victims of the pool's policy only
+ * until the ring is full; after that, each block it misses reuses
+ * the ring buffer that has gone longest without being needed,
+ * and the other blocks of the pool stay where they are.
+ * <p>
+ * A block can only use the buffers of its own partition, so the
+ * ring keeps a separate queue of buffers for each partition,
+ * holding at most {@link #capacity()} buffers of the partition.
+ * A ring buffer is reused only if it still holds the block the ring
+ * put there, so a buffer that the policy has given to another block
+ * in the meantime simply leaves the ring, and only once the scan has
+ * pinned its block, so prefetched blocks are not replaced before the
+ * scan gets to them. A dirty ring buffer is written when it is reused,
+ * just as a dirty victim is.
+ * <p>
+ * A ring belongs to one scan; its queue for a partition is only
+ * used while holding the partition's lock.
+ *
+ * @see BufferMgr#newRing()
+ */
+public class BufferRing {
+    /**
+     * The number of buffers of a ring, spread over the partitions
+     * of the pool; a partition's share is raised to a few read-ahead
+     * runs, and lowered to a quarter of the partition
+     */
+    public static int SIZE = 32;
+    private final int capacity;
+    private final List<ArrayDeque<Entry>> queues;
+
+    /**
+     * @param partitions the number of partitions of the pool
+     * @param capacity   the largest number of buffers of a partition to reuse
+     */
+    BufferRing(int partitions, int capacity) {
+        this.capacity = capacity;
+        queues = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            queues.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * @return the number of buffers of each partition that the ring reuses
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns a ring buffer of the specified partition that can hold
+     * another block, and takes it off the ring, or returns null if
+     * the ring should grow instead. The policy forgets the buffer's
+     * block, as it does for a victim.
+     *
+     * @param partition the index of the partition
+     * @param policy    the partition's replacement policy
+     * @return the buffer to reuse, or null to take a victim of the policy
+     */
+    Buffer recycle(int partition, ReplacementPolicy policy) {
+        ArrayDeque<Entry> queue = queues.get(partition);
+        queue.removeIf(e -> !e.blk.equals(e.buff.block()));
+        if (queue.size() < capacity) {
+            return null;
+        }
+        Iterator<Entry> iter = queue.iterator();
+        while (iter.hasNext()) {
+            Entry e = iter.next();
+            if (e.used && !e.buff.isPinned()) {
+                iter.remove();
+                policy.recycled(e.buff);
+                return e.buff;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a buffer that was just assigned to a block to the ring.
+     *
+     * @param partition the index of the partition
+     * @param buff      the buffer
+     * @param used      whether the block is being pinned, rather than prefetched
+     */
+    void add(int partition, Buffer buff, boolean used) {
+        Entry e = new Entry(buff);
+        e.used = used;
+        queues.get(partition).addLast(e);
+    }
+
+    /**
+     * Notes that the scan pinned a block that was already buffered;
+     * if the ring prefetched it, the buffer can now be reused.
+     *
+     * @param partition the index of the partition
+     * @param buff      the pinned buffer
+     */
+    void pinned(int partition, Buffer buff) {
+        for (Entry e : queues.get(partition)) {
+            if (e.buff == buff) {
+                e.used = true;
+                return;
+            }
+        }
+    }
+
+    private static class Entry {
+        final Buffer buff;
+        /**
+         * The block the ring assigned the buffer to
+         */
+        final BlockId blk;
+        boolean used;
+
+        Entry(Buffer buff) {
+            this.buff = buff;
+            this.blk = buff.block();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package simpledb.buffer;
+
+import java.util.Random;
+import simpledb.file.BlockId;
+import simpledb.file.FileMgr;
+import simpledb.file.Page;
+import simpledb.server.SimpleDB;
+
+/**
+ * Shows that a large scan pinning its blocks through a buffer ring
+ * leaves the hot blocks of the pool alone.
+ * <p>
+ * Point lookups go to a small set of hot blocks, like catalog blocks
+ * and index roots, while a scan reads a table several times larger
+ * than the pool. For each replacement policy the test reports the hit
+ * ratio of the lookups, with the scan using the whole pool and with the
+ * scan using a ring. Every pinned block is also checked to hold its own
+ * contents.
+ */
+public class BufferRingTest {
+    private static final int POOL_SIZE = 256;
+    private static final int HOT_BLOCKS = 96;
+    private static final int SCAN_BLOCKS = 2048;
+    private static final int ROUNDS = 40000;
+
+    public static void main(String[] args) {
+        SimpleDB db = new SimpleDB("bufferringtest", 400, 8);
+        FileMgr fm = db.fileMgr();
+        Page p = new Page(fm.blockSize());
+        for (String fileName : new String[]{"hotfile", "scanfile"}) {
+            int n = fileName.equals("hotfile") ? HOT_BLOCKS : SCAN_BLOCKS;
+            while (fm.length(fileName) < n) {
+                BlockId blk = fm.append(fileName);
+                p.setInt(0, blk.number());
+                fm.write(blk, p);
+            }
+        }
+
+        for (ReplacementPolicy.Kind kind : ReplacementPolicy.Kind.values()) {
+            StringBuilder line = new StringBuilder(String.format("%-6s", kind));
+            for (boolean useRing : new boolean[]{false, true}) {
+                BufferMgr bm = new BufferMgr(fm, db.logMgr(), POOL_SIZE, kind);
+                BufferRing ring = useRing ? bm.newRing() : null;
+                Random rand = new Random(42);
+                long hotReads = fm.ioStats().reads("hotfile");
+                int hotPins = 0, errors = 0;
+                int scanPos = 0;
+                for (int r = 0; r < ROUNDS; r++) {
+                    BlockId blk = new BlockId("hotfile", rand.nextInt(HOT_BLOCKS));
+                    Buffer buff = bm.pin(blk);
+                    errors += check(buff, blk);
+                    bm.unpin(buff);
+                    hotPins++;
+                    // the scan reads a block every round
+                    BlockId next = new BlockId("scanfile", scanPos);
+                    buff = bm.pin(next, ring);
+                    errors += check(buff, next);
+                    bm.unpin(buff);
+                    scanPos = (scanPos + 1) % SCAN_BLOCKS;
+                }
+                hotReads = fm.ioStats().reads("hotfile") - hotReads;
+                line.append(String.format("  %s: hot hit ratio %5.1f%%, %d errors",
+                        useRing ? "ring " + ring.capacity() + "/partition" : "whole pool",
+                        100.0 * (1 - (double) hotReads / hotPins), errors));
+            }
+            System.out.println(line);
+        }
+    }
+
+    private static int check(Buffer buff, BlockId blk) {
+        return buff.block().equals(blk) && buff.contents().getInt(0) == blk.number() ? 0 : 1;
+    }
+}
@@ -0,0 +1,390 @@
+package simpledb.buffer;
+
+import simpledb.file.LatencyHistogram;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The statistics of a buffer pool, with a {@link BufferFileStats}
+ * for each file whose blocks were pinned.
+ * <p>
+ * Programs reach them through {@link BufferMgr#stats()}, and can take
+ * a consistent-enough copy with {@link #snapshot()}. After a call
+ * to {@link #register(String)} they can also be watched through JMX
+ * (for example with jconsole), under the object name
+ * "simpledb:type=BufferStats,name=the pool's name".
+ */
+public class BufferStats implements BufferStatsMXBean {
+    private final BufferMgr bm;
+    private final Map<String, BufferFileStats> files = new ConcurrentHashMap<>();
+    /**
+     * The waiting times of the whole pool, which unlike
+     * counters cannot be summed over the files
+     */
+    private final LatencyHistogram pinWaits = new LatencyHistogram();
+    private final LongAdder pinTimeouts = new LongAdder();
+
+    BufferStats(BufferMgr bm) {
+        this.bm = bm;
+    }
+
+    /**
+     * Returns the statistics of the specified file,
+     * creating them when first asked for. As in the file
+     * manager's statistics, all temporary tables share
+     * the statistics of the file "temp".
+     *
+     * @param fileName the name of the file
+     * @return the statistics of the file
+     */
+    public BufferFileStats file(String fileName) {
+        if (fileName.startsWith("temp")) {
+            fileName = "temp";
+        }
+        BufferFileStats stats = files.get(fileName);
+        if (stats == null) {
+            stats = files.computeIfAbsent(fileName, BufferFileStats::new);
+        }
+        return stats;
+    }
+
+    /**
+     * @return the statistics of all the files whose blocks were pinned
+     */
+    public Collection<BufferFileStats> files() {
+        return files.values();
+    }
+
+    /**
+     * Records how long a pin of a block of the specified file waited.
+     */
+    void recordPinWait(String fileName, long nanos) {
+        pinWaits.record(nanos);
+        file(fileName).recordPinWait(nanos);
+    }
+
+    /**
+     * Records a pin that gave up waiting for a buffer,
+     * as opposed to being interrupted.
+     */
+    void recordPinTimeout() {
+        pinTimeouts.increment();
+    }
+
+    /**
+     * Registers the statistics with the platform MBeanServer,
+     * replacing an earlier object of the same name.
+     *
+     * @param poolName the name of the pool, used in the object name
+     */
+    public void register(String poolName) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("simpledb:type=BufferStats,name=" + ObjectName.quote(poolName));
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            throw new RuntimeException("cannot register buffer statistics for " + poolName);
+        }
+    }
+
+    /**
+     * Returns a copy of the statistics of the whole pool. The counters
+     * are read one after the other while pins go on, so they are
+     * only consistent with each other up to the pins in between.
+     *
+     * @return the statistics of the pool
+     */
+    public Snapshot snapshot() {
+        Map<String, Snapshot> perFile = new LinkedHashMap<>();
+        long hits = 0, misses = 0, prefetches = 0, evictions = 0, dirtyEvictions = 0, aborts = 0;
+        for (BufferFileStats s : sortedByActivity()) {
+            Snapshot fs = new Snapshot(s.hits(), s.misses(), s.prefetches(), s.evictions(),
+                    s.dirtyEvictions(), s.aborts(), s.pinWaits().count(), s.pinWaits().percentileNanos(0.99),
+                    Map.of());
+            perFile.put(s.fileName(), fs);
+            hits += fs.hits;
+            misses += fs.misses;
+            prefetches += fs.prefetches;
+            evictions += fs.evictions;
+            dirtyEvictions += fs.dirtyEvictions;
+            aborts += fs.aborts;
+        }
+        return new Snapshot(hits, misses, prefetches, evictions, dirtyEvictions, aborts,
+                pinWaits.count(), pinWaits.percentileNanos(0.99), perFile);
+    }
+
+    @Override
+    public int getPoolSize() {
+        return bm.poolSize();
+    }
+
+    @Override
+    public int getAvailable() {
+        return bm.available();
+    }
+
+    @Override
+    public long getHits() {
+        long n = 0;
+        for (BufferFileStats s : files.values()) {
+            n += s.hits();
+        }
+        return n;
+    }
+
+    @Override
+    public long getMisses() {
+        long n = 0;
+        for (BufferFileStats s : files.values()) {
+            n += s.misses();
+        }
+        return n;
+    }
+
+    @Override
+    public double getHitRatio() {
+        return ratio(getHits(), getMisses());
+    }
+
+    @Override
+    public long getPrefetches() {
+        long n = 0;
+        for (BufferFileStats s : files.values()) {
+            n += s.prefetches();
+        }
+        return n;
+    }
+
+    @Override
+    public long getEvictions() {
+        long n = 0;
+        for (BufferFileStats s : files.values()) {
+            n += s.evictions();
+        }
+        return n;
+    }
+
+    @Override
+    public long getDirtyEvictions() {
+        long n = 0;
+        for (BufferFileStats s : files.values()) {
+            n += s.dirtyEvictions();
+        }
+        return n;
+    }
+
+    @Override
+    public long getAborts() {
+        long n = 0;
+        for (BufferFileStats s : files.values()) {
+            n += s.aborts();
+        }
+        return n;
+    }
+
+    @Override
+    public long getPinWaits() {
+        return pinWaits.count();
+    }
+
+    @Override
+    public long getPinTimeouts() {
+        return pinTimeouts.sum();
+    }
+
+    /**
+     * Returns how long the pins that had to wait for a buffer waited,
+     * whether they got one or not. Pins that did not wait are not recorded.
+     *
+     * @return the histogram of the waiting times of the pool
+     */
+    public LatencyHistogram pinWaits() {
+        return pinWaits;
+    }
+
+    @Override
+    public long pinWaitPercentile(double p) {
+        return pinWaits.percentileNanos(p);
+    }
+
+    @Override
+    public String[] getFileNames() {
+        List<BufferFileStats> sorted = sortedByActivity();
+        String[] names = new String[sorted.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = sorted.get(i).fileName();
+        }
+        return names;
+    }
+
+    @Override
+    public long hits(String fileName) {
+        BufferFileStats s = files.get(fileName);
+        return s == null ? 0 : s.hits();
+    }
+
+    @Override
+    public long misses(String fileName) {
+        BufferFileStats s = files.get(fileName);
+        return s == null ? 0 : s.misses();
+    }
+
+    @Override
+    public double hitRatio(String fileName) {
+        BufferFileStats s = files.get(fileName);
+        return s == null ? 0 : ratio(s.hits(), s.misses());
+    }
+
+    @Override
+    public long evictions(String fileName) {
+        BufferFileStats s = files.get(fileName);
+        return s == null ? 0 : s.evictions();
+    }
+
+    @Override
+    public long dirtyEvictions(String fileName) {
+        BufferFileStats s = files.get(fileName);
+        return s == null ? 0 : s.dirtyEvictions();
+    }
+
+    @Override
+    public long aborts(String fileName) {
+        BufferFileStats s = files.get(fileName);
+        return s == null ? 0 : s.aborts();
+    }
+
+    @Override
+    public long pinWaitPercentile(String fileName, double p) {
+        BufferFileStats s = files.get(fileName);
+        return s == null ? 0 : s.pinWaits().percentileNanos(p);
+    }
+
+    @Override
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        for (BufferFileStats s : sortedByActivity()) {
+            sb.append(s).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (BufferFileStats s : files.values()) {
+            s.reset();
+        }
+        pinWaits.reset();
+        pinTimeouts.reset();
+    }
+
+    private List<BufferFileStats> sortedByActivity() {
+        List<BufferFileStats> sorted = new ArrayList<>(files.values());
+        sorted.sort(Comparator.comparingLong((BufferFileStats s) -> s.hits() + s.misses()).reversed());
+        return sorted;
+    }
+
+    private static double ratio(long hits, long misses) {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    /**
+     * A copy of the statistics of a pool or of one of its files.
+     */
+    public static class Snapshot {
+        private final long hits;
+        private final long misses;
+        private final long prefetches;
+        private final long evictions;
+        private final long dirtyEvictions;
+        private final long aborts;
+        private final long pinWaits;
+        private final long pinWaitP99Nanos;
+        private final Map<String, Snapshot> files;
+
+        Snapshot(long hits, long misses, long prefetches, long evictions, long dirtyEvictions,
+                 long aborts, long pinWaits, long pinWaitP99Nanos, Map<String, Snapshot> files) {
+            this.hits = hits;
+            this.misses = misses;
+            this.prefetches = prefetches;
+            this.evictions = evictions;
+            this.dirtyEvictions = dirtyEvictions;
+            this.aborts = aborts;
+            this.pinWaits = pinWaits;
+            this.pinWaitP99Nanos = pinWaitP99Nanos;
+            this.files = files;
+        }
+
+        public long hits() {
+            return hits;
+        }
+
+        public long misses() {
+            return misses;
+        }
+
+        /**
+         * @return the share of the pins that found their block buffered,
+         * or 0 if there were none
+         */
+        public double hitRatio() {
+            return ratio(hits, misses);
+        }
+
+        public long prefetches() {
+            return prefetches;
+        }
+
+        public long evictions() {
+            return evictions;
+        }
+
+        public long dirtyEvictions() {
+            return dirtyEvictions;
+        }
+
+        public long aborts() {
+            return aborts;
+        }
+
+        /**
+         * @return the number of pins that had to wait for a buffer
+         */
+        public long pinWaits() {
+            return pinWaits;
+        }
+
+        public long pinWaitP99Nanos() {
+            return pinWaitP99Nanos;
+        }
+
+        /**
+         * @return the snapshots of the files, the most pinned first;
+         * empty for the snapshot of a file
+         */
+        public Map<String, Snapshot> files() {
+            return files;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + " misses=" + misses + " hit ratio=" + String.format("%.3f", hitRatio())
+                    + " prefetches=" + prefetches + " evictions=" + evictions + " (" + dirtyEvictions
+                    + " dirty) aborts=" + aborts + " pin waits=" + pinWaits
+                    + " p99<=" + pinWaitP99Nanos / 1000 + "us";
+        }
+    }
+}
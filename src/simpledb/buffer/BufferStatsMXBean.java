@@ -0,0 +1,70 @@
+package simpledb.buffer;
+
+/**
+ * The buffer pool statistics exposed through JMX. The attributes
+ * cover the whole pool; the operations look up a single file.
+ */
+public interface BufferStatsMXBean {
+    int getPoolSize();
+
+    int getAvailable();
+
+    long getHits();
+
+    long getMisses();
+
+    /**
+     * @return the share of the pins that found their block buffered,
+     * or 0 if there were none
+     */
+    double getHitRatio();
+
+    long getPrefetches();
+
+    long getEvictions();
+
+    long getDirtyEvictions();
+
+    long getAborts();
+
+    long getPinWaits();
+
+    long getPinTimeouts();
+
+    /**
+     * @param p a share between 0 and 1
+     * @return the percentile of the pin waiting times of the pool, in nanoseconds
+     */
+    long pinWaitPercentile(double p);
+
+    /**
+     * @return the files whose blocks were pinned, the most pinned first
+     */
+    String[] getFileNames();
+
+    long hits(String fileName);
+
+    long misses(String fileName);
+
+    double hitRatio(String fileName);
+
+    long evictions(String fileName);
+
+    long dirtyEvictions(String fileName);
+
+    long aborts(String fileName);
+
+    /**
+     * @param fileName the name of the file
+     * @param p        a share between 0 and 1
+     * @return the percentile of the pin waiting times of the file, in nanoseconds
+     */
+    long pinWaitPercentile(String fileName, double p);
+
+    /**
+     * @return a report with one line per file
+     */
+    String report();
+
+    void reset();
+}
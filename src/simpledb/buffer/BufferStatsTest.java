@@ -0,0 +1,97 @@
+package simpledb.buffer;
+
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import simpledb.file.BlockId;
+import simpledb.file.FileMgr;
+import simpledb.server.SimpleDB;
+
+/**
+ * Checks the statistics of a buffer pool.
+ * <p>
+ * A pool of {@link #POOL_SIZE} buffers pins a small hot file
+ * over and over and a large cold file once, dirtying some of the
+ * cold blocks, so that the hits, misses, evictions and dirty
+ * evictions of each file are known in advance. A pin that cannot
+ * get a buffer must show up as an abort and a pin wait. The same
+ * numbers are then read through a snapshot and through JMX.
+ */
+public class BufferStatsTest {
+    private static final int POOL_SIZE = 16;
+    private static final int HOT_BLOCKS = 4;
+    private static final int COLD_BLOCKS = 64;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) throws Exception {
+        SimpleDB db = new SimpleDB("bufferstatstest", 400, 8);
+        FileMgr fm = db.fileMgr();
+        while (fm.length("hot") < HOT_BLOCKS) {
+            fm.append("hot");
+        }
+        while (fm.length("cold") < COLD_BLOCKS) {
+            fm.append("cold");
+        }
+        BufferMgr.PREFETCH_BLOCKS = 0;
+        BufferMgr bm = new BufferMgr(fm, db.logMgr(), POOL_SIZE);
+        bm.stats().register("bufferstatstest-pool");
+
+        // the hot blocks stay pinned, so the cold blocks only replace each other
+        Buffer[] hot = new Buffer[HOT_BLOCKS];
+        for (int i = 0; i < HOT_BLOCKS; i++) {
+            hot[i] = bm.pin(new BlockId("hot", i));
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < HOT_BLOCKS; i++) {
+                bm.unpin(bm.pin(new BlockId("hot", i)));
+            }
+        }
+        for (int i = 0; i < COLD_BLOCKS; i++) {
+            Buffer buff = bm.pin(new BlockId("cold", i));
+            if (i % 2 == 0) {
+                buff.setModified(1, -1);
+            }
+            bm.unpin(buff);
+        }
+        BufferStats stats = bm.stats();
+        int coldEvicted = COLD_BLOCKS - (POOL_SIZE - HOT_BLOCKS);
+        System.out.println("hot: " + stats.hits("hot") + " hits (expected " + HOT_BLOCKS * ROUNDS + "), "
+                + stats.misses("hot") + " misses (expected " + HOT_BLOCKS + "), "
+                + stats.evictions("hot") + " evictions (expected 0)");
+        System.out.println("cold: " + stats.misses("cold") + " misses (expected " + COLD_BLOCKS + "), "
+                + stats.evictions("cold") + " evictions (expected " + coldEvicted + "), "
+                + stats.dirtyEvictions("cold") + " dirty (expected " + coldEvicted / 2 + ")");
+
+        // a pin that finds every buffer pinned gives up
+        BufferMgr.MAX_WAIT_MILLIS = 100;
+        Buffer[] rest = new Buffer[POOL_SIZE - HOT_BLOCKS];
+        for (int i = 0; i < rest.length; i++) {
+            rest[i] = bm.pin(new BlockId("cold", i));
+        }
+        try {
+            bm.pin(new BlockId("cold", COLD_BLOCKS - 1));
+        } catch (BufferAbortException e) {
+            // expected
+        }
+        System.out.println("cold: " + stats.aborts("cold") + " aborts (expected 1), "
+                + stats.file("cold").pinWaits().count() + " pin waits (expected 1), "
+                + stats.getPinTimeouts() + " timeouts (expected 1)");
+        for (Buffer buff : rest) {
+            bm.unpin(buff);
+        }
+        for (Buffer buff : hot) {
+            bm.unpin(buff);
+        }
+
+        BufferStats.Snapshot snap = stats.snapshot();
+        System.out.println("snapshot: " + snap);
+        System.out.println("snapshot files: " + snap.files().keySet());
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("simpledb:type=BufferStats,name="
+                + ObjectName.quote("bufferstatstest-pool"));
+        System.out.println("JMX Hits: " + server.getAttribute(name, "Hits") + " (snapshot " + snap.hits()
+                + "), HitRatio: " + server.getAttribute(name, "HitRatio")
+                + ", Evictions: " + server.getAttribute(name, "Evictions") + " (snapshot " + snap.evictions() + ")");
+        System.out.print(stats.report());
+    }
+}
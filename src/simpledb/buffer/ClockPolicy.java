@@ -0,0 +1,111 @@
+package simpledb.buffer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The clock (second chance) replacement policy.
+ * <p>
+ * Each buffer has a reference bit that is set whenever the buffer
+ * is pinned. To find a victim, a hand sweeps around the pool:
+ * an unpinned buffer whose bit is set gets its bit cleared and is
+ * passed over, and the first unpinned buffer whose bit is clear is
+ * chosen. This approximates LRU without any list maintenance on
+ * pin and unpin. The policy ignores the page size of the buffers.
+ */
+public class ClockPolicy implements ReplacementPolicy {
+    private Buffer[] frames;
+    private boolean[] referenced;
+    private Map<Buffer, Integer> index = new IdentityHashMap<>();
+    /**
+     * Buffers that hold no block
+     */
+    private Deque<Buffer> empty = new ArrayDeque<>();
+    private int hand = 0;
+
+    @Override
+    public void init(Buffer[] pool) {
+        frames = pool;
+        referenced = new boolean[pool.length];
+        for (int i = 0; i < pool.length; i++) {
+            index.put(pool[i], i);
+            empty.add(pool[i]);
+        }
+    }
+
+    @Override
+    public void pinned(Buffer buff) {
+        referenced[index.get(buff)] = true;
+    }
+
+    @Override
+    public void unpinned(Buffer buff) {
+    }
+
+    @Override
+    public void discarded(Buffer buff) {
+        referenced[index.get(buff)] = false;
+        empty.addFirst(buff);
+    }
+
+    /**
+     * The hand keeps no record of blocks; the buffer is about to hold
+     * a new block, so its bit is set as {@link #pinned(Buffer)} would,
+     * which also keeps the hand from handing it out again meanwhile.
+     */
+    @Override
+    public void recycled(Buffer buff) {
+        referenced[index.get(buff)] = true;
+    }
+
+    /**
+     * Two sweeps are enough: the first one clears the bits
+     * of all unpinned buffers. Buffers without a block are
+     * skipped, since they are handed out from the empty list.
+     */
+    @Override
+    public Buffer victim(int size) {
+        Buffer buff = empty.pollFirst();
+        if (buff != null) {
+            return buff;
+        }
+        for (int i = 0; i < 2 * frames.length; i++) {
+            int h = hand;
+            hand = (hand + 1) % frames.length;
+            buff = frames[h];
+            if (buff.isPinned() || buff.block() == null) {
+                continue;
+            }
+            if (referenced[h]) {
+                referenced[h] = false;
+                continue;
+            }
+            return buff;
+        }
+        return null;
+    }
+
+    /**
+     * The hand takes the unpinned buffers whose bit is clear in
+     * the order it reaches them, and the others after clearing
+     * their bits on the first sweep.
+     */
+    @Override
+    public List<Buffer> nextVictims(int n) {
+        List<Buffer> result = new ArrayList<>();
+        for (int sweep = 0; sweep < 2; sweep++) {
+            for (int i = 0; i < frames.length && result.size() < n; i++) {
+                int h = (hand + i) % frames.length;
+                Buffer buff = frames[h];
+                if (!buff.isPinned() && buff.block() != null && referenced[h] == (sweep == 1)) {
+                    result.add(buff);
+                }
+            }
+        }
+        return result;
+    }
+}
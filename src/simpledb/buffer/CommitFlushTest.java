@@ -0,0 +1,62 @@
+package simpledb.buffer;
+
+import simpledb.file.BlockId;
+import simpledb.file.FileMgr;
+import simpledb.server.SimpleDB;
+
+/**
+ * Checks that a commit only flushes the buffers of its own
+ * transaction, and that its cost does not grow with the pool.
+ * <p>
+ * Two transactions modify blocks in a large pool, and one of the
+ * first transaction's buffers is evicted before the commit. The
+ * first commit must leave the other transaction's buffers dirty and
+ * its own clean; then many tiny commits are timed in a small pool
+ * and in a pool of {@link #LARGE_POOL} buffers.
+ */
+public class CommitFlushTest {
+    private static final int SMALL_POOL = 64;
+    private static final int LARGE_POOL = 100000;
+    private static final int COMMITS = 2000;
+
+    public static void main(String[] args) {
+        SimpleDB db = new SimpleDB("commitflushtest", 400, 8);
+        FileMgr fm = db.fileMgr();
+        while (fm.length("testfile") < 16) {
+            fm.append("testfile");
+        }
+        BufferMgr.PREFETCH_BLOCKS = 0;
+        BufferMgr bm = new BufferMgr(fm, db.logMgr(), 8);
+        Buffer[] buffs = new Buffer[4];
+        for (int i = 0; i < buffs.length; i++) {
+            buffs[i] = bm.pin(new BlockId("testfile", i));
+            buffs[i].setModified(i % 2 == 0 ? 1 : 2, -1);
+            bm.unpin(buffs[i]);
+        }
+        // fill the free buffers, then push block 0 out of the pool, which writes it
+        for (int i = 4; i <= 8; i++) {
+            bm.unpin(bm.pin(new BlockId("testfile", i)));
+        }
+        Buffer again = bm.pin(new BlockId("testfile", 2));
+        bm.flushAll(1);
+        boolean evicted = !buffs[0].block().equals(new BlockId("testfile", 0));
+        System.out.println("after commit of tx 1: block 0 evicted: " + evicted + " (expected true), block 2 dirty by " + again.modifyingTx()
+                + " (expected -1), blocks 1 and 3 dirty by " + buffs[1].modifyingTx() + " and "
+                + buffs[3].modifyingTx() + " (expected 2 and 2)");
+        bm.unpin(again);
+        bm.flushAll(2);
+
+        for (int size : new int[]{SMALL_POOL, LARGE_POOL}) {
+            BufferMgr pool = new BufferMgr(fm, db.logMgr(), size);
+            long start = System.nanoTime();
+            for (int tx = 1; tx <= COMMITS; tx++) {
+                Buffer buff = pool.pin(new BlockId("testfile", tx % 16));
+                buff.setModified(tx, -1);
+                pool.unpin(buff);
+                pool.flushAll(tx);
+            }
+            System.out.println(size + " buffers: " + (System.nanoTime() - start) / COMMITS / 1000
+                    + " us per commit");
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package simpledb.buffer;
+
+import simpledb.file.BlockId;
+import simpledb.file.FileMgr;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A list of the blocks held by a buffer pool, hottest first, kept in
+ * a file so that the pool can be warmed up after a restart.
+ * <p>
+ * {@link #save()} writes the blocks returned by
+ * {@link BufferMgr#residentBlocks()} to a new file and then renames
+ * it over the old one, so a crash leaves either list intact.
+ * {@link #startSaving(long)} does so periodically on a daemon thread.
+ * <p>
+ * {@link #warmUp(FileMgr)} reads the list back and prefetches the
+ * hottest blocks that fit in the pool, sorted by file and block
+ * number, so that consecutive blocks are read together.
+ * The reads happen in the background, and a pin of a block whose
+ * read has not finished waits for it, as for any prefetch.
+ */
+public class HotPageList {
+    private final BufferMgr bm;
+    private final File file;
+    private Thread saver;
+    private volatile boolean stopped = false;
+
+    /**
+     * Creates a list of the blocks of the specified pool,
+     * kept in the specified file.
+     *
+     * @param bm   the buffer manager of the pool
+     * @param file the file that holds the list
+     */
+    public HotPageList(BufferMgr bm, File file) {
+        this.bm = bm;
+        this.file = file;
+    }
+
+    /**
+     * Writes the blocks now in the pool to the file, hottest first.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void save() throws IOException {
+        List<BlockId> blocks = bm.residentBlocks();
+        File tmp = new File(file.getPath() + ".new");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(blocks.size());
+            for (BlockId blk : blocks) {
+                out.writeUTF(blk.fileName());
+                out.writeInt(blk.number());
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the blocks from the file, hottest first.
+     * A missing or damaged file gives an empty list.
+     *
+     * @return the saved blocks
+     */
+    public List<BlockId> load() {
+        List<BlockId> blocks = new ArrayList<>();
+        if (!file.exists()) {
+            return blocks;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                blocks.add(new BlockId(in.readUTF(), in.readInt()));
+            }
+            return blocks;
+        } catch (IOException e) {
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Prefetches the hottest saved blocks, as many as the pool holds.
+     * Each partition of the pool gets no more of them than it has buffers.
+     * Blocks of files that no longer exist, or that lie beyond the
+     * end of their file, are skipped. The method returns once the
+     * reads have been started.
+     *
+     * @param fm the file manager of the database
+     * @return the number of blocks whose prefetch was requested
+     */
+    public int warmUp(FileMgr fm) {
+        File dir = file.getParentFile();
+        List<BlockId> saved = new ArrayList<>();
+        for (BlockId blk : load()) {
+            // FileMgr.length would create a missing file
+            if (new File(dir, blk.fileName()).exists() && blk.number() < fm.length(blk.fileName())) {
+                saved.add(blk);
+            }
+        }
+        // a later block must not replace a hotter one in a full partition
+        List<BlockId> blocks = bm.fitting(saved);
+        blocks.sort(Comparator.comparing(BlockId::fileName).thenComparingInt(BlockId::number));
+        int i = 0;
+        while (i < blocks.size()) {
+            BlockId first = blocks.get(i);
+            int count = 1;
+            while (i + count < blocks.size()
+                    && blocks.get(i + count).fileName().equals(first.fileName())
+                    && blocks.get(i + count).number() == first.number() + count) {
+                count++;
+            }
+            bm.prefetch(first, count);
+            i += count;
+        }
+        return blocks.size();
+    }
+
+    /**
+     * Starts a daemon thread that saves the list
+     * every so many milliseconds, unless one is already running.
+     *
+     * @param intervalMillis the time between saves
+     */
+    public synchronized void startSaving(long intervalMillis) {
+        if (saver != null) {
+            return;
+        }
+        stopped = false;
+        saver = new Thread(() -> {
+            while (!stopped) {
+                LockSupport.parkNanos(intervalMillis * 1000000);
+                if (stopped) {
+                    break;
+                }
+                try {
+                    save();
+                } catch (IOException | RuntimeException e) {
+                    // the previous list stays in place
+                    e.printStackTrace();
+                }
+            }
+        }, "hot-page-saver");
+        saver.setDaemon(true);
+        saver.start();
+    }
+
+    /**
+     * Stops the saving thread, if one is running.
+     */
+    public synchronized void stopSaving() {
+        if (saver != null) {
+            stopped = true;
+            LockSupport.unpark(saver);
+            saver = null;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package simpledb.buffer;
+
+import simpledb.file.BlockId;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * The LRU-K replacement policy (O'Neil, O'Neil and Weikum).
+ * <p>
+ * The policy remembers the times of the last K references to each
+ * block and replaces the unpinned buffer whose K-th most recent
+ * reference is the oldest. A block referenced fewer than K times
+ * counts as infinitely old, so the blocks of a one-off scan are
+ * replaced before blocks that are used again and again, such as
+ * the catalog blocks and the roots of B-tree indexes.
+ * Ties are broken by the most recent reference, as in LRU.
+ * <p>
+ * Time is counted in references. References to a block that follow
+ * the previous one within {@link #CORRELATED_PERIOD} references, such
+ * as the pin of a scan's read-ahead followed by the scan's own pin,
+ * are correlated: they count as one reference.
+ * The history of a block is kept for a while after it leaves the
+ * pool, so that a block that comes back soon is recognized.
+ * The unpinned buffers are kept sorted, so a victim is found in
+ * logarithmic time. The policy ignores the page size of the buffers.
+ */
+public class LruKPolicy implements ReplacementPolicy {
+    /**
+     * References to the same block closer together than this
+     * many references count as one
+     */
+    public static int CORRELATED_PERIOD = 16;
+    private final int k;
+    private long clock = 0;
+    private Map<Buffer, Frame> frames = new IdentityHashMap<>();
+    /**
+     * The unpinned buffers holding blocks, the next victim first
+     */
+    private TreeSet<Frame> candidates = new TreeSet<>(Comparator.comparingLong((Frame f) -> f.kth)
+            .thenComparingLong(f -> f.last).thenComparingInt(f -> f.id));
+    /**
+     * Buffers that hold no block
+     */
+    private Deque<Buffer> empty = new ArrayDeque<>();
+    /**
+     * The times of the last K references to each block, the most recent first
+     */
+    private Map<BlockId, long[]> history;
+
+    /**
+     * @param k the number of references remembered for each block
+     */
+    public LruKPolicy(int k) {
+        this.k = k;
+    }
+
+    @Override
+    public void init(Buffer[] pool) {
+        for (int i = 0; i < pool.length; i++) {
+            frames.put(pool[i], new Frame(pool[i], i));
+            empty.add(pool[i]);
+        }
+        int retained = 2 * pool.length;
+        history = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<BlockId, long[]> eldest) {
+                return size() > retained;
+            }
+        };
+    }
+
+    @Override
+    public void pinned(Buffer buff) {
+        Frame f = frames.get(buff);
+        candidates.remove(f);
+        long[] times = history.computeIfAbsent(buff.block(), b -> new long[k]);
+        clock++;
+        if (times[0] == 0 || clock - times[0] > CORRELATED_PERIOD) {
+            System.arraycopy(times, 0, times, 1, k - 1);
+        }
+        times[0] = clock;
+        f.kth = times[k - 1];
+        f.last = times[0];
+    }
+
+    @Override
+    public void unpinned(Buffer buff) {
+        candidates.add(frames.get(buff));
+    }
+
+    @Override
+    public void discarded(Buffer buff) {
+        candidates.remove(frames.get(buff));
+        empty.addFirst(buff);
+    }
+
+    @Override
+    public void recycled(Buffer buff) {
+        candidates.remove(frames.get(buff));
+    }
+
+    @Override
+    public Buffer victim(int size) {
+        Buffer buff = empty.pollFirst();
+        if (buff != null) {
+            return buff;
+        }
+        Frame f = candidates.pollFirst();
+        return f == null ? null : f.buff;
+    }
+
+    @Override
+    public List<Buffer> nextVictims(int n) {
+        List<Buffer> result = new ArrayList<>();
+        for (Frame f : candidates) {
+            if (result.size() == n) {
+                break;
+            }
+            result.add(f.buff);
+        }
+        return result;
+    }
+
+    /**
+     * The sort key of a buffer: the times of the K-th most recent
+     * and the most recent reference to its block, 0 meaning never
+     */
+    private static class Frame {
+        final Buffer buff;
+        final int id;
+        long kth, last;
+
+        Frame(Buffer buff, int id) {
+            this.buff = buff;
+            this.id = id;
+        }
+    }
+}
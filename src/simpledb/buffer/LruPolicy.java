@@ -0,0 +1,106 @@
+package simpledb.buffer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Replaces the least recently unpinned buffer.
+ * <p>
+ * The unpinned buffers are kept in free lists, one for each
+ * page size, in the order in which they were unpinned, so a
+ * victim is found in constant time. A victim whose page already
+ * has the requested size is preferred.
+ * <p>
+ * A single sequential scan of a large table pushes every
+ * other block out of the pool, however often those blocks
+ * are used, unless the scan pins its blocks through a
+ * {@link BufferRing}; {@link LruKPolicy} and {@link TwoQPolicy}
+ * do not have this weakness.
+ */
+public class LruPolicy implements ReplacementPolicy {
+    /**
+     * Buffers that hold no block
+     */
+    private Deque<Buffer> empty = new ArrayDeque<>();
+    /**
+     * The unpinned buffers holding blocks, keyed by page size,
+     * in the order in which they were unpinned
+     */
+    private Map<Integer, LinkedHashSet<Buffer>> freeFrames = new TreeMap<>();
+
+    @Override
+    public void init(Buffer[] pool) {
+        for (Buffer buff : pool) {
+            empty.add(buff);
+        }
+    }
+
+    @Override
+    public void pinned(Buffer buff) {
+        LinkedHashSet<Buffer> free = freeFrames.get(buff.pageSize());
+        if (free != null) {
+            free.remove(buff);
+        }
+    }
+
+    @Override
+    public void unpinned(Buffer buff) {
+        freeFrames.computeIfAbsent(buff.pageSize(), k -> new LinkedHashSet<>()).add(buff);
+    }
+
+    @Override
+    public void discarded(Buffer buff) {
+        pinned(buff);
+        empty.addFirst(buff);
+    }
+
+    @Override
+    public void recycled(Buffer buff) {
+        pinned(buff);
+    }
+
+    @Override
+    public Buffer victim(int size) {
+        Buffer buff = empty.pollFirst();
+        if (buff != null) {
+            return buff;
+        }
+        LinkedHashSet<Buffer> free = freeFrames.get(size);
+        if (free == null || free.isEmpty()) {
+            free = null;
+            for (LinkedHashSet<Buffer> other : freeFrames.values()) {
+                if (!other.isEmpty()) {
+                    free = other;
+                    break;
+                }
+            }
+            if (free == null) {
+                return null;
+            }
+        }
+        Iterator<Buffer> iter = free.iterator();
+        buff = iter.next();
+        iter.remove();
+        return buff;
+    }
+
+    @Override
+    public List<Buffer> nextVictims(int n) {
+        List<Buffer> result = new ArrayList<>();
+        for (LinkedHashSet<Buffer> free : freeFrames.values()) {
+            for (Buffer buff : free) {
+                if (result.size() == n) {
+                    return result;
+                }
+                result.add(buff);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,87 @@
+package simpledb.buffer;
+
+import simpledb.file.BlockId;
+import simpledb.file.FileMgr;
+import simpledb.server.SimpleDB;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the pin and unpin throughput of several threads
+ * sharing one pool, first with a single partition and then
+ * with the default number of partitions. Each thread pins
+ * blocks of the test file at random, some of them as runs of
+ * consecutive blocks, and checks that every pinned buffer
+ * holds the block it asked for. At the end no buffer may be
+ * left pinned.
+ */
+public class PartitionedPoolTest {
+    private static final int POOL_SIZE = 4096;
+    private static final int NUM_BLOCKS = 8192;
+    private static final int[] THREADS = {1, 2, 4, 8, 16};
+    private static final int OPS_PER_THREAD = 100000;
+
+    public static void main(String[] args) throws Exception {
+        int defaultPartitions = BufferMgr.PARTITIONS;
+        StringBuilder report = new StringBuilder();
+        report.append("available processors: " + Runtime.getRuntime().availableProcessors() + "\n");
+        for (int partitions : new int[]{1, defaultPartitions}) {
+            BufferMgr.PARTITIONS = partitions;
+            SimpleDB db = new SimpleDB("partitionedpooltest-" + partitions, 400, POOL_SIZE);
+            FileMgr fm = db.fileMgr();
+            BufferMgr bm = db.bufferMgr();
+            while (fm.length("testfile") < NUM_BLOCKS) {
+                fm.append("testfile");
+            }
+            for (int n : THREADS) {
+                AtomicInteger errors = new AtomicInteger();
+                run(bm, n, errors); // warm up
+                long start = System.nanoTime();
+                run(bm, n, errors);
+                long elapsed = System.nanoTime() - start;
+                long opsPerMs = (long) n * OPS_PER_THREAD * 1000000 / elapsed;
+                report.append(String.format("%2d partitions, %2d threads: %6d pins/ms, %d errors, %d of %d buffers available%n",
+                        partitions, n, opsPerMs, errors.get(), bm.available(), POOL_SIZE));
+            }
+        }
+        BufferMgr.PARTITIONS = defaultPartitions;
+        System.out.print(report);
+    }
+
+    private static void run(BufferMgr bm, int n, AtomicInteger errors) throws InterruptedException {
+        Thread[] threads = new Thread[n];
+        for (int t = 0; t < n; t++) {
+            long seed = t;
+            threads[t] = new Thread(() -> {
+                Random rand = new Random(seed);
+                for (int i = 0; i < OPS_PER_THREAD; i++) {
+                    int b = rand.nextInt(NUM_BLOCKS - 4);
+                    if (i % 16 == 0) {
+                        Buffer[] buffs = bm.pin(new BlockId("testfile", b), 4);
+                        for (int j = 0; j < buffs.length; j++) {
+                            if (buffs[j].block().number() != b + j) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                        for (Buffer buff : buffs) {
+                            bm.unpin(buff);
+                        }
+                    } else {
+                        Buffer buff = bm.pin(new BlockId("testfile", b));
+                        if (buff.block().number() != b) {
+                            errors.incrementAndGet();
+                        }
+                        bm.unpin(buff);
+                    }
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package simpledb.buffer;
+
+import simpledb.file.BlockId;
+import simpledb.file.FileMgr;
+import simpledb.server.SimpleDB;
+
+/**
+ * Measures the cost of pinning and unpinning a block for
+ * pools of increasing size. A hit pins a block that is already
+ * buffered; a miss cycles through one more block than the pool
+ * holds, so that every pin replaces a buffer and reads a block.
+ * With the page table and free lists both costs should stay
+ * flat as the pool grows.
+ */
+public class PinScalingTest {
+    private static final int[] POOL_SIZES = {8, 1000, 10000, 100000};
+    private static final int OPS = 100000;
+
+    public static void main(String[] args) {
+        // the pins cycle through the first blocks of the file, which looks
+        // like a sequential scan; prefetching would add reads of its own
+        int prefetchBlocks = BufferMgr.PREFETCH_BLOCKS;
+        BufferMgr.PREFETCH_BLOCKS = 0;
+        StringBuilder report = new StringBuilder();
+        for (int size : POOL_SIZES) {
+            SimpleDB db = new SimpleDB("pinscalingtest-" + size, 400, size);
+            FileMgr fm = db.fileMgr();
+            BufferMgr bm = db.bufferMgr();
+            while (fm.length("testfile") < size + 1) {
+                fm.append("testfile");
+            }
+
+            // pin half of the pool's blocks again and again,
+            // then cycle through one block more than the pool holds
+            int resident = Math.max(size / 2, 1);
+            long hitNanos = time(bm, resident);
+            long missNanos = time(bm, size + 1);
+            report.append(String.format("%6d buffers: hit %6d ns/pin, miss %6d ns/pin%n", size, hitNanos, missNanos));
+        }
+        BufferMgr.PREFETCH_BLOCKS = prefetchBlocks;
+        System.out.print(report);
+    }
+
+    /**
+     * Pins and unpins the first n blocks of the test file in turn,
+     * once to warm up and once timed.
+     *
+     * @return the average time of a pin and unpin, in nanoseconds
+     */
+    private static long time(BufferMgr bm, int n) {
+        long start = 0;
+        for (int round = 0; round < 2; round++) {
+            start = System.nanoTime();
+            for (int i = 0; i < OPS; i++) {
+                bm.unpin(bm.pin(new BlockId("testfile", i % n)));
+            }
+        }
+        return (System.nanoTime() - start) / OPS;
+    }
+}
@@ -0,0 +1,94 @@
+package simpledb.buffer;
+
+import simpledb.file.BlockId;
+import simpledb.file.FileMgr;
+import simpledb.file.FileStats;
+import simpledb.file.Page;
+import simpledb.file.StorageMode;
+import simpledb.server.SimpleDB;
+
+/**
+ * Checks that prefetched blocks end up in the pool, read with
+ * few batched calls to the file manager. The test file is written
+ * and read with direct I/O, so that batching matters: there is no
+ * read-ahead of the operating system to hide single-block reads.
+ * <p>
+ * An explicit prefetch of {@link #BATCH} blocks must make them
+ * resident, with one read request, before any of them is pinned.
+ * A sequential scan must then miss only on the two pins that
+ * reveal it; the rest of its blocks must be prefetched, in read
+ * requests of several blocks each. Every block must hold its own
+ * contents.
+ */
+public class PrefetchTest {
+    private static final int BLOCK_SIZE = 4096;
+    private static final int NUM_BLOCKS = 1024;
+    private static final int POOL_SIZE = 256;
+    private static final int BATCH = 8;
+
+    public static void main(String[] args) throws InterruptedException {
+        SimpleDB db = new SimpleDB("prefetchtest", BLOCK_SIZE, POOL_SIZE, StorageMode.DIRECT);
+        FileMgr fm = db.fileMgr();
+        Page p = fm.newPage(BLOCK_SIZE);
+        while (fm.length("testfile") < NUM_BLOCKS) {
+            BlockId blk = fm.append("testfile");
+            p.setInt(0, blk.number());
+            fm.write(blk, p);
+        }
+        FileStats io = fm.ioStats().file("testfile");
+
+        // an explicit prefetch
+        BufferMgr bm = new BufferMgr(fm, db.logMgr(), POOL_SIZE);
+        long reads = io.reads();
+        long requests = io.readLatency().count();
+        BlockId first = new BlockId("testfile", 8 * BATCH);
+        bm.prefetch(first, BATCH);
+        waitForReads(io, reads + BATCH);
+        // counted before the pins below, which look like a sequential scan and prefetch more
+        long batchRequests = io.readLatency().count() - requests;
+        int resident = 0;
+        for (BlockId blk : bm.residentBlocks()) {
+            if (blk.number() >= first.number() && blk.number() < first.number() + BATCH) {
+                resident++;
+            }
+        }
+        int errors = 0;
+        for (int i = 0; i < BATCH; i++) {
+            Buffer buff = bm.pin(new BlockId("testfile", first.number() + i));
+            errors += buff.contents().getInt(0) == first.number() + i ? 0 : 1;
+            bm.unpin(buff);
+        }
+        System.out.println("prefetch of " + BATCH + " blocks: " + resident + " resident (expected " + BATCH
+                + "), " + batchRequests + " read requests (expected 1), "
+                + bm.stats().misses("testfile") + " misses (expected 0), " + errors + " errors");
+
+        // a sequential scan
+        bm = new BufferMgr(fm, db.logMgr(), POOL_SIZE);
+        reads = io.reads();
+        requests = io.readLatency().count();
+        errors = 0;
+        for (int b = 0; b < NUM_BLOCKS; b++) {
+            Buffer buff = bm.pin(new BlockId("testfile", b));
+            errors += buff.contents().getInt(0) == b ? 0 : 1;
+            bm.unpin(buff);
+        }
+        long scanReads = io.reads() - reads;
+        long scanRequests = io.readLatency().count() - requests;
+        System.out.println("scan of " + NUM_BLOCKS + " blocks: " + bm.stats().misses("testfile")
+                + " misses (expected 2), " + bm.stats().file("testfile").prefetches() + " prefetched (expected "
+                + (NUM_BLOCKS - 2) + "), " + scanReads + " blocks read in " + scanRequests + " requests ("
+                + (scanRequests > 0 && scanReads / scanRequests >= BATCH / 2 ? "batched" : "NOT batched")
+                + "), " + errors + " errors");
+    }
+
+    /**
+     * Waits until the background reads have read the specified
+     * number of blocks of the file, or for at most five seconds.
+     */
+    private static void waitForReads(FileStats io, long reads) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (io.reads() < reads && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package simpledb.buffer;
+
+import java.util.List;
+
+/**
+ * Decides which unpinned buffer the buffer manager reuses
+ * when a block that is not buffered has to be read.
+ * <p>
+ * The buffer manager tells the policy when a buffer's pin count
+ * goes from 0 to 1 (a reference to the buffer's block) and back
+ * to 0, and asks it for a victim when it needs a frame.
+ * Each partition of the pool has its own policy, and all methods
+ * are called while holding the partition's lock,
+ * so implementations need no synchronization of their own.
+ * <p>
+ * The policy is chosen when the database starts,
+ * see {@link simpledb.server.SimpleDB#REPLACEMENT_POLICY}.
+ */
+public interface ReplacementPolicy {
+    /**
+     * The available replacement policies.
+     */
+    enum Kind {
+        /**
+         * Replace the least recently unpinned buffer, see {@link LruPolicy}
+         */
+        LRU,
+        /**
+         * Sweep a clock hand over the buffers, giving recently
+         * referenced ones a second chance, see {@link ClockPolicy}
+         */
+        CLOCK,
+        /**
+         * Replace the buffer whose second most recent reference
+         * is the oldest, see {@link LruKPolicy}
+         */
+        LRU_K,
+        /**
+         * Keep blocks referenced only once in a separate FIFO queue,
+         * see {@link TwoQPolicy}
+         */
+        TWO_Q;
+
+        /**
+         * @return a new policy of this kind
+         */
+        public ReplacementPolicy newPolicy() {
+            switch (this) {
+                case CLOCK:
+                    return new ClockPolicy();
+                case LRU_K:
+                    return new LruKPolicy(2);
+                case TWO_Q:
+                    return new TwoQPolicy();
+                default:
+                    return new LruPolicy();
+            }
+        }
+    }
+
+    /**
+     * Called once with all the buffers of the pool,
+     * none of which is assigned to a block yet.
+     *
+     * @param pool the buffers of the pool
+     */
+    void init(Buffer[] pool);
+
+    /**
+     * Called when the buffer's pin count goes from 0 to 1,
+     * either because its block was requested again or because
+     * the buffer was just assigned to a new block.
+     *
+     * @param buff the pinned buffer
+     */
+    void pinned(Buffer buff);
+
+    /**
+     * Called when the buffer's pin count goes back to 0,
+     * which makes it a candidate for replacement.
+     *
+     * @param buff the unpinned buffer
+     */
+    void unpinned(Buffer buff);
+
+    /**
+     * Called when an unpinned buffer is detached from its block
+     * without being replaced, because the block's file is deleted.
+     * The buffer should be reused before any buffer holding a block.
+     *
+     * @param buff the detached buffer
+     */
+    void discarded(Buffer buff);
+
+    /**
+     * Called when a {@link BufferRing} takes an unpinned buffer
+     * to assign it to another block, instead of asking for a victim.
+     * The policy should forget the buffer's block, as if it had
+     * chosen the buffer itself; the new block is announced by
+     * {@link #pinned(Buffer)} as usual.
+     *
+     * @param buff the buffer taken by the ring
+     */
+    void recycled(Buffer buff);
+
+    /**
+     * Chooses an unpinned buffer to be assigned to another block
+     * and forgets the block it holds. A policy may prefer a buffer
+     * whose page already has the specified size, so that files
+     * with different block sizes mostly keep to their own frames.
+     * Returns null only if no buffer is unpinned.
+     *
+     * @param size the block size of the block to be read
+     * @return the chosen buffer, or null if all buffers are pinned
+     */
+    Buffer victim(int size);
+
+    /**
+     * Returns the unpinned buffers holding blocks that the policy
+     * would choose as victims next, the first victim first,
+     * without forgetting them. The background writer cleans these
+     * buffers ahead of time, so that a miss finds a clean victim.
+     * The answer may ignore the page size preference of {@link #victim(int)}.
+     *
+     * @param n the largest number of buffers to return
+     * @return at most n unpinned buffers, in victim order
+     */
+    List<Buffer> nextVictims(int n);
+}
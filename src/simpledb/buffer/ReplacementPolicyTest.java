@@ -0,0 +1,87 @@
+package simpledb.buffer;
+
+import java.util.Random;
+import simpledb.file.BlockId;
+import simpledb.file.FileMgr;
+import simpledb.file.Page;
+import simpledb.server.SimpleDB;
+
+/**
+ * Compares the hit ratios of the replacement policies on a mixed
+ * workload: sequential scans of a large table, read in groups of
+ * consecutive blocks as a table scan's read-ahead does, interleaved
+ * with point lookups that mostly go to a small set of hot blocks,
+ * like catalog blocks and index roots.
+ * Every pinned block is also checked to hold its own contents.
+ */
+public class ReplacementPolicyTest {
+    private static final int POOL_SIZE = 64;
+    private static final int HOT_BLOCKS = 24;
+    private static final int SCAN_BLOCKS = 2000;
+    private static final int ROUNDS = 20000;
+    private static final int READ_AHEAD = 4;
+
+    public static void main(String[] args) {
+        SimpleDB db = new SimpleDB("replacementpolicytest", 400, 8);
+        FileMgr fm = db.fileMgr();
+        Page p = new Page(fm.blockSize());
+        for (String fileName : new String[]{"hotfile", "scanfile"}) {
+            int n = fileName.equals("hotfile") ? HOT_BLOCKS : SCAN_BLOCKS;
+            while (fm.length(fileName) < n) {
+                BlockId blk = fm.append(fileName);
+                p.setInt(0, blk.number());
+                fm.write(blk, p);
+            }
+        }
+
+        // the hit ratios count the reads of the pinned blocks only,
+        // so the buffer managers must not prefetch blocks of their own
+        int prefetchBlocks = BufferMgr.PREFETCH_BLOCKS;
+        BufferMgr.PREFETCH_BLOCKS = 0;
+        StringBuilder report = new StringBuilder();
+        for (ReplacementPolicy.Kind kind : ReplacementPolicy.Kind.values()) {
+            BufferMgr bm = new BufferMgr(fm, db.logMgr(), POOL_SIZE, kind);
+            Random rand = new Random(42);
+            long hotReads = fm.ioStats().reads("hotfile");
+            long scanReads = fm.ioStats().reads("scanfile");
+            int hotPins = 0, scanPins = 0, errors = 0;
+            int scanPos = 0;
+            for (int r = 0; r < ROUNDS; r++) {
+                // a point lookup: 90% to the hot blocks, the rest anywhere in the large table
+                BlockId blk = rand.nextInt(10) < 9
+                        ? new BlockId("hotfile", (int) (HOT_BLOCKS * Math.pow(rand.nextDouble(), 2)))
+                        : new BlockId("scanfile", rand.nextInt(SCAN_BLOCKS));
+                Buffer buff = bm.pin(blk);
+                errors += check(buff, blk);
+                bm.unpin(buff);
+                if (blk.fileName().equals("hotfile")) {
+                    hotPins++;
+                } else {
+                    scanPins++;
+                }
+                // every other round, the scan moves on by a read-ahead group
+                if (r % 2 == 0) {
+                    BlockId first = new BlockId("scanfile", scanPos);
+                    Buffer[] buffs = bm.pin(first, READ_AHEAD);
+                    for (int i = 0; i < READ_AHEAD; i++) {
+                        errors += check(buffs[i], new BlockId("scanfile", scanPos + i));
+                        bm.unpin(buffs[i]);
+                    }
+                    scanPins += READ_AHEAD;
+                    scanPos = (scanPos + READ_AHEAD) % SCAN_BLOCKS;
+                }
+            }
+            hotReads = fm.ioStats().reads("hotfile") - hotReads;
+            scanReads = fm.ioStats().reads("scanfile") - scanReads;
+            report.append(String.format("%-6s hit ratio %5.1f%% (hot blocks %5.1f%%), %d errors%n", kind,
+                    100.0 * (1 - (double) (hotReads + scanReads) / (hotPins + scanPins)),
+                    100.0 * (1 - (double) hotReads / hotPins), errors));
+        }
+        BufferMgr.PREFETCH_BLOCKS = prefetchBlocks;
+        System.out.print(report);
+    }
+
+    private static int check(Buffer buff, BlockId blk) {
+        return buff.block().equals(blk) && buff.contents().getInt(0) == blk.number() ? 0 : 1;
+    }
+}
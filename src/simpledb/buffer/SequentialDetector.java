@@ -0,0 +1,94 @@
+package simpledb.buffer;
+
+import simpledb.file.BlockId;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recognizes sequential scans in the pins of a buffer manager.
+ * <p>
+ * For each file the detector remembers the last block pinned and
+ * how far ahead of it blocks have already been prefetched. Once two
+ * consecutive blocks have been pinned in order, it asks for the
+ * next blocks up to a window ahead of the scan; after that, each
+ * time the scan gets within half a window of the prefetched blocks
+ * it asks for the next half window, so the blocks are read in a few
+ * large batches well before the scan needs them. Pinning the same
+ * block again changes nothing, and any other block starts over.
+ * <p>
+ * Two scans of the same file at once interleave their pins,
+ * which looks like random access, so neither is prefetched.
+ */
+class SequentialDetector {
+    private final int window;
+    private final Map<String, Stream> streams = new ConcurrentHashMap<>();
+
+    /**
+     * @param window how many blocks ahead of a sequential scan to prefetch
+     */
+    SequentialDetector(int window) {
+        this.window = window;
+    }
+
+    /**
+     * @return how many blocks ahead of a sequential scan to prefetch
+     */
+    int window() {
+        return window;
+    }
+
+    /**
+     * Notes a pin of the specified block and decides whether
+     * to prefetch. If so, the blocks to prefetch run from the
+     * returned block up to, but not including, the block
+     * window blocks after the pinned one.
+     *
+     * @param blk the pinned block
+     * @return the first block to prefetch, or null if there is nothing to prefetch
+     */
+    BlockId pinned(BlockId blk) {
+        Stream s = streams.computeIfAbsent(blk.fileName(), f -> new Stream());
+        int n = blk.number();
+        synchronized (s) {
+            if (n == s.last) {
+                return null;
+            }
+            if (n == s.last + 1) {
+                s.run++;
+            } else {
+                s.run = 1;
+                s.end = n + 1;
+            }
+            s.last = n;
+            // at most half a window left ahead of the scan: ask for exactly half a window more,
+            // so that the requests fill whole prefetch batches
+            if (s.run < 2 || n + 1 + window / 2 < s.end) {
+                return null;
+            }
+            int start = Math.max(s.end, n + 1);
+            s.end = n + 1 + window;
+            return new BlockId(blk.fileName(), start);
+        }
+    }
+
+    /**
+     * Forgets the scan of the specified file, which is being deleted.
+     *
+     * @param fileName the name of the file
+     */
+    void forget(String fileName) {
+        streams.remove(fileName);
+    }
+
+    private static class Stream {
+        /**
+         * The last block pinned, and the number of blocks pinned in order up to it
+         */
+        int last = -2, run = 0;
+        /**
+         * The block after the last one prefetched
+         */
+        int end = 0;
+    }
+}
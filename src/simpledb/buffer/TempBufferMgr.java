@@ -0,0 +1,92 @@
+package simpledb.buffer;
+
+import simpledb.file.BlockId;
+import simpledb.file.FileMgr;
+import simpledb.log.LogMgr;
+
+/**
+ * Manages the buffers of temporary tables.
+ * <p>
+ * A temporary table lives only as long as the query that
+ * materializes it, so its blocks need none of the guarantees
+ * that the transaction gives database blocks:
+ * they are not locked, their changes are not logged,
+ * and a modified buffer is written to disk, without a sync,
+ * only when its frame is needed for another block.
+ * When the table is dropped its buffers are discarded
+ * unwritten and its file is deleted.
+ * <p>
+ * The temporary tables get their own fixed number of buffers,
+ * so that a large sort neither waits for nor pushes out
+ * the database blocks in the main buffer pool.
+ *
+ * @see simpledb.materialize.TempTable
+ */
+public class TempBufferMgr extends BufferMgr {
+    /**
+     * The transaction number recorded in modified temporary buffers.
+     * Transaction numbers start at 1, so no commit or rollback
+     * ever flushes these buffers.
+     */
+    private static final int TEMP_TXNUM = 0;
+    private FileMgr fm;
+
+    /**
+     * Creates a buffer manager with the specified number of
+     * buffers for temporary tables.
+     *
+     * @param numbuffs the number of buffer slots to allocate
+     */
+    public TempBufferMgr(FileMgr fm, LogMgr lm, int numbuffs) {
+        super(fm, lm, numbuffs);
+        this.fm = fm;
+    }
+
+    /**
+     * Marks the buffer as modified. No log record is written,
+     * so the buffer can be written to disk at any time.
+     *
+     * @param buff a pinned buffer of a temporary table
+     */
+    public void setModified(Buffer buff) {
+        buff.setModified(TEMP_TXNUM, -1);
+    }
+
+    /**
+     * Appends a new block to the specified temporary file,
+     * without locking the end of the file.
+     *
+     * @param fileName the name of the file
+     * @return a reference to the new block
+     */
+    public BlockId append(String fileName) {
+        return fm.append(fileName);
+    }
+
+    /**
+     * @param fileName the name of the file
+     * @return the number of blocks in the temporary file
+     */
+    public int size(String fileName) {
+        return fm.length(fileName);
+    }
+
+    /**
+     * @param fileName the name of the file
+     * @return the size of the blocks of the temporary file
+     */
+    public int blockSize(String fileName) {
+        return fm.blockSize(fileName);
+    }
+
+    /**
+     * Discards the buffers of the specified temporary file
+     * and deletes the file. None of its blocks may be pinned.
+     *
+     * @param fileName the name of the file
+     */
+    public void drop(String fileName) {
+        discard(fileName);
+        fm.delete(fileName);
+    }
+}
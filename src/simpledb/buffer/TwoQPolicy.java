@@ -0,0 +1,154 @@
+package simpledb.buffer;
+
+import simpledb.file.BlockId;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * The 2Q replacement policy (Johnson and Shasha).
+ * <p>
+ * A block read into the pool for the first time goes into the
+ * FIFO queue A1in. When it is replaced from there, its id is
+ * remembered in the ghost queue A1out; if the block is read again
+ * while its id is still in A1out, it has proved to be used more
+ * than once and goes into the LRU queue Am. Victims are taken from
+ * A1in while it holds more than {@link #IN_FRACTION} of the pool,
+ * and from Am otherwise. The blocks of a one-off scan therefore
+ * pass through A1in without disturbing the frequently used
+ * blocks in Am. References to a block while it is in A1in are
+ * taken as correlated and do not promote it.
+ * The policy ignores the page size of the buffers.
+ */
+public class TwoQPolicy implements ReplacementPolicy {
+    /**
+     * The share of the pool reserved for A1in
+     */
+    public static double IN_FRACTION = 0.25;
+    /**
+     * The number of ids A1out remembers, as a share of the pool size
+     */
+    public static double OUT_FRACTION = 0.5;
+    private int kin, kout;
+    private LinkedHashSet<Buffer> a1in = new LinkedHashSet<>();
+    private LinkedHashSet<Buffer> am = new LinkedHashSet<>();
+    private LinkedHashSet<BlockId> a1out = new LinkedHashSet<>();
+    /**
+     * Buffers that hold no block
+     */
+    private Deque<Buffer> empty = new ArrayDeque<>();
+
+    @Override
+    public void init(Buffer[] pool) {
+        kin = Math.max(1, (int) (pool.length * IN_FRACTION));
+        kout = Math.max(1, (int) (pool.length * OUT_FRACTION));
+        for (Buffer buff : pool) {
+            empty.add(buff);
+        }
+    }
+
+    @Override
+    public void pinned(Buffer buff) {
+        if (am.remove(buff)) {
+            am.add(buff);
+        } else if (!a1in.contains(buff)) {
+            // the buffer was just assigned to the block
+            if (a1out.remove(buff.block())) {
+                am.add(buff);
+            } else {
+                a1in.add(buff);
+            }
+        }
+    }
+
+    @Override
+    public void unpinned(Buffer buff) {
+    }
+
+    @Override
+    public void discarded(Buffer buff) {
+        a1in.remove(buff);
+        am.remove(buff);
+        empty.addFirst(buff);
+    }
+
+    /**
+     * Unlike a victim taken from A1in, the block is not remembered
+     * in A1out: the ring's scan does not read it again.
+     */
+    @Override
+    public void recycled(Buffer buff) {
+        a1in.remove(buff);
+        am.remove(buff);
+    }
+
+    @Override
+    public Buffer victim(int size) {
+        Buffer buff = empty.pollFirst();
+        if (buff != null) {
+            return buff;
+        }
+        if (a1in.size() > kin) {
+            buff = evictFrom(a1in);
+        }
+        if (buff == null) {
+            buff = evictFrom(am);
+        }
+        if (buff == null) {
+            buff = evictFrom(a1in);
+        }
+        return buff;
+    }
+
+    /**
+     * Victims come from A1in while it is too large, then from Am,
+     * then from what is left of A1in.
+     */
+    @Override
+    public List<Buffer> nextVictims(int n) {
+        List<Buffer> in = unpinned(a1in);
+        int fromIn = Math.min(Math.max(0, a1in.size() - kin), in.size());
+        List<Buffer> result = new ArrayList<>(in.subList(0, fromIn));
+        result.addAll(unpinned(am));
+        result.addAll(in.subList(fromIn, in.size()));
+        return result.size() > n ? result.subList(0, n) : result;
+    }
+
+    private List<Buffer> unpinned(LinkedHashSet<Buffer> queue) {
+        List<Buffer> result = new ArrayList<>();
+        for (Buffer buff : queue) {
+            if (!buff.isPinned()) {
+                result.add(buff);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes the first unpinned buffer from the queue,
+     * remembering its block in A1out if the queue is A1in.
+     */
+    private Buffer evictFrom(LinkedHashSet<Buffer> queue) {
+        Iterator<Buffer> iter = queue.iterator();
+        while (iter.hasNext()) {
+            Buffer buff = iter.next();
+            if (!buff.isPinned()) {
+                iter.remove();
+                if (queue == a1in) {
+                    a1out.add(buff.block());
+                    if (a1out.size() > kout) {
+                        Iterator<BlockId> oldest = a1out.iterator();
+                        oldest.next();
+                        oldest.remove();
+                    }
+                }
+                return buff;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,165 @@
+package simpledb.buffer;
+
+import java.io.File;
+import java.io.IOException;
+import simpledb.file.BlockId;
+import simpledb.file.FileMgr;
+import simpledb.file.Page;
+import simpledb.record.Layout;
+import simpledb.record.Schema;
+import simpledb.record.TableScan;
+import simpledb.server.SimpleDB;
+import simpledb.tx.Transaction;
+
+/**
+ * Shows that a pool warmed up from a saved hot-page list
+ * serves the hot blocks without reading them again.
+ * <p>
+ * A pool of {@link #POOL_SIZE} buffers reads a large file once and
+ * then keeps pinning a small set of hot blocks; its list is saved,
+ * and a file it held blocks of is deleted. A new pool of half the
+ * size is then warmed up from the list. The test reports how many
+ * blocks the warm-up asked for, and how many reads the hot blocks
+ * cost afterwards, compared with a cold pool of the same size.
+ * The hot blocks must all make it into the smaller pool, the
+ * deleted file must not come back, and every pinned block must
+ * hold its own contents. Finally a database whose hot table has
+ * 4096-byte blocks is opened again: its pool must hold the
+ * table as soon as it is open, read with the right block size.
+ */
+public class WarmUpTest {
+    private static final int POOL_SIZE = 256;
+    private static final int HOT_BLOCKS = 64;
+    private static final int SCAN_BLOCKS = 1024;
+    private static final int DROPPED_BLOCKS = 16;
+    private static final int WIDE_RECORDS = 3000;
+
+    public static void main(String[] args) throws Exception {
+        SimpleDB db = new SimpleDB("warmuptest", 400, 8);
+        FileMgr fm = db.fileMgr();
+        Page p = new Page(fm.blockSize());
+        for (String fileName : new String[]{"hotfile", "scanfile", "dropfile"}) {
+            int n = fileName.equals("hotfile") ? HOT_BLOCKS
+                    : fileName.equals("scanfile") ? SCAN_BLOCKS : DROPPED_BLOCKS;
+            while (fm.length(fileName) < n) {
+                BlockId blk = fm.append(fileName);
+                p.setInt(0, blk.number());
+                fm.write(blk, p);
+            }
+        }
+
+        // the workload before the restart
+        BufferMgr bm = new BufferMgr(fm, db.logMgr(), POOL_SIZE);
+        for (int i = 0; i < SCAN_BLOCKS; i++) {
+            bm.unpin(bm.pin(new BlockId("scanfile", i)));
+        }
+        for (int i = 0; i < DROPPED_BLOCKS; i++) {
+            bm.unpin(bm.pin(new BlockId("dropfile", i)));
+        }
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < HOT_BLOCKS; i++) {
+                bm.unpin(bm.pin(new BlockId("hotfile", i)));
+            }
+        }
+        HotPageList list = new HotPageList(bm, new File("warmuptest", "warmuptest.hot"));
+        list.save();
+        bm.discard("dropfile");
+        fm.delete("dropfile");
+        System.out.println("saved " + list.load().size() + " blocks (expected " + POOL_SIZE + ")");
+
+        // the restart, with a smaller pool
+        BufferMgr warm = new BufferMgr(fm, db.logMgr(), POOL_SIZE / 2);
+        long reads = totalReads(fm);
+        int requested = new HotPageList(warm, new File("warmuptest", "warmuptest.hot")).warmUp(fm);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (totalReads(fm) - reads < requested && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        System.out.println("warm-up asked for " + requested + " blocks (expected " + POOL_SIZE / 2
+                + ") and read " + (totalReads(fm) - reads)
+                + "; dropped file recreated: " + new File("warmuptest", "dropfile").exists());
+
+        for (BufferMgr pool : new BufferMgr[]{warm, new BufferMgr(fm, db.logMgr(), POOL_SIZE / 2)}) {
+            long hotReads = fm.ioStats().reads("hotfile");
+            int errors = 0;
+            for (int i = 0; i < HOT_BLOCKS; i++) {
+                BlockId blk = new BlockId("hotfile", i);
+                Buffer buff = pool.pin(blk);
+                errors += buff.block().equals(blk) && buff.contents().getInt(0) == i ? 0 : 1;
+                pool.unpin(buff);
+            }
+            System.out.println((pool == warm ? "warm" : "cold") + " pool: " + HOT_BLOCKS
+                    + " hot pins cost " + (fm.ioStats().reads("hotfile") - hotReads)
+                    + " reads, " + errors + " errors");
+        }
+
+        restartDatabase();
+    }
+
+    /**
+     * Reopens a database whose hot table has blocks larger than the
+     * default: the pool must be warm when the constructor returns,
+     * and the table must be read with its own block size.
+     */
+    private static void restartDatabase() {
+        SimpleDB.BUFFER_SIZE = POOL_SIZE / 2;
+        SimpleDB db = new SimpleDB("warmupdbtest");
+        Layout layout;
+        if (db.fileMgr().isNew()) {
+            Schema sch = new Schema();
+            sch.addIntField("A");
+            sch.addStringField("B", 20);
+            Transaction tx = db.newTx();
+            db.mdMgr().createTable("wide", sch, tx, false, 4096);
+            layout = db.mdMgr().getLayout("wide", tx);
+            TableScan ts = new TableScan(tx, "wide", layout);
+            for (int i = 0; i < WIDE_RECORDS; i++) {
+                ts.insert();
+                ts.setInt("A", i);
+                ts.setString("B", "rec" + i);
+            }
+            ts.close();
+            tx.commit();
+        }
+        // a table scan would go through a ring; the whole table is hot
+        for (int i = 0; i < db.fileMgr().length("wide.tbl"); i++) {
+            BufferMgr bm = db.bufferMgr();
+            bm.unpin(bm.pin(new BlockId("wide.tbl", i)));
+        }
+        db.hotPages().stopSaving();
+        try {
+            db.hotPages().save();
+        } catch (IOException e) {
+            throw new RuntimeException("cannot save the hot pages");
+        }
+
+        SimpleDB restarted = new SimpleDB("warmupdbtest");
+        restarted.hotPages().stopSaving();
+        FileMgr fm = restarted.fileMgr();
+        BufferMgr pool = restarted.bufferMgr();
+        int warm = 0;
+        for (BlockId blk : pool.residentBlocks()) {
+            warm += blk.fileName().equals("wide.tbl") ? 1 : 0;
+        }
+        long misses = pool.stats().misses("wide.tbl");
+        Transaction tx = restarted.newTx();
+        layout = restarted.mdMgr().getLayout("wide", tx);
+        TableScan ts = new TableScan(tx, "wide", layout);
+        int count = 0;
+        int errors = 0;
+        while (ts.next()) {
+            errors += ts.getString("B").equals("rec" + ts.getInt("A")) ? 0 : 1;
+            count++;
+        }
+        ts.close();
+        tx.commit();
+        System.out.println("restarted database: " + warm + " of " + fm.length("wide.tbl") + " blocks of "
+                + fm.blockSize("wide.tbl") + " bytes warm (expected all of 4096 bytes), "
+                + (pool.stats().misses("wide.tbl") - misses) + " misses (expected 0), " + count + " records (expected "
+                + WIDE_RECORDS + "), " + errors + " errors");
+    }
+
+    private static long totalReads(FileMgr fm) {
+        return fm.ioStats().reads("hotfile") + fm.ioStats().reads("scanfile");
+    }
+}
@@ -0,0 +1,223 @@
+package simpledb.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于AsynchronousFileChannel的文件管理器。
+ * <p>
+ * readAsync和writeAsync立即返回，读写在后台完成。
+ * 缓冲区管理器给缓冲区分配块时只是开始读取，调用者可以先做别的工作，
+ * 第一次访问缓冲区的内容时才等待读取完成。
+ * <p>
+ * 同步的read和write就是等待异步读写完成；追加块、获取文件长度和压缩文件的读写仍然使用父类的FileChannel。
+ */
+public class AsyncFileMgr extends FileMgr {
+    private File dbDirectory;
+    private Map<String, AsynchronousFileChannel> asyncFiles = new ConcurrentHashMap<>();
+
+    public AsyncFileMgr(File dbDirectory, int blockSize) {
+        this(dbDirectory, blockSize, SyncPolicy.PER_WRITE);
+    }
+
+    public AsyncFileMgr(File dbDirectory, int blockSize, SyncPolicy syncPolicy) {
+        super(dbDirectory, blockSize, syncPolicy);
+        this.dbDirectory = dbDirectory;
+    }
+
+    @Override
+    public void read(BlockId blk, Page p) {
+        await(readAsync(blk, p));
+    }
+
+    @Override
+    public void write(BlockId blk, Page p) {
+        await(writeAsync(blk, p));
+    }
+
+    /**
+     * 开始把指定块读入内存页。一次读不满整个块时会继续读剩下的部分，读到文件末尾时结束。
+     *
+     * @param blk 出发磁盘块
+     * @param p   目的内存页，在future完成之前不能访问
+     * @return 读取完成时结束的future
+     */
+    @Override
+    public CompletableFuture<Void> readAsync(BlockId blk, Page p) {
+        if (isCompressed(blk.fileName())) {
+            return syncRead(blk, p);
+        }
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        long start = System.nanoTime();
+        try {
+            AsynchronousFileChannel fc = getAsyncFile(blk.fileName());
+            long pos = (long) blk.number() * blockSize(blk.fileName());
+            ByteBuffer bb = p.contents();
+            fc.read(bb, pos, bb, new CompletionHandler<Integer, ByteBuffer>() {
+                @Override
+                public void completed(Integer n, ByteBuffer buf) {
+                    if (n >= 0 && buf.hasRemaining()) {
+                        fc.read(buf, pos + buf.position(), buf, this);
+                        return;
+                    }
+                    recordRead(blk.fileName(), 1, buf.position(), start);
+                    result.complete(null);
+                }
+
+                @Override
+                public void failed(Throwable exc, ByteBuffer buf) {
+                    result.completeExceptionally(new RuntimeException("cannot read block " + blk));
+                }
+            });
+        } catch (IOException e) {
+            result.completeExceptionally(new RuntimeException("cannot read block " + blk));
+        }
+        return result;
+    }
+
+    /**
+     * 对每一页分别发起异步读，不需要后台线程
+     *
+     * @param first 第一个要读取的块
+     * @param pages 目的内存页，在future完成之前不能访问
+     * @return 所有页都读取完成时结束的future
+     */
+    @Override
+    public CompletableFuture<Void> readBlocksAsync(BlockId first, Page[] pages) {
+        CompletableFuture<?>[] reads = new CompletableFuture<?>[pages.length];
+        for (int i = 0; i < pages.length; i++) {
+            reads[i] = readAsync(new BlockId(first.fileName(), first.number() + i), pages[i]);
+        }
+        return CompletableFuture.allOf(reads);
+    }
+
+    /**
+     * 开始把内存页写入指定块
+     *
+     * @param blk 指定的磁盘上的文件的块的对象
+     * @param p   指定的内存上的缓冲区的对象，在future完成之前不能修改
+     * @return 写入完成时结束的future
+     */
+    @Override
+    public CompletableFuture<Void> writeAsync(BlockId blk, Page p) {
+        if (isCompressed(blk.fileName())) {
+            return syncWrite(blk, p);
+        }
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        long start = System.nanoTime();
+        try {
+            AsynchronousFileChannel fc = getAsyncFile(blk.fileName());
+            long pos = (long) blk.number() * blockSize(blk.fileName());
+            ByteBuffer bb = p.contents();
+            fc.write(bb, pos, bb, new CompletionHandler<Integer, ByteBuffer>() {
+                @Override
+                public void completed(Integer n, ByteBuffer buf) {
+                    if (buf.hasRemaining()) {
+                        fc.write(buf, pos + buf.position(), buf, this);
+                        return;
+                    }
+                    noteWrite(blk);
+                    recordWrite(blk.fileName(), 1, buf.position(), start);
+                    result.complete(null);
+                }
+
+                @Override
+                public void failed(Throwable exc, ByteBuffer buf) {
+                    result.completeExceptionally(new RuntimeException("cannot write block" + blk));
+                }
+            });
+        } catch (IOException e) {
+            result.completeExceptionally(new RuntimeException("cannot write block" + blk));
+        }
+        return result;
+    }
+
+    @Override
+    protected void force(String fileName) throws IOException {
+        getAsyncFile(fileName).force(false);
+        super.force(fileName);
+    }
+
+    /**
+     * 获取文件的异步通道，PER_WRITE策略下以SYNC方式打开
+     *
+     * @param fileName 文件名
+     * @return 文件的异步通道
+     * @throws IOException IO异常
+     */
+    private AsynchronousFileChannel getAsyncFile(String fileName) throws IOException {
+        AsynchronousFileChannel fc = asyncFiles.get(fileName);
+        if (fc == null) {
+            synchronized (asyncFiles) {
+                fc = asyncFiles.get(fileName);
+                if (fc == null) {
+                    OpenOption[] options = forcesEachWrite(fileName)
+                            ? new OpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                    StandardOpenOption.CREATE, StandardOpenOption.SYNC}
+                            : new OpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                    StandardOpenOption.CREATE};
+                    fc = AsynchronousFileChannel.open(new File(dbDirectory, fileName).toPath(), options);
+                    asyncFiles.put(fileName, fc);
+                }
+            }
+        }
+        return fc;
+    }
+
+    @Override
+    public void delete(String fileName) {
+        AsynchronousFileChannel fc = asyncFiles.remove(fileName);
+        if (fc != null) {
+            try {
+                fc.close();
+            } catch (IOException e) {
+                throw new RuntimeException("cannot delete " + fileName);
+            }
+        }
+        super.delete(fileName);
+    }
+
+    /**
+     * 压缩存储的文件需要先查块映射表，用父类的通道同步地读写
+     */
+    private CompletableFuture<Void> syncRead(BlockId blk, Page p) {
+        try {
+            super.read(blk, p);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private CompletableFuture<Void> syncWrite(BlockId blk, Page p) {
+        try {
+            super.write(blk, p);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * 等待future完成，把失败原因作为RuntimeException抛出
+     */
+    private static void await(CompletableFuture<Void> f) {
+        try {
+            f.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
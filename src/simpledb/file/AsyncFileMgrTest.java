@@ -0,0 +1,50 @@
+package simpledb.file;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 比较逐块同步读取和先发起所有异步读取再统一等待的耗时，并检查读到的内容。
+ */
+public class AsyncFileMgrTest {
+    private static final int NUM_BLOCKS = 2000;
+
+    public static void main(String[] args) {
+        AsyncFileMgr fm = new AsyncFileMgr(new File("asyncfiletest"), 400);
+        Page p = new Page(fm.blockSize());
+        for (int b = 0; b < NUM_BLOCKS; b++) {
+            BlockId blk = fm.append("testfile");
+            p.setInt(0, blk.number());
+            fm.writeAsync(blk, p).join();
+        }
+
+        Page[] pages = new Page[NUM_BLOCKS];
+        for (int b = 0; b < NUM_BLOCKS; b++) {
+            pages[b] = new Page(fm.blockSize());
+        }
+
+        long start = System.nanoTime();
+        for (int b = 0; b < NUM_BLOCKS; b++) {
+            fm.read(new BlockId("testfile", b), pages[b]);
+        }
+        long syncTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        CompletableFuture<?>[] loads = new CompletableFuture<?>[NUM_BLOCKS];
+        for (int b = 0; b < NUM_BLOCKS; b++) {
+            loads[b] = fm.readAsync(new BlockId("testfile", b), pages[b]);
+        }
+        CompletableFuture.allOf(loads).join();
+        long asyncTime = System.nanoTime() - start;
+
+        int errors = 0;
+        for (int b = 0; b < NUM_BLOCKS; b++) {
+            if (pages[b].getInt(0) != b) {
+                errors++;
+            }
+        }
+        System.out.println("synchronous reads: " + (syncTime / 1_000_000) + " ms");
+        System.out.println("overlapped asynchronous reads: " + (asyncTime / 1_000_000) + " ms");
+        System.out.println(errors + " errors");
+    }
+}
@@ -69,9 +69,9 @@ public class BlockId {
 
     @Override
     public int hashCode() {
-        // 返回此字符串的哈希码。 String对象的哈希代码计算为
-        // s[0]*31^(n-1) + s[1]*31^(n-2) + ... + s[n-1]
-        // 使用int算术，其中s[i]是字符串的第i个字符， n是字符串的长度， ^表示取幂。 （空字符串的哈希值为零）
-        return toString().hashCode();
+        // 直接由文件名的哈希码和块号计算，不创建toString()的字符串；
+        // 缓冲区管理器的页表每次pin都要计算一次块的哈希码。
+        // String的哈希码在第一次计算后缓存在String对象中
+        return 31 * fileName.hashCode() + blkNum;
     }
 }
@@ -0,0 +1,223 @@
+package simpledb.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 压缩文件的块映射表。
+ * <p>
+ * 压缩后的块长度各不相同，不能再用块号乘以块大小来定位，
+ * 所以每个压缩文件都有一个同名加".bmap"后缀的映射文件，第i项记录块i在数据文件中的位置：
+ * 偏移(long)、压缩后的长度(int)和为它分配的空间(int)，每项ENTRY_SIZE个字节。
+ * <p>
+ * 长度为0表示全0的块(还没有写过的块也是这样)，数据文件中不占空间；
+ * 长度等于块大小表示该块压缩不了，按原样存储。
+ * <p>
+ * 块的新内容从不覆盖旧的内容：{@link #allocate(int)}总是分配新的空间，调用者写入(并同步)数据之后，
+ * {@link #commit(int, long, int)}才让映射项指向新的空间。这样崩溃时磁盘上的映射项要么还指向完整的旧内容，
+ * 要么已经指向完整的新内容。旧的空间要等不再指向它的映射项同步到磁盘之后才能重新分配：
+ * 以"rws"方式打开的映射文件写入时就已经同步，否则要等下一次{@link #force()}。
+ * 可以重新分配的空间只记录在内存中，重新打开文件之后就不再使用了。
+ */
+class BlockMap {
+    static final String SUFFIX = ".bmap";
+    private static final int ENTRY_SIZE = 16;
+    /**
+     * 分配空间时向上取整到ALIGN字节，空闲的空间更容易被大小相近的块重新使用
+     */
+    private static final int ALIGN = 32;
+
+    private FileChannel channel;
+    private long[] offsets;
+    private int[] lengths;
+    private int[] capacities;
+    /**
+     * 映射文件中的项数
+     */
+    private int entries;
+    /**
+     * 数据文件中下一个可以分配的位置
+     */
+    private long end;
+    /**
+     * 映射文件是否以"rws"方式打开，这时写入的映射项已经同步到磁盘
+     */
+    private final boolean durable;
+    /**
+     * 可以重新分配的空间：键是空间的大小，值是这样大小的空间的偏移
+     */
+    private final TreeMap<Integer, ArrayDeque<Long>> free = new TreeMap<>();
+    /**
+     * 已经不再使用、但磁盘上的映射项可能还指向它们的空间，每项是{偏移, 大小}
+     */
+    private List<long[]> pendingFree = new ArrayList<>();
+
+    /**
+     * 打开(或创建)映射文件并把所有的项读入内存
+     *
+     * @param mapFile     映射文件
+     * @param mode        打开文件的方式，"rw"或"rws"
+     * @param dataFileEnd 数据文件当前的大小
+     * @throws IOException IO异常
+     */
+    BlockMap(File mapFile, String mode, long dataFileEnd) throws IOException {
+        channel = new RandomAccessFile(mapFile, mode).getChannel();
+        durable = mode.equals("rws");
+        int n = (int) (channel.size() / ENTRY_SIZE);
+        offsets = new long[Math.max(n, 16)];
+        lengths = new int[offsets.length];
+        capacities = new int[offsets.length];
+        ByteBuffer bb = ByteBuffer.allocate(n * ENTRY_SIZE);
+        while (bb.hasRemaining()) {
+            if (channel.read(bb, bb.position()) < 0) {
+                break;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i] = bb.getLong(i * ENTRY_SIZE);
+            lengths[i] = bb.getInt(i * ENTRY_SIZE + Long.BYTES);
+            capacities[i] = bb.getInt(i * ENTRY_SIZE + Long.BYTES + Integer.BYTES);
+        }
+        entries = n;
+        end = dataFileEnd;
+    }
+
+    /**
+     * 映射文件中的项数，也就是文件在磁盘上的块数
+     */
+    synchronized int size() {
+        return entries;
+    }
+
+    synchronized long offset(int blknum) {
+        return blknum < offsets.length ? offsets[blknum] : 0;
+    }
+
+    synchronized int length(int blknum) {
+        return blknum < lengths.length ? lengths[blknum] : 0;
+    }
+
+    /**
+     * 为长度是len的块内容分配新的空间。优先使用大小合适的空闲空间，否则在数据文件末尾分配。
+     * 映射表不变，调用者写入数据之后要调用{@link #commit(int, long, int)}。
+     *
+     * @param len 压缩后的长度
+     * @return 数据在数据文件中的偏移，len为0时不分配空间，返回0
+     */
+    synchronized long allocate(int len) {
+        if (len == 0) {
+            return 0;
+        }
+        int cap = capacityFor(len);
+        Map.Entry<Integer, ArrayDeque<Long>> e = free.ceilingEntry(cap);
+        if (e != null && e.getKey() <= cap * 2) {
+            long offset = e.getValue().poll();
+            if (e.getValue().isEmpty()) {
+                free.remove(e.getKey());
+            }
+            return offset;
+        }
+        long offset = end;
+        end += cap;
+        return offset;
+    }
+
+    /**
+     * 让块的映射项指向已经写入数据的新空间，并把映射项写入映射文件。
+     * 块原来的空间在映射文件同步之后才能重新分配。
+     *
+     * @param blknum 块号
+     * @param offset {@link #allocate(int)}返回的偏移
+     * @param len    压缩后的长度
+     * @throws IOException IO异常
+     */
+    synchronized void commit(int blknum, long offset, int len) throws IOException {
+        ensureCapacity(blknum + 1);
+        long oldOffset = offsets[blknum];
+        int oldCap = capacities[blknum];
+        offsets[blknum] = offset;
+        lengths[blknum] = len;
+        capacities[blknum] = len == 0 ? 0 : capacityFor(len);
+        persist(blknum);
+        if (oldCap > 0) {
+            if (durable) {
+                release(oldOffset, oldCap);
+            } else {
+                pendingFree.add(new long[]{oldOffset, oldCap});
+            }
+        }
+    }
+
+    /**
+     * 把块的映射项写入映射文件
+     *
+     * @param blknum 块号
+     * @throws IOException IO异常
+     */
+    private void persist(int blknum) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(ENTRY_SIZE);
+        bb.putLong(offsets[blknum]).putInt(lengths[blknum]).putInt(capacities[blknum]);
+        bb.flip();
+        long pos = (long) blknum * ENTRY_SIZE;
+        while (bb.hasRemaining()) {
+            channel.write(bb, pos + bb.position());
+        }
+        entries = Math.max(entries, blknum + 1);
+    }
+
+    /**
+     * 把映射文件同步到磁盘，然后重新分配同步之前已经不再使用的空间
+     *
+     * @throws IOException IO异常
+     */
+    void force() throws IOException {
+        List<long[]> released;
+        synchronized (this) {
+            released = pendingFree;
+            pendingFree = new ArrayList<>();
+        }
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            synchronized (this) {
+                pendingFree.addAll(released);
+            }
+            throw e;
+        }
+        synchronized (this) {
+            for (long[] slot : released) {
+                release(slot[0], (int) slot[1]);
+            }
+        }
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    private void release(long offset, int cap) {
+        free.computeIfAbsent(cap, k -> new ArrayDeque<>()).add(offset);
+    }
+
+    private static int capacityFor(int len) {
+        return (len + ALIGN - 1) / ALIGN * ALIGN;
+    }
+
+    private void ensureCapacity(int n) {
+        if (n > offsets.length) {
+            int newLen = Math.max(n, offsets.length * 2);
+            offsets = Arrays.copyOf(offsets, newLen);
+            lengths = Arrays.copyOf(lengths, newLen);
+            capacities = Arrays.copyOf(capacities, newLen);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package simpledb.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * 压缩存储测试。
+ * <p>
+ * 按记录页的样子(定长槽位，VARCHAR只用了一部分)写入一个普通文件和一个压缩文件，
+ * 重新打开文件管理器后读回并比较内容，再比较两个文件在磁盘上的大小。
+ * 然后重写一些块：一个变成不能压缩的随机数据，一个变成全0，检查读回的内容。
+ * <p>
+ * 最后模拟在写入数据之后、写入映射项之前的崩溃：把一个块重写成压缩后更短的内容(放得下原来的空间)，
+ * 再把映射文件恢复成重写之前的样子。重新打开后这个块必须读出完整的旧内容。
+ */
+public class CompressedFileTest {
+    private static final int NUM_BLOCKS = 500;
+    private static final int SLOT_SIZE = 4 + 4 + 4 + Page.maxLength(20);
+
+    public static void main(String[] args) throws IOException {
+        File dir = new File("compressedfiletest");
+        String suffix = Long.toString(System.currentTimeMillis());
+        String plain = "plain" + suffix;
+        String compressed = "compressed" + suffix;
+        FileMgr fm = new FileMgr(dir, 400);
+        fm.setCompressed(compressed);
+
+        Page p = new Page(fm.blockSize());
+        for (int b = 0; b < NUM_BLOCKS; b++) {
+            fill(p, b);
+            fm.write(fm.append(plain), p);
+            fm.write(fm.append(compressed), p);
+        }
+
+        FileMgr reopened = new FileMgr(dir, 400);
+        int errors = compare(reopened, plain, compressed);
+        System.out.println("compressed: " + reopened.isCompressed(compressed)
+                + ", length " + reopened.length(compressed) + " (expected " + NUM_BLOCKS + "), "
+                + errors + " errors");
+        long plainSize = new File(dir, plain).length();
+        long compressedSize = new File(dir, compressed).length()
+                + new File(dir, compressed + BlockMap.SUFFIX).length();
+        System.out.println("plain file: " + plainSize + " bytes, compressed file and block map: "
+                + compressedSize + " bytes");
+
+        Random rand = new Random(1);
+        byte[] noise = new byte[reopened.blockSize()];
+        rand.nextBytes(noise);
+        Page random = new Page(noise);
+        Page zero = new Page(reopened.blockSize());
+        reopened.write(new BlockId(plain, 3), random);
+        reopened.write(new BlockId(compressed, 3), random);
+        reopened.write(new BlockId(plain, 4), zero);
+        reopened.write(new BlockId(compressed, 4), zero);
+        System.out.println("after rewrite: " + compare(new FileMgr(dir, 400), plain, compressed) + " errors");
+
+        for (SyncPolicy policy : new SyncPolicy[]{SyncPolicy.PER_WRITE, SyncPolicy.AT_COMMIT}) {
+            FileMgr before = new FileMgr(dir, 400, policy);
+            BlockId blk = new BlockId(compressed, 5);
+            Page old = new Page(before.blockSize());
+            before.read(blk, old);
+            Path mapFile = new File(dir, compressed + BlockMap.SUFFIX).toPath();
+            byte[] savedMap = Files.readAllBytes(mapFile);
+            Page shorter = new Page(before.blockSize());
+            shorter.setString(0, "rewritten");
+            before.write(blk, shorter);
+            // the crash: the new data reached the disk, the new map entry did not
+            Files.write(mapFile, savedMap);
+            FileMgr recovered = new FileMgr(dir, 400, policy);
+            Page p2 = new Page(recovered.blockSize());
+            String result;
+            try {
+                recovered.read(blk, p2);
+                result = p2.contents().equals(old.contents()) ? "old contents" : "wrong contents";
+            } catch (RuntimeException e) {
+                result = e.getMessage();
+            }
+            System.out.println(policy + " crash between data and map write: block reads " + result
+                    + " (expected old contents)");
+        }
+    }
+
+    /**
+     * 模拟一个记录页：每个槽位有一个标志、两个int和一个只用了一部分的VARCHAR(20)
+     */
+    private static void fill(Page p, int blknum) {
+        p.contents().put(0, new byte[p.contents().capacity()]);
+        for (int slot = 0; (slot + 1) * SLOT_SIZE <= p.contents().capacity(); slot++) {
+            int pos = slot * SLOT_SIZE;
+            p.setInt(pos, 1);
+            p.setInt(pos + 4, blknum);
+            p.setInt(pos + 8, slot);
+            p.setString(pos + 12, "rec" + blknum + "-" + slot);
+        }
+    }
+
+    private static int compare(FileMgr fm, String plain, String compressed) {
+        Page p1 = new Page(fm.blockSize());
+        Page p2 = new Page(fm.blockSize());
+        int errors = 0;
+        for (int b = 0; b < fm.length(plain); b++) {
+            fm.read(new BlockId(plain, b), p1);
+            fm.read(new BlockId(compressed, b), p2);
+            if (!p1.contents().equals(p2.contents())) {
+                errors++;
+            }
+        }
+        return errors;
+    }
+}
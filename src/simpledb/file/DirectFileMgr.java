@@ -0,0 +1,251 @@
+package simpledb.file;
+
+import com.sun.nio.file.ExtendedOpenOption;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 使用直接I/O(O_DIRECT)读写块的文件管理器。
+ * <p>
+ * 普通的读写经过操作系统的页缓存，同一个块会在页缓存和缓冲池中各缓存一份；
+ * 缓冲池很大时这浪费了一半的内存，内存紧张时页缓存被回收又使延迟难以预测。
+ * 直接I/O绕过页缓存，块只缓存在缓冲池中。
+ * <p>
+ * 直接I/O要求文件中的位置、读写的长度和内存地址都按文件系统的块大小对齐。
+ * 因此只有块大小是对齐单位整数倍的文件才使用直接I/O，其余的文件(例如默认400字节的块和日志文件)
+ * 以及压缩存储的文件仍然使用父类的通道。{@link #newPage(int)}分配对齐的页；
+ * 没有对齐的页(例如不是由缓冲区管理器创建的页)通过每个线程一个的对齐的中转缓冲区读写。
+ * <p>
+ * 追加块、获取文件长度和同步仍然使用父类的通道；fsync作用于整个文件，也包括直接I/O写入的数据。
+ */
+public class DirectFileMgr extends FileMgr {
+    private File dbDirectory;
+    /**
+     * 直接I/O的对齐单位，即数据库目录所在文件系统的块大小
+     */
+    private final int alignment;
+    private Map<String, FileChannel> directFiles = new ConcurrentHashMap<>();
+    /**
+     * 文件系统不支持直接I/O的文件，改用父类的通道
+     */
+    private Set<String> unsupportedFiles = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<ByteBuffer> bounceBuffers = new ThreadLocal<>();
+
+    public DirectFileMgr(File dbDirectory, int blockSize) {
+        this(dbDirectory, blockSize, SyncPolicy.PER_WRITE);
+    }
+
+    public DirectFileMgr(File dbDirectory, int blockSize, SyncPolicy syncPolicy) {
+        super(dbDirectory, blockSize, syncPolicy);
+        this.dbDirectory = dbDirectory;
+        int align;
+        try {
+            align = (int) Files.getFileStore(dbDirectory.toPath()).getBlockSize();
+        } catch (IOException | UnsupportedOperationException e) {
+            align = 4096;
+        }
+        this.alignment = align;
+    }
+
+    /**
+     * 块大小是对齐单位整数倍的文件分配按对齐单位对齐的页
+     *
+     * @param size 页的大小
+     * @return 新的页
+     */
+    @Override
+    public Page newPage(int size) {
+        if (size % alignment == 0) {
+            return Page.allocateAligned(size, alignment);
+        }
+        return super.newPage(size);
+    }
+
+    /**
+     * 页区按对齐单位对齐，大小是对齐单位整数倍的页帧和页(包括其他大小类的页)都是对齐的
+     *
+     * @param frames 页帧的个数
+     * @return 新的页区
+     */
+    @Override
+    public PageArena newArena(int frames) {
+        return new PageArena(frames, blockSize(), alignment);
+    }
+
+    @Override
+    public void read(BlockId blk, Page p) {
+        FileChannel fc = directFile(blk.fileName());
+        if (fc == null) {
+            super.read(blk, p);
+            return;
+        }
+        long start = System.nanoTime();
+        int size = blockSize(blk.fileName());
+        long pos = (long) blk.number() * size;
+        try {
+            ByteBuffer bb = p.contents();
+            boolean aligned = isAligned(bb);
+            ByteBuffer target = aligned ? bb : bounceBuffer(size);
+            // 读到文件末尾时停止，文件的长度总是块大小的整数倍
+            while (target.hasRemaining()) {
+                if (fc.read(target, pos + target.position()) <= 0) {
+                    break;
+                }
+            }
+            if (!aligned) {
+                bb.put(0, target, 0, target.position());
+            }
+            recordRead(blk.fileName(), 1, target.position(), start);
+        } catch (IOException e) {
+            throw new RuntimeException("cannot read block " + blk);
+        }
+    }
+
+    @Override
+    public void write(BlockId blk, Page p) {
+        FileChannel fc = directFile(blk.fileName());
+        if (fc == null) {
+            super.write(blk, p);
+            return;
+        }
+        long start = System.nanoTime();
+        int size = blockSize(blk.fileName());
+        long pos = (long) blk.number() * size;
+        try {
+            ByteBuffer bb = p.contents();
+            if (!isAligned(bb)) {
+                ByteBuffer bounce = bounceBuffer(size);
+                bounce.put(0, bb, 0, size);
+                bb = bounce;
+            }
+            while (bb.hasRemaining()) {
+                fc.write(bb, pos + bb.position());
+            }
+            noteWrite(blk);
+            recordWrite(blk.fileName(), 1, size, start);
+        } catch (IOException e) {
+            throw new RuntimeException("cannot write block" + blk);
+        }
+    }
+
+    /**
+     * 用一次定位读把连续的块读入一个对齐的中转缓冲区，再复制到各个页中。
+     * 直接I/O不经过页缓存，没有操作系统的预读，逐块读取时每个块都要等待一次磁盘，
+     * 一次读取整批块只等待一次。
+     *
+     * @param first 第一个要读取的块
+     * @param pages 目的内存页
+     */
+    @Override
+    public void readBlocks(BlockId first, Page[] pages) {
+        FileChannel fc = directFile(first.fileName());
+        if (fc == null) {
+            super.readBlocks(first, pages);
+            return;
+        }
+        long start = System.nanoTime();
+        int size = blockSize(first.fileName());
+        long pos = (long) first.number() * size;
+        try {
+            ByteBuffer target = bounceBuffer(size * pages.length);
+            // 读到文件末尾时停止，文件的长度总是块大小的整数倍
+            while (target.hasRemaining()) {
+                if (fc.read(target, pos + target.position()) <= 0) {
+                    break;
+                }
+            }
+            int bytes = target.position();
+            for (int i = 0; i < pages.length && i * size < bytes; i++) {
+                pages[i].contents().put(0, target, i * size, size);
+            }
+            recordRead(first.fileName(), pages.length, bytes, start);
+        } catch (IOException e) {
+            throw new RuntimeException("cannot read blocks starting at " + first);
+        }
+    }
+
+    @Override
+    public void delete(String fileName) {
+        FileChannel fc = directFiles.remove(fileName);
+        if (fc != null) {
+            try {
+                fc.close();
+            } catch (IOException e) {
+                throw new RuntimeException("cannot delete " + fileName);
+            }
+        }
+        unsupportedFiles.remove(fileName);
+        super.delete(fileName);
+    }
+
+    /**
+     * @return 直接I/O的对齐单位
+     */
+    public int alignment() {
+        return alignment;
+    }
+
+    /**
+     * 返回文件的直接I/O通道，PER_WRITE策略下以DSYNC方式打开。
+     * 块大小没有对齐、压缩存储或者文件系统不支持直接I/O的文件返回null
+     *
+     * @param fileName 文件名
+     * @return 文件的直接I/O通道，或者null
+     */
+    private FileChannel directFile(String fileName) {
+        if (blockSize(fileName) % alignment != 0 || isCompressed(fileName)
+                || unsupportedFiles.contains(fileName)) {
+            return null;
+        }
+        FileChannel fc = directFiles.get(fileName);
+        if (fc == null) {
+            synchronized (directFiles) {
+                fc = directFiles.get(fileName);
+                if (fc == null) {
+                    OpenOption[] options = forcesEachWrite(fileName)
+                            ? new OpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                    StandardOpenOption.CREATE, StandardOpenOption.DSYNC, ExtendedOpenOption.DIRECT}
+                            : new OpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                    StandardOpenOption.CREATE, ExtendedOpenOption.DIRECT};
+                    try {
+                        fc = FileChannel.open(new File(dbDirectory, fileName).toPath(), options);
+                    } catch (IOException | UnsupportedOperationException e) {
+                        unsupportedFiles.add(fileName);
+                        return null;
+                    }
+                    directFiles.put(fileName, fc);
+                }
+            }
+        }
+        return fc;
+    }
+
+    /**
+     * 只有直接缓冲区才有固定的内存地址，Java数组上的页(例如日志页)总是需要中转
+     */
+    private boolean isAligned(ByteBuffer bb) {
+        return bb.isDirect() && bb.alignmentOffset(0, alignment) == 0;
+    }
+
+    /**
+     * 返回当前线程的对齐的中转缓冲区，位置为0，限制为size
+     */
+    private ByteBuffer bounceBuffer(int size) {
+        ByteBuffer bb = bounceBuffers.get();
+        if (bb == null || bb.capacity() < size) {
+            bb = ByteBuffer.allocateDirect(size + alignment).alignedSlice(alignment);
+            bounceBuffers.set(bb);
+        }
+        bb.clear().limit(size);
+        return bb;
+    }
+}
@@ -0,0 +1,64 @@
+package simpledb.file;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import simpledb.server.SimpleDB;
+
+/**
+ * 直接I/O测试。
+ * <p>
+ * 分别用STANDARD和DIRECT两种存储方式写入一个4096字节块的文件，
+ * 用对齐的页、没有对齐的页和Java数组上的页读回并检查内容，
+ * 然后比较两种方式写入之后操作系统页缓存(/proc/meminfo中的Cached)增长了多少。
+ */
+public class DirectFileMgrTest {
+    private static final int BLOCK_SIZE = 4096;
+    private static final int NUM_BLOCKS = 16384;
+
+    public static void main(String[] args) throws IOException {
+        for (StorageMode mode : new StorageMode[]{StorageMode.STANDARD, StorageMode.DIRECT}) {
+            SimpleDB db = new SimpleDB("directfiletest-" + mode.name().toLowerCase(), BLOCK_SIZE, 8, mode);
+            FileMgr fm = db.fileMgr();
+            long cachedBefore = cachedKB();
+            Page p = fm.newPage(BLOCK_SIZE);
+            for (int b = 0; b < NUM_BLOCKS; b++) {
+                BlockId blk = fm.append("testfile");
+                p.setInt(0, blk.number());
+                p.setString(BLOCK_SIZE / 2, "block" + blk.number());
+                fm.write(blk, p);
+            }
+            long cachedAfter = cachedKB();
+
+            Page[] pages = {fm.newPage(BLOCK_SIZE), new Page(BLOCK_SIZE), new Page(new byte[BLOCK_SIZE])};
+            int errors = 0;
+            long start = System.nanoTime();
+            for (int b = 0; b < NUM_BLOCKS; b++) {
+                Page q = pages[b % pages.length];
+                fm.read(new BlockId("testfile", b), q);
+                if (q.getInt(0) != b || !q.getString(BLOCK_SIZE / 2).equals("block" + b)) {
+                    errors++;
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            String cached = cachedBefore < 0 ? "unknown" : (cachedAfter - cachedBefore) / 1024 + " MB";
+            System.out.println(mode + ": wrote " + NUM_BLOCKS * (BLOCK_SIZE / 1024) / 1024 + " MB, page cache grew by "
+                    + cached + "; read back in " + elapsed / NUM_BLOCKS + " ns/block, " + errors + " errors");
+        }
+    }
+
+    /**
+     * @return 操作系统页缓存的大小(KB)，不是Linux时返回-1
+     */
+    private static long cachedKB() throws IOException {
+        if (!Files.exists(Paths.get("/proc/meminfo"))) {
+            return -1;
+        }
+        for (String line : Files.readAllLines(Paths.get("/proc/meminfo"))) {
+            if (line.startsWith("Cached:")) {
+                return Long.parseLong(line.replaceAll("[^0-9]", ""));
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,35 @@
+package simpledb.file;
+
+import java.io.File;
+
+/**
+ * 文件长度测试。
+ * <p>
+ * 追加若干个块之后文件在磁盘上按EXTENT_BLOCKS预先分配，但length只返回追加过的块数；
+ * 重新打开文件管理器之后，末尾预先分配的全0块不会被算进文件长度。
+ */
+public class FileLengthTest {
+    private static final int NUM_BLOCKS = 100;
+
+    public static void main(String[] args) {
+        File dir = new File("filelengthtest");
+        FileMgr fm = new FileMgr(dir, 400);
+        String fileName = "testfile" + System.currentTimeMillis();
+        Page p = new Page(fm.blockSize());
+        for (int b = 0; b < NUM_BLOCKS; b++) {
+            BlockId blk = fm.append(fileName);
+            p.setInt(0, b + 1);
+            fm.write(blk, p);
+        }
+        long physical = new File(dir, fileName).length() / fm.blockSize();
+        System.out.println("length after append: " + fm.length(fileName)
+                + ", blocks on disk: " + physical);
+
+        FileMgr reopened = new FileMgr(dir, 400);
+        System.out.println("length after reopen: " + reopened.length(fileName)
+                + " (expected " + NUM_BLOCKS + ")");
+
+        BlockId blk = reopened.append(fileName);
+        System.out.println("next appended block: " + blk.number() + " (expected " + NUM_BLOCKS + ")");
+    }
+}
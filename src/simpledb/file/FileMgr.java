@@ -3,30 +3,71 @@ package simpledb.file;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * 实现将页面读写到磁盘块的方法。
  * <p>
  * 文件管理器始终从文件中读取或写入块大小的字节数，并且始终处于块边界。
  * 在此过程中，文件管理器确保对读、写或追加的每次调用将导致一次磁盘访问。
+ * <p>
+ * 读写都使用FileChannel的定位读写，没有全局的锁，不同会话的缓冲区缺页可以并行地访问磁盘。
+ * <p>
+ * 每个文件可以有自己的块大小(见{@link #setBlockSize(String, int)})，没有设置的文件使用构造时指定的默认块大小。
  *
  * @author Edward Sciore
  */
 public class FileMgr {
+    /**
+     * 文件每次扩展时预先分配的块数
+     */
+    public static int EXTENT_BLOCKS = 64;
+    /**
+     * 执行后台分散读(预读)的线程数
+     */
+    public static int PREFETCH_THREADS = 2;
     private File dbDirectory;
     /**
-     * 磁盘上的文件的块的大小
+     * 磁盘上的文件的默认块大小
      */
     private int blockSize;
+    /**
+     * 块大小和默认值不同的文件，键是文件名
+     */
+    private Map<String, Integer> blockSizes = new ConcurrentHashMap<>();
     private boolean isNew;
-    private static int readBlockCount;
-    private static int writeBlockCount;
+    private SyncPolicy syncPolicy;
+    /**
+     * 每个文件的IO统计
+     */
+    private IOStats ioStats = new IOStats();
+    /**
+     * openFiles 一个ConcurrentHashMap，键是文件名， 值是文件的通道
+     */
+    private Map<String, FileChannel> openFiles = new ConcurrentHashMap<>();
+    /**
+     * 在AT_COMMIT策略下，写过但还没有同步到磁盘的文件
+     */
+    private Set<String> unsyncedFiles = ConcurrentHashMap.newKeySet();
     /**
-     * openFiles 一个HashMap，键是文件名， 值是文件随机读取权限
+     * 内存中记录的每个文件的长度，键是文件名
      */
-    private Map<String, RandomAccessFile> openFiles = new HashMap<>();
+    private Map<String, FileLength> fileLengths = new ConcurrentHashMap<>();
+    /**
+     * 压缩文件的块映射表，键是文件名。不在其中的文件按原样存储
+     */
+    private Map<String, BlockMap> blockMaps = new ConcurrentHashMap<>();
+    /**
+     * 执行后台分散读的线程池，第一次预读时创建
+     */
+    private volatile ExecutorService prefetchExecutor;
 
     /**
      * 数据库名称用作包含数据库文件的文件夹的名称;此文件夹位于引擎的当前目录中。
@@ -36,8 +77,20 @@ public class FileMgr {
      * @param blockSize   磁盘上的块的大小
      */
     public FileMgr(File dbDirectory, int blockSize) {
+        this(dbDirectory, blockSize, SyncPolicy.PER_WRITE);
+    }
+
+    /**
+     * 创建使用指定同步策略的文件管理器
+     *
+     * @param dbDirectory 要管理数据库目录文件的对象
+     * @param blockSize   磁盘上的块的大小
+     * @param syncPolicy  写入的数据同步到磁盘的时机
+     */
+    public FileMgr(File dbDirectory, int blockSize, SyncPolicy syncPolicy) {
         this.dbDirectory = dbDirectory;
         this.blockSize = blockSize;
+        this.syncPolicy = syncPolicy;
         // exists() 测试此抽象路径名表示的文件或目录是否存在。
         isNew = !dbDirectory.exists();
 
@@ -58,17 +111,32 @@ public class FileMgr {
 
     /**
      * 将磁盘上的文件的  指定块号的块  的内容读入指定的缓冲区位置
+     * <p>
+     * 使用FileChannel的定位读(read(ByteBuffer, long))，不会移动通道的共享位置，
+     * 因此不同线程对同一个文件或不同文件的读写可以并行进行，不需要全局的锁。
      *
      * @param blk 出发磁盘块
      * @param p   目的内存页
      */
-    public synchronized void read(BlockId blk, Page p) {
+    public void read(BlockId blk, Page p) {
+        long start = System.nanoTime();
         try {
-            RandomAccessFile f = getFile(blk.fileName());
-            f.seek(blk.number() * blockSize);
-            // 从随机读写文件的通道读取内容到给定缓冲区
-            f.getChannel().read(p.contents());
-            countReadBlockNums();
+            FileChannel fc = getFile(blk.fileName());
+            BlockMap map = blockMaps.get(blk.fileName());
+            if (map != null) {
+                int bytes = readCompressed(fc, map, blk, p);
+                recordRead(blk.fileName(), 1, bytes, start);
+                return;
+            }
+            ByteBuffer bb = p.contents();
+            long pos = (long) blk.number() * blockSize(blk.fileName());
+            // 定位读可能一次读不满整个块，读到文件末尾(-1)时停止
+            while (bb.hasRemaining()) {
+                if (fc.read(bb, pos + bb.position()) < 0) {
+                    break;
+                }
+            }
+            recordRead(blk.fileName(), 1, bb.position(), start);
         } catch (IOException e) {
             throw new RuntimeException("cannot read block " + blk);
         }
@@ -76,115 +144,642 @@ public class FileMgr {
 
     /**
      * 将指定的缓冲区位置  的内容写入 磁盘上的文件的  指定块号的块
+     * <p>
+     * 使用FileChannel的定位写(write(ByteBuffer, long))，从块的第一个字节开始写入，
+     * 不依赖也不修改通道的共享位置。
      *
      * @param blk 指定的磁盘上的文件的块的对象
      * @param p   指定的内存上的缓冲区的对象
      */
-    public synchronized void write(BlockId blk, Page p) {
+    public void write(BlockId blk, Page p) {
+        long start = System.nanoTime();
         try {
-            RandomAccessFile f = getFile(blk.fileName());
-            // 将磁盘上的文件内的块的指针移动到指定的块上(块号*块的大小)
-            f.seek(blk.number() * blockSize);
-            // getChannel()
-            // 返回与此文件关联的唯一的FileChannel(用于读取，写入，映射和操作文件的通道。)对象。
-            // write(ByteBuffer src)
-            // 从给定的缓冲区位置向 写文件通道 写入一个字节序列。
-            // 从给定的要写入的磁盘中的文件的块 的第一个字节开始写入，而不是紧跟着块中已有的数据的后方写入
-            // 除非该通道处于append模式
-
-            // 从磁盘上的文件打开一个通道，该通道执行的是从内存的缓冲区写入字节到磁盘，把内存的缓冲区的指针指向缓冲区开头
-            f.getChannel().write(p.contents());
-            countWriteBlockNums();
+            FileChannel fc = getFile(blk.fileName());
+            BlockMap map = blockMaps.get(blk.fileName());
+            int size = blockSize(blk.fileName());
+            int bytes = size;
+            if (map != null) {
+                bytes = writeCompressed(fc, map, blk, p);
+            } else {
+                ByteBuffer bb = p.contents();
+                long pos = (long) blk.number() * size;
+                while (bb.hasRemaining()) {
+                    fc.write(bb, pos + bb.position());
+                }
+            }
+            noteWrite(blk);
+            recordWrite(blk.fileName(), 1, bytes, start);
         } catch (IOException e) {
             throw new RuntimeException("cannot write block" + blk);
         }
     }
 
     /**
-     * 寻找文件的末尾，并向其写入一个空的字节数组，这将导致OS自动扩展该文件。
+     * 开始把指定块读入内存页，返回读取完成时结束的future。
+     * <p>
+     * 这里的实现是同步的：读取完成后才返回一个已经完成的future。
+     * {@link AsyncFileMgr}用AsynchronousFileChannel真正地在后台读取。
      *
-     * @param fileName  需要寻找末尾并在末尾写入空的字节数组以此来扩展文件块数的文件的文件名
-     * @return  返回文件的目标块的对象
+     * @param blk 出发磁盘块
+     * @param p   目的内存页，在future完成之前不能访问
+     * @return 读取完成时结束的future
+     */
+    public CompletableFuture<Void> readAsync(BlockId blk, Page p) {
+        try {
+            read(blk, p);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * 开始把内存页写入指定块，返回写入完成时结束的future。
+     * 这里的实现是同步的，见{@link #readAsync(BlockId, Page)}。
+     *
+     * @param blk 指定的磁盘上的文件的块的对象
+     * @param p   指定的内存上的缓冲区的对象，在future完成之前不能修改
+     * @return 写入完成时结束的future
+     */
+    public CompletableFuture<Void> writeAsync(BlockId blk, Page p) {
+        try {
+            write(blk, p);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * 将从first开始的连续pages.length个块一次读入多个内存页(分散读)。
+     * <p>
+     * 只需要一次FileChannel.read(ByteBuffer[])系统调用，适合顺序扫描。
+     * 分散读依赖通道的位置，因此需要锁住该文件的通道；文件中的定位读写不受影响。
+     *
+     * @param first 第一个要读取的块
+     * @param pages 目的内存页，pages[i]保存块first.number() + i的内容
      */
-    public synchronized BlockId append(String fileName) {
-        // 通过length方法获取到该块在文件的第几块中
-        int newBlkNum = length(fileName);
-        // 获取文件的在目标块的对象
-        BlockId blk = new BlockId(fileName, newBlkNum);
-        byte[] b = new byte[blockSize];
+    public void readBlocks(BlockId first, Page[] pages) {
+        if (isCompressed(first.fileName())) {
+            // 压缩的块在数据文件中不连续，只能逐块读取
+            for (int i = 0; i < pages.length; i++) {
+                read(new BlockId(first.fileName(), first.number() + i), pages[i]);
+            }
+            return;
+        }
+        long start = System.nanoTime();
         try {
-            // 获取磁盘上的目标文件的随机读写权限
-            RandomAccessFile f = getFile(blk.fileName());
-            // 将目标文件的块指针移到目标块上
-            f.seek(blk.number() * blockSize);
-            // 在目标文件中的目标块上写入400字节的blockSize的字节数组，致使OS自动扩展该文件的块数
-            f.write(b);
+            FileChannel fc = getFile(first.fileName());
+            ByteBuffer[] bbs = new ByteBuffer[pages.length];
+            for (int i = 0; i < pages.length; i++) {
+                bbs[i] = pages[i].contents();
+            }
+            synchronized (fc) {
+                fc.position((long) first.number() * blockSize(first.fileName()));
+                // 读到文件末尾(-1)或者所有页都读满时停止
+                while (bbs[bbs.length - 1].hasRemaining()) {
+                    if (fc.read(bbs) < 0) {
+                        break;
+                    }
+                }
+            }
+            long bytes = 0;
+            for (ByteBuffer bb : bbs) {
+                bytes += bb.position();
+            }
+            recordRead(first.fileName(), pages.length, bytes, start);
         } catch (IOException e) {
-            throw new RuntimeException("cannot append block" + blk);
+            throw new RuntimeException("cannot read blocks starting at " + first);
+        }
+    }
+
+    /**
+     * 开始把从first开始的连续pages.length个块读入多个内存页，返回读取完成时结束的future。
+     * <p>
+     * 分散读在后台线程中进行，调用者不必等待；缓冲区管理器用它预读顺序扫描接下来要访问的块。
+     * 后台线程是守护线程，个数由PREFETCH_THREADS决定。
+     *
+     * @param first 第一个要读取的块
+     * @param pages 目的内存页，在future完成之前不能访问
+     * @return 读取完成时结束的future
+     */
+    public CompletableFuture<Void> readBlocksAsync(BlockId first, Page[] pages) {
+        return CompletableFuture.runAsync(() -> readBlocks(first, pages), prefetchExecutor());
+    }
+
+    /**
+     * 在文件的末尾追加一个块。
+     * <p>
+     * 文件在磁盘上按EXTENT_BLOCKS个块为单位预先分配(一次写入一整段空的字节)，
+     * 只有用完预先分配的块时才需要访问磁盘，其余的追加只是修改内存中的文件长度。
+     * 只对同一个文件的追加操作加锁，保证两个并发的追加不会得到同一个块号；其它文件的读写不受影响。
+     *
+     * @param fileName  需要追加块的文件的文件名
+     * @return  返回文件的目标块的对象
+     */
+    public BlockId append(String fileName) {
+        FileLength len = fileLength(fileName);
+        synchronized (len) {
+            int newBlkNum = len.blocks;
+            if (newBlkNum >= len.allocated) {
+                preallocate(fileName, len, newBlkNum + EXTENT_BLOCKS);
+            }
+            len.blocks = newBlkNum + 1;
+            return new BlockId(fileName, newBlkNum);
         }
-        return blk;
     }
 
     /**
-     * 根据传入的文件名判断该文件需要几个完整的内存页来放置。注意：文件的块号从0开始。
+     * 返回文件的块数。注意：文件的块号从0开始。
      * <p>
-     *     如文件名为"1.txt"的文件长500字节,1个内存页400字节，则调用此方法返回1。
+     * 文件长度记录在内存中，只有第一次访问文件时才需要询问操作系统，
+     * 所以扫描在每个块边界上检查文件大小不会产生系统调用。
      *
-     * @param fileName  需要与内存页大小比较的文件的文件名
-     * @return 返回该文件需要几个完整的内存页来放置，注意：文件的块号从0开始。
+     * @param fileName  文件的文件名
+     * @return 返回该文件的块数
      */
     public int length(String fileName) {
+        return fileLength(fileName).blocks;
+    }
+
+    /**
+     * 在AT_COMMIT策略下，将指定文件中还没有同步的写操作强制写入磁盘(只同步数据，不同步元数据)。
+     * 在其它策略下什么也不做：PER_WRITE的每次写都已经同步，NONE从不同步。
+     *
+     * @param fileName 需要同步的文件的文件名
+     */
+    public void sync(String fileName) {
+        // 先移出集合再同步，同步期间新的写操作会把文件重新加入集合
+        if (unsyncedFiles.remove(fileName)) {
+            try {
+                force(fileName);
+            } catch (IOException e) {
+                unsyncedFiles.add(fileName);
+                throw new RuntimeException("cannot sync " + fileName);
+            }
+        }
+    }
+
+    /**
+     * 同步所有写过但还没有同步的文件。
+     * 提交时必须同步所有这样的文件，而不只是本次提交写出的缓冲区所在的文件：
+     * 事务修改过的页可能更早就因为缓冲区替换而被写出了。
+     */
+    public void syncAll() {
+        for (String fileName : unsyncedFiles) {
+            sync(fileName);
+        }
+    }
+
+    /**
+     * 删除一个文件(例如用完的临时表)：关闭它的通道，清除内存中记录的长度、块大小和块映射表，再删除磁盘上的文件。
+     * <p>
+     * 调用者需要保证之后不会再有读写这个文件的请求，否则会重新创建一个空文件。
+     *
+     * @param fileName 文件名
+     */
+    public void delete(String fileName) {
+        try {
+            synchronized (openFiles) {
+                FileChannel fc = openFiles.remove(fileName);
+                if (fc != null) {
+                    fc.close();
+                }
+                BlockMap map = blockMaps.remove(fileName);
+                if (map != null) {
+                    map.close();
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("cannot delete " + fileName);
+        }
+        synchronized (fileLengths) {
+            fileLengths.remove(fileName);
+            blockSizes.remove(fileName);
+        }
+        unsyncedFiles.remove(fileName);
+        new File(dbDirectory, fileName).delete();
+        new File(dbDirectory, fileName + BlockMap.SUFFIX).delete();
+    }
+
+    /**
+     * 把一个还没有任何块的文件设为压缩存储：之后写入的每个块都先压缩再写入磁盘，读取时再解压缩到内存页。
+     * <p>
+     * 文件是否压缩由磁盘上是否有它的块映射文件(文件名加".bmap")决定，重新打开数据库后仍然有效。
+     * 对于VARCHAR较多的表，定长槽位中没有用到的字节占了页的大部分，压缩可以明显减少磁盘IO和操作系统页缓存的占用。
+     *
+     * @param fileName 文件名
+     */
+    public void setCompressed(String fileName) {
+        if (isCompressed(fileName)) {
+            return;
+        }
+        if (length(fileName) > 0) {
+            throw new RuntimeException("cannot compress non-empty file " + fileName);
+        }
+        synchronized (openFiles) {
+            try {
+                FileChannel fc = getFile(fileName);
+                File mapFile = new File(dbDirectory, fileName + BlockMap.SUFFIX);
+                String mode = forcesEachWrite(fileName) ? "rws" : "rw";
+                blockMaps.put(fileName, new BlockMap(mapFile, mode, fc.size()));
+            } catch (IOException e) {
+                throw new RuntimeException("cannot compress " + fileName);
+            }
+        }
+    }
+
+    /**
+     * 判断文件是否压缩存储
+     *
+     * @param fileName 文件名
+     * @return 文件有块映射表时返回true
+     */
+    public boolean isCompressed(String fileName) {
         try {
-            RandomAccessFile f = getFile(fileName);
-            return (int) (f.length() / blockSize);
+            getFile(fileName);
         } catch (IOException e) {
             throw new RuntimeException("cannot access " + fileName);
         }
+        return blockMaps.containsKey(fileName);
+    }
+
+    /**
+     * 返回每个文件的读写次数、字节数和延迟。临时文件合并记在"temp"名下
+     *
+     * @return IO统计
+     */
+    public IOStats ioStats() {
+        return ioStats;
+    }
+
+    public SyncPolicy syncPolicy() {
+        return syncPolicy;
     }
 
     public boolean isNew() {
         return isNew;
     }
 
+    /**
+     * @return 默认的块大小
+     */
     public int blockSize() {
         return blockSize;
     }
 
     /**
-     * 根据传入的文件名，获取磁盘上文件的随机读写权限，如果没有该文件则创建并赋予随机读写权限
+     * 创建一个可以用来读写块的页
+     *
+     * @param size 页的大小
+     * @return 新的页
+     */
+    public Page newPage(int size) {
+        return new Page(size);
+    }
+
+    /**
+     * 创建一个有frames个默认块大小的页帧的页区，供缓冲池使用
+     *
+     * @param frames 页帧的个数
+     * @return 新的页区
+     */
+    public PageArena newArena(int frames) {
+        return new PageArena(frames, blockSize, 1);
+    }
+
+    /**
+     * 返回指定文件的块大小
+     *
+     * @param fileName 文件名
+     * @return 文件的块大小，没有单独设置时是默认的块大小
+     */
+    public int blockSize(String fileName) {
+        Integer size = blockSizes.get(fileName);
+        return size == null ? blockSize : size;
+    }
+
+    /**
+     * 设置文件的块大小。
+     * <p>
+     * 大的块适合顺序扫描的大表，小的块适合经常被更新的小记录。
+     * 块大小不记录在文件中，由元数据管理器保存在目录表里，在打开数据库时(恢复之前)重新设置。
+     * 文件在磁盘上已经分配了块之后就不能再改变它的块大小。
+     *
+     * @param fileName 文件名
+     * @param size     块大小(字节)
+     */
+    public void setBlockSize(String fileName, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("illegal block size " + size);
+        }
+        if (size == blockSize(fileName)) {
+            return;
+        }
+        synchronized (fileLengths) {
+            FileLength len = fileLengths.get(fileName);
+            if (len != null && len.allocated > 0) {
+                throw new RuntimeException("cannot change the block size of non-empty file " + fileName);
+            }
+            if (size == blockSize) {
+                blockSizes.remove(fileName);
+            } else {
+                blockSizes.put(fileName, size);
+            }
+            // 空文件的长度按新的块大小重新计算
+            fileLengths.remove(fileName);
+        }
+    }
+
+    /**
+     * 根据传入的文件名，获取磁盘上文件的通道，如果没有该文件则创建并以随机读写的方式打开
+     * <p>
+     * 只有第一次打开文件时需要加锁，之后的查找直接走ConcurrentHashMap，不会互相阻塞。
+     *
+     * @param fileName 磁盘上需要获取通道的文件的文件名
+     * @return 文件的通道
+     * @throws IOException IO异常
+     */
+    protected FileChannel getFile(String fileName) throws IOException {
+        FileChannel fc = openFiles.get(fileName);
+        if (fc == null) {
+            synchronized (openFiles) {
+                fc = openFiles.get(fileName);
+                if (fc == null) {
+                    File dbTable = new File(dbDirectory, fileName);
+                    // 只有每次写都同步的文件才以"rws"方式打开
+                    String mode = forcesEachWrite(fileName) ? "rws" : "rw";
+                    fc = new RandomAccessFile(dbTable, mode).getChannel();
+                    // 有块映射文件的文件是压缩存储的，在放入openFiles之前载入映射表
+                    File mapFile = new File(dbDirectory, fileName + BlockMap.SUFFIX);
+                    if (mapFile.exists()) {
+                        blockMaps.put(fileName, new BlockMap(mapFile, mode, fc.size()));
+                    }
+                    openFiles.put(fileName, fc);
+                }
+            }
+        }
+        return fc;
+    }
+
+    /**
+     * 将文件的数据强制写入磁盘
      *
-     * @param fileName 磁盘上需要获取随机读写权限的文件的文件名
-     * @return 可随机读写的文件对象
+     * @param fileName 需要同步的文件的文件名
      * @throws IOException IO异常
      */
-    private RandomAccessFile getFile(String fileName) throws IOException {
-        // 获取在HashMap中的文件的随机读写权限
-        RandomAccessFile f = openFiles.get(fileName);
-        if (f == null) {
-            File dbTable = new File(dbDirectory, fileName);
-            f = new RandomAccessFile(dbTable, "rws");
-            openFiles.put(fileName, f);
+    protected void force(String fileName) throws IOException {
+        getFile(fileName).force(false);
+        BlockMap map = blockMaps.get(fileName);
+        if (map != null) {
+            map.force();
+        }
+    }
+
+    /**
+     * 判断对指定文件的每次写是否都要同步到磁盘
+     *
+     * @param fileName 文件名
+     * @return PER_WRITE策略下的非临时文件返回true
+     */
+    protected boolean forcesEachWrite(String fileName) {
+        return syncPolicy == SyncPolicy.PER_WRITE && !isTempFile(fileName);
+    }
+
+    /**
+     * 记录一次对指定块的写操作：AT_COMMIT策略下该文件会在下一次sync时被同步；
+     * 如果写入的块在文件末尾之后(例如恢复时撤销对一个块的修改)，文件长度随之增加。
+     *
+     * @param blk 被写入的块
+     */
+    protected void noteWrite(BlockId blk) {
+        if (syncPolicy == SyncPolicy.AT_COMMIT && !isTempFile(blk.fileName())) {
+            unsyncedFiles.add(blk.fileName());
+        }
+        FileLength len = fileLength(blk.fileName());
+        if (blk.number() >= len.blocks) {
+            synchronized (len) {
+                len.blocks = Math.max(len.blocks, blk.number() + 1);
+                len.allocated = Math.max(len.allocated, len.blocks);
+            }
+        }
+    }
+
+    /**
+     * 记录一次读请求
+     *
+     * @param fileName   文件名
+     * @param blocks     读取的块数
+     * @param bytes      从磁盘读取的字节数
+     * @param startNanos 请求开始时的System.nanoTime()
+     */
+    protected void recordRead(String fileName, int blocks, long bytes, long startNanos) {
+        statsFor(fileName).recordRead(blocks, bytes, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 记录一次写请求
+     *
+     * @param fileName   文件名
+     * @param blocks     写入的块数
+     * @param bytes      写入磁盘的字节数
+     * @param startNanos 请求开始时的System.nanoTime()
+     */
+    protected void recordWrite(String fileName, int blocks, long bytes, long startNanos) {
+        statsFor(fileName).recordWrite(blocks, bytes, System.nanoTime() - startNanos);
+    }
+
+    private ExecutorService prefetchExecutor() {
+        if (prefetchExecutor == null) {
+            synchronized (this) {
+                if (prefetchExecutor == null) {
+                    prefetchExecutor = Executors.newFixedThreadPool(Math.max(1, PREFETCH_THREADS), r -> {
+                        Thread t = new Thread(r, "prefetch");
+                        t.setDaemon(true);
+                        return t;
+                    });
+                }
+            }
+        }
+        return prefetchExecutor;
+    }
+
+    private FileStats statsFor(String fileName) {
+        return ioStats.file(isTempFile(fileName) ? "temp" : fileName);
+    }
+
+    /**
+     * 返回内存中记录的文件长度，第一次访问文件时从磁盘上的文件大小计算。
+     * <p>
+     * 预先分配的块在崩溃或重启后仍然留在文件中，它们全是0。
+     * 因此这里从文件末尾开始跳过最多EXTENT_BLOCKS - 1个全0的块，剩下的才是文件真正的块数。
+     * 全0的块也是一个格式化后的空记录页，即使它原本属于文件，去掉它也不会丢失数据。
+     *
+     * @param fileName 文件名
+     * @return 文件的长度记录
+     */
+    private FileLength fileLength(String fileName) {
+        FileLength len = fileLengths.get(fileName);
+        if (len == null) {
+            synchronized (fileLengths) {
+                len = fileLengths.get(fileName);
+                if (len == null) {
+                    try {
+                        FileChannel fc = getFile(fileName);
+                        BlockMap map = blockMaps.get(fileName);
+                        int size = blockSize(fileName);
+                        int allocated = map != null ? map.size() : (int) (fc.size() / size);
+                        int blocks = allocated;
+                        while (blocks > 0 && allocated - blocks < EXTENT_BLOCKS - 1
+                                && (map != null ? map.length(blocks - 1) == 0 : isZeroBlock(fc, blocks - 1, size))) {
+                            blocks--;
+                        }
+                        len = new FileLength(blocks, allocated);
+                        fileLengths.put(fileName, len);
+                    } catch (IOException e) {
+                        throw new RuntimeException("cannot access " + fileName);
+                    }
+                }
+            }
+        }
+        return len;
+    }
+
+    /**
+     * 读取压缩存储的块：全0的块不需要读磁盘，没有压缩的块直接读入，其余的读出后解压缩
+     *
+     * @return 从磁盘读取的字节数
+     */
+    private int readCompressed(FileChannel fc, BlockMap map, BlockId blk, Page p) throws IOException {
+        long offset;
+        int len;
+        synchronized (map) {
+            offset = map.offset(blk.number());
+            len = map.length(blk.number());
+        }
+        int size = blockSize(blk.fileName());
+        byte[] data = new byte[size];
+        if (len == size) {
+            readFully(fc, ByteBuffer.wrap(data), offset);
+        } else if (len > 0) {
+            byte[] compressed = new byte[len];
+            readFully(fc, ByteBuffer.wrap(compressed), offset);
+            Lz4Codec.decompress(compressed, len, data, size);
         }
-        return f;
+        p.contents().put(0, data);
+        return len;
     }
 
     /**
+     * 压缩内存页并写入数据文件，然后更新块映射表。压缩后不比原来小的块按原样存储。
+     * <p>
+     * 新内容总是写入新分配的空间，并且在映射项写入映射文件之前同步到磁盘
+     * (以"rws"方式打开的文件写入时就已经同步；临时文件在崩溃后没有意义，不需要同步)，
+     * 所以崩溃后映射项不会把新的长度和旧的数据或者还没有写入的数据配在一起，
+     * 而是仍然指向完整的旧内容，由恢复管理器根据日志重做。
      *
-     * @return  本次操作对文件的读取情况
+     * @return 写入磁盘的字节数
      */
-    public int countReadBlockNums() {
-        readBlockCount++;
-        //System.out.println("读了" + readBlockCount + "块磁盘上的文件的块到内存缓冲区");
-        return readBlockCount;
+    private int writeCompressed(FileChannel fc, BlockMap map, BlockId blk, Page p) throws IOException {
+        int size = blockSize(blk.fileName());
+        byte[] data = new byte[size];
+        p.contents().get(0, data);
+        byte[] out = data;
+        int len = 0;
+        for (byte b : data) {
+            if (b != 0) {
+                out = new byte[Lz4Codec.maxCompressedLength(size)];
+                len = Lz4Codec.compress(data, size, out);
+                if (len >= size) {
+                    out = data;
+                    len = size;
+                }
+                break;
+            }
+        }
+        long offset = map.allocate(len);
+        ByteBuffer bb = ByteBuffer.wrap(out, 0, len);
+        while (bb.hasRemaining()) {
+            fc.write(bb, offset + bb.position());
+        }
+        if (len > 0 && !forcesEachWrite(blk.fileName()) && !isTempFile(blk.fileName())) {
+            fc.force(false);
+        }
+        // 数据同步之后再写映射项，映射项不会指向还没有写入的数据
+        map.commit(blk.number(), offset, len);
+        return len;
+    }
+
+    private void readFully(FileChannel fc, ByteBuffer bb, long pos) throws IOException {
+        while (bb.hasRemaining()) {
+            if (fc.read(bb, pos + bb.position()) < 0) {
+                break;
+            }
+        }
+    }
+
+    private boolean isZeroBlock(FileChannel fc, int blknum, int size) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(size);
+        long pos = (long) blknum * size;
+        while (bb.hasRemaining()) {
+            if (fc.read(bb, pos + bb.position()) < 0) {
+                break;
+            }
+        }
+        for (int i = 0; i < bb.position(); i++) {
+            if (bb.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
+     * 向文件写入全0的字节，使它在磁盘上至少有newAllocated个块。调用者需要持有len的锁。
      *
-     * @return  本次操作对文件的写入情况
+     * @param fileName     文件名
+     * @param len          文件的长度记录
+     * @param newAllocated 预先分配之后文件在磁盘上的块数
      */
-    public int countWriteBlockNums() {
-        writeBlockCount++;
-        //System.out.println("写了" + writeBlockCount + "页内存缓冲区的文件到磁盘上的文件的块");
-        return writeBlockCount;
+    private void preallocate(String fileName, FileLength len, int newAllocated) {
+        if (blockMaps.containsKey(fileName)) {
+            // 压缩文件中全0的块不占空间，映射表中没有的项就是全0的块
+            len.allocated = newAllocated;
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            FileChannel fc = getFile(fileName);
+            int size = blockSize(fileName);
+            ByteBuffer b = ByteBuffer.allocate((newAllocated - len.allocated) * size);
+            long pos = (long) len.allocated * size;
+            while (b.hasRemaining()) {
+                fc.write(b, pos + b.position());
+            }
+            if (syncPolicy == SyncPolicy.AT_COMMIT && !isTempFile(fileName)) {
+                unsyncedFiles.add(fileName);
+            }
+            recordWrite(fileName, newAllocated - len.allocated, b.capacity(), start);
+            len.allocated = newAllocated;
+        } catch (IOException e) {
+            throw new RuntimeException("cannot append block to " + fileName);
+        }
+    }
+
+    private boolean isTempFile(String fileName) {
+        return fileName.startsWith("temp");
+    }
+
+    /**
+     * 文件在内存中的长度：blocks是文件的块数，allocated是文件在磁盘上已经分配的块数
+     */
+    private static class FileLength {
+        volatile int blocks;
+        int allocated;
+
+        FileLength(int blocks, int allocated) {
+            this.blocks = blocks;
+            this.allocated = allocated;
+        }
     }
 }
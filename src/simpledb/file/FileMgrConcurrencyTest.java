@@ -0,0 +1,78 @@
+package simpledb.file;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 多线程读写吞吐量测试。
+ * <p>
+ * 先创建若干个文件并写入固定数量的块，然后分别用1、2、4、8个线程随机地读写这些块，
+ * 每个线程使用自己的内存页。由于FileMgr使用定位读写而不是全局的锁，吞吐量应当随线程数增长。
+ */
+public class FileMgrConcurrencyTest {
+    private static final int NUM_FILES = 4;
+    private static final int BLOCKS_PER_FILE = 256;
+    private static final int OPS_PER_THREAD = 20000;
+    /**
+     * 每10次操作中有1次写，其余为读(与缓冲区缺页的典型比例接近)
+     */
+    private static final int WRITE_EVERY = 10;
+
+    public static void main(String[] args) throws Exception {
+        FileMgr fm = new FileMgr(new File("filemgrconcurrencytest"), 400);
+        Page p = new Page(fm.blockSize());
+        for (int f = 0; f < NUM_FILES; f++) {
+            String fileName = "testfile" + f;
+            while (fm.length(fileName) < BLOCKS_PER_FILE) {
+                fm.append(fileName);
+            }
+            for (int b = 0; b < BLOCKS_PER_FILE; b++) {
+                p.setInt(0, b);
+                fm.write(new BlockId(fileName, b), p);
+            }
+        }
+
+        for (int numThreads = 1; numThreads <= 8; numThreads *= 2) {
+            run(fm, numThreads);
+        }
+    }
+
+    private static void run(FileMgr fm, int numThreads) throws InterruptedException {
+        Thread[] threads = new Thread[numThreads];
+        AtomicLong errors = new AtomicLong();
+        for (int i = 0; i < numThreads; i++) {
+            final long seed = i;
+            threads[i] = new Thread(() -> {
+                Random rand = new Random(seed);
+                Page page = new Page(fm.blockSize());
+                for (int op = 0; op < OPS_PER_THREAD; op++) {
+                    int b = rand.nextInt(BLOCKS_PER_FILE);
+                    BlockId blk = new BlockId("testfile" + rand.nextInt(NUM_FILES), b);
+                    if (op % WRITE_EVERY == 0) {
+                        page.setInt(0, b);
+                        fm.write(blk, page);
+                    } else {
+                        fm.read(blk, page);
+                        // 每个块的第一个int都是它自己的块号，读到别的值说明读写互相干扰了
+                        if (page.getInt(0) != b) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        long totalOps = (long) numThreads * OPS_PER_THREAD;
+        long opsPerSec = totalOps * 1_000_000_000L / elapsed;
+        System.out.println(numThreads + " threads: " + totalOps + " block ops in "
+                + (elapsed / 1_000_000) + " ms, " + opsPerSec + " ops/s, " + errors.get() + " errors");
+    }
+}
@@ -0,0 +1,92 @@
+package simpledb.file;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个文件的IO统计：读写的块数、字节数和每次读写请求的延迟。
+ * <p>
+ * 计数器都是LongAdder，并发的缓冲区缺页不会在同一个计数器上争用。
+ * 字节数是实际在磁盘上读写的字节数，压缩存储的文件会比块数乘以块大小少。
+ */
+public class FileStats {
+    private final String fileName;
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LatencyHistogram readLatency = new LatencyHistogram();
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+
+    public FileStats(String fileName) {
+        this.fileName = fileName;
+    }
+
+    /**
+     * 记录一次读请求
+     *
+     * @param blocks 读取的块数，分散读一次可以读取多个块
+     * @param bytes  从磁盘读取的字节数
+     * @param nanos  请求的耗时
+     */
+    public void recordRead(int blocks, long bytes, long nanos) {
+        reads.add(blocks);
+        bytesRead.add(bytes);
+        readLatency.record(nanos);
+    }
+
+    /**
+     * 记录一次写请求
+     *
+     * @param blocks 写入的块数
+     * @param bytes  写入磁盘的字节数
+     * @param nanos  请求的耗时
+     */
+    public void recordWrite(int blocks, long bytes, long nanos) {
+        writes.add(blocks);
+        bytesWritten.add(bytes);
+        writeLatency.record(nanos);
+    }
+
+    public String fileName() {
+        return fileName;
+    }
+
+    public long reads() {
+        return reads.sum();
+    }
+
+    public long writes() {
+        return writes.sum();
+    }
+
+    public long bytesRead() {
+        return bytesRead.sum();
+    }
+
+    public long bytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    public LatencyHistogram readLatency() {
+        return readLatency;
+    }
+
+    public LatencyHistogram writeLatency() {
+        return writeLatency;
+    }
+
+    public void reset() {
+        reads.reset();
+        writes.reset();
+        bytesRead.reset();
+        bytesWritten.reset();
+        readLatency.reset();
+        writeLatency.reset();
+    }
+
+    @Override
+    public String toString() {
+        return fileName + ": reads=" + reads() + " (" + bytesRead() + " bytes, " + readLatency + "), writes="
+                + writes() + " (" + bytesWritten() + " bytes, " + writeLatency + ")";
+    }
+}
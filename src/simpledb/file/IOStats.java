@@ -0,0 +1,165 @@
+package simpledb.file;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * 文件管理器的IO统计，每个文件一个{@link FileStats}。
+ * <p>
+ * 通过{@link FileMgr#ioStats()}在程序中访问，调用{@link #register(String)}之后也可以通过JMX
+ * (例如jconsole)查看，对象名是"simpledb:type=IOStats,name=数据库名"。
+ */
+public class IOStats implements IOStatsMXBean {
+    private final Map<String, FileStats> files = new ConcurrentHashMap<>();
+
+    /**
+     * 返回指定文件的统计，第一次访问时创建
+     *
+     * @param fileName 文件名
+     * @return 该文件的统计
+     */
+    public FileStats file(String fileName) {
+        FileStats stats = files.get(fileName);
+        if (stats == null) {
+            stats = files.computeIfAbsent(fileName, FileStats::new);
+        }
+        return stats;
+    }
+
+    /**
+     * @return 所有有过读写的文件的统计
+     */
+    public Collection<FileStats> files() {
+        return files.values();
+    }
+
+    /**
+     * 把统计注册到平台的MBeanServer，同名的旧对象会被替换
+     *
+     * @param dbName 数据库名，用作对象名的一部分
+     */
+    public void register(String dbName) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("simpledb:type=IOStats,name=" + ObjectName.quote(dbName));
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            throw new RuntimeException("cannot register IO statistics for " + dbName);
+        }
+    }
+
+    @Override
+    public long getTotalReads() {
+        long n = 0;
+        for (FileStats s : files.values()) {
+            n += s.reads();
+        }
+        return n;
+    }
+
+    @Override
+    public long getTotalWrites() {
+        long n = 0;
+        for (FileStats s : files.values()) {
+            n += s.writes();
+        }
+        return n;
+    }
+
+    @Override
+    public long getTotalBytesRead() {
+        long n = 0;
+        for (FileStats s : files.values()) {
+            n += s.bytesRead();
+        }
+        return n;
+    }
+
+    @Override
+    public long getTotalBytesWritten() {
+        long n = 0;
+        for (FileStats s : files.values()) {
+            n += s.bytesWritten();
+        }
+        return n;
+    }
+
+    @Override
+    public String[] getFileNames() {
+        List<FileStats> sorted = sortedByActivity();
+        String[] names = new String[sorted.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = sorted.get(i).fileName();
+        }
+        return names;
+    }
+
+    @Override
+    public long reads(String fileName) {
+        FileStats s = files.get(fileName);
+        return s == null ? 0 : s.reads();
+    }
+
+    @Override
+    public long writes(String fileName) {
+        FileStats s = files.get(fileName);
+        return s == null ? 0 : s.writes();
+    }
+
+    @Override
+    public long bytesRead(String fileName) {
+        FileStats s = files.get(fileName);
+        return s == null ? 0 : s.bytesRead();
+    }
+
+    @Override
+    public long bytesWritten(String fileName) {
+        FileStats s = files.get(fileName);
+        return s == null ? 0 : s.bytesWritten();
+    }
+
+    @Override
+    public long readLatencyPercentile(String fileName, double p) {
+        FileStats s = files.get(fileName);
+        return s == null ? 0 : s.readLatency().percentileNanos(p);
+    }
+
+    @Override
+    public long writeLatencyPercentile(String fileName, double p) {
+        FileStats s = files.get(fileName);
+        return s == null ? 0 : s.writeLatency().percentileNanos(p);
+    }
+
+    @Override
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        for (FileStats s : sortedByActivity()) {
+            sb.append(s).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (FileStats s : files.values()) {
+            s.reset();
+        }
+    }
+
+    private List<FileStats> sortedByActivity() {
+        List<FileStats> sorted = new ArrayList<>(files.values());
+        sorted.sort(Comparator.comparingLong((FileStats s) -> s.reads() + s.writes()).reversed());
+        return sorted;
+    }
+}
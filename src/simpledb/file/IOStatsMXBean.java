@@ -0,0 +1,48 @@
+package simpledb.file;
+
+/**
+ * 通过JMX暴露的IO统计，属性是所有文件的合计，操作按文件名查询单个文件
+ */
+public interface IOStatsMXBean {
+    long getTotalReads();
+
+    long getTotalWrites();
+
+    long getTotalBytesRead();
+
+    long getTotalBytesWritten();
+
+    /**
+     * @return 有过读写的文件名，按读写的块数从多到少排列
+     */
+    String[] getFileNames();
+
+    long reads(String fileName);
+
+    long writes(String fileName);
+
+    long bytesRead(String fileName);
+
+    long bytesWritten(String fileName);
+
+    /**
+     * @param fileName 文件名
+     * @param p        0到1之间的比例
+     * @return 该文件读请求延迟的百分位数(纳秒)
+     */
+    long readLatencyPercentile(String fileName, double p);
+
+    /**
+     * @param fileName 文件名
+     * @param p        0到1之间的比例
+     * @return 该文件写请求延迟的百分位数(纳秒)
+     */
+    long writeLatencyPercentile(String fileName, double p);
+
+    /**
+     * @return 每个文件一行的统计报告
+     */
+    String report();
+
+    void reset();
+}
@@ -0,0 +1,64 @@
+package simpledb.file;
+
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import simpledb.server.SimpleDB;
+
+/**
+ * IO统计测试。
+ * <p>
+ * 多个线程同时读写两个文件，检查每个文件的计数是否和实际的读写次数一致，
+ * 然后通过JMX读取同样的统计，最后打印每个文件的报告。
+ */
+public class IOStatsTest {
+    private static final int NUM_THREADS = 4;
+    private static final int OPS_PER_THREAD = 2000;
+
+    public static void main(String[] args) throws Exception {
+        SimpleDB db = new SimpleDB("iostatstest", 400, 8);
+        FileMgr fm = db.fileMgr();
+        IOStats stats = fm.ioStats();
+        for (String fileName : new String[]{"hot", "cold"}) {
+            while (fm.length(fileName) < 16) {
+                fm.append(fileName);
+            }
+        }
+        stats.reset();
+
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int t = 0; t < NUM_THREADS; t++) {
+            threads[t] = new Thread(() -> {
+                Page p = new Page(fm.blockSize());
+                for (int i = 0; i < OPS_PER_THREAD; i++) {
+                    // hot被读写的次数是cold的9倍
+                    String fileName = i % 10 == 0 ? "cold" : "hot";
+                    BlockId blk = new BlockId(fileName, i % 16);
+                    if (i % 4 == 0) {
+                        fm.write(blk, p);
+                    } else {
+                        fm.read(blk, p);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        long total = (long) NUM_THREADS * OPS_PER_THREAD;
+        System.out.println("reads + writes: " + (stats.getTotalReads() + stats.getTotalWrites())
+                + " (expected " + total + ")");
+        System.out.println("hot: " + (stats.reads("hot") + stats.writes("hot")) + " (expected " + total * 9 / 10
+                + "), cold: " + (stats.reads("cold") + stats.writes("cold")) + " (expected " + total / 10 + ")");
+        System.out.println("bytes read: " + stats.getTotalBytesRead()
+                + " (expected " + stats.getTotalReads() * fm.blockSize() + ")");
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("simpledb:type=IOStats,name=" + ObjectName.quote("iostatstest"));
+        System.out.println("JMX TotalReads: " + server.getAttribute(name, "TotalReads")
+                + ", busiest file: " + ((String[]) server.getAttribute(name, "FileNames"))[0]);
+        System.out.print(stats.report());
+    }
+}
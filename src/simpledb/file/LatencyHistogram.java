@@ -0,0 +1,113 @@
+package simpledb.file;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 线程安全的延迟直方图。
+ * <p>
+ * 按2的幂划分桶：第i个桶记录[2^(i-1), 2^i)纳秒的延迟，第0个桶记录0纳秒。
+ * 每个桶是一个LongAdder，多个线程同时记录时在不同的单元上累加，不会争用同一个计数器。
+ * 百分位数只精确到桶的上界，用来观察延迟的分布已经足够。
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 64;
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder totalNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 记录一次延迟
+     *
+     * @param nanos 延迟的纳秒数
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int i = Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(nanos));
+        buckets[i].increment();
+        totalNanos.add(nanos);
+    }
+
+    /**
+     * @return 记录的次数
+     */
+    public long count() {
+        long n = 0;
+        for (LongAdder b : buckets) {
+            n += b.sum();
+        }
+        return n;
+    }
+
+    /**
+     * @return 平均延迟的纳秒数，没有记录时返回0
+     */
+    public long meanNanos() {
+        long n = count();
+        return n == 0 ? 0 : totalNanos.sum() / n;
+    }
+
+    /**
+     * 返回延迟的百分位数
+     *
+     * @param p 0到1之间的比例，例如0.99
+     * @return 至少p比例的记录不超过的延迟(桶的上界，纳秒)，没有记录时返回0
+     */
+    public long percentileNanos(double p) {
+        long[] counts = bucketCounts();
+        long n = 0;
+        for (long c : counts) {
+            n += c;
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(p * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(1, target)) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    /**
+     * @return 每个桶中的记录数，第i个桶的上界是{@link #upperBound(int)}
+     */
+    public long[] bucketCounts() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * @param bucket 桶的下标
+     * @return 该桶记录的延迟的上界(纳秒)
+     */
+    public static long upperBound(int bucket) {
+        return bucket >= Long.SIZE - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    public void reset() {
+        for (LongAdder b : buckets) {
+            b.reset();
+        }
+        totalNanos.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count() + " mean=" + meanNanos() / 1000 + "us p50<=" + percentileNanos(0.5) / 1000
+                + "us p99<=" + percentileNanos(0.99) / 1000 + "us max<=" + percentileNanos(1.0) / 1000 + "us";
+    }
+}
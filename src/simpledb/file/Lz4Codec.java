@@ -0,0 +1,180 @@
+package simpledb.file;
+
+/**
+ * 纯Java实现的LZ4块格式压缩算法，用于压缩存储的数据页。
+ * <p>
+ * 压缩后的数据由若干个序列组成，每个序列是：
+ * 一个标记字节(高4位是字面量长度，低4位是匹配长度减4)、字面量长度的扩展字节、字面量、
+ * 2字节小端的匹配偏移、匹配长度的扩展字节。长度字段为15时后面跟着扩展字节，每个扩展字节累加0-255，直到出现不是255的字节。
+ * 最后一个序列只有字面量。
+ * <p>
+ * 匹配通过一个以4字节序列的哈希为下标的表来查找，只查找最近一次出现的位置，速度优先于压缩率。
+ * 数据页中大量的空白(定长VARCHAR槽位中没有用到的字节、空槽)会被压缩成很短的匹配。
+ */
+class Lz4Codec {
+    private static final int MIN_MATCH = 4;
+    private static final int HASH_LOG = 12;
+    private static final int MAX_OFFSET = 65535;
+    /**
+     * 最后一个匹配必须在输入末尾的MF_LIMIT个字节之前开始，最后LAST_LITERALS个字节总是字面量
+     */
+    private static final int MF_LIMIT = 12;
+    private static final int LAST_LITERALS = 5;
+
+    private Lz4Codec() {
+    }
+
+    /**
+     * 压缩后的数据的最大长度，dst至少需要这么大
+     *
+     * @param srcLen 原始数据的长度
+     * @return 压缩后的最大长度
+     */
+    static int maxCompressedLength(int srcLen) {
+        return srcLen + srcLen / 255 + 16;
+    }
+
+    /**
+     * 压缩src的前srcLen个字节
+     *
+     * @param src    原始数据
+     * @param srcLen 原始数据的长度
+     * @param dst    压缩后的数据，长度至少是maxCompressedLength(srcLen)
+     * @return 压缩后的数据的长度
+     */
+    static int compress(byte[] src, int srcLen, byte[] dst) {
+        int[] table = new int[1 << HASH_LOG];
+        int anchor = 0;
+        int op = 0;
+        int ip = 0;
+        int matchLimit = srcLen - MF_LIMIT;
+        while (ip < matchLimit) {
+            int seq = readInt(src, ip);
+            int h = hash(seq);
+            // 表中保存位置加1，0表示没有出现过
+            int ref = table[h] - 1;
+            table[h] = ip + 1;
+            if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != seq) {
+                ip++;
+                continue;
+            }
+            int matchLen = MIN_MATCH;
+            while (ip + matchLen < srcLen - LAST_LITERALS && src[ref + matchLen] == src[ip + matchLen]) {
+                matchLen++;
+            }
+            op = writeSequence(src, anchor, ip - anchor, ip - ref, matchLen, dst, op);
+            ip += matchLen;
+            anchor = ip;
+        }
+        return writeLastLiterals(src, anchor, srcLen - anchor, dst, op);
+    }
+
+    /**
+     * 解压缩src的前srcLen个字节，解压缩后的数据必须正好是dstLen个字节
+     *
+     * @param src    压缩后的数据
+     * @param srcLen 压缩后的数据的长度
+     * @param dst    解压缩后的数据
+     * @param dstLen 解压缩后的数据的长度
+     */
+    static void decompress(byte[] src, int srcLen, byte[] dst, int dstLen) {
+        int ip = 0;
+        int op = 0;
+        try {
+            while (ip < srcLen) {
+                int token = src[ip++] & 0xFF;
+                int litLen = token >>> 4;
+                if (litLen == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        litLen += b;
+                    } while (b == 255);
+                }
+                System.arraycopy(src, ip, dst, op, litLen);
+                ip += litLen;
+                op += litLen;
+                if (ip >= srcLen) {
+                    break;
+                }
+                int offset = (src[ip] & 0xFF) | (src[ip + 1] & 0xFF) << 8;
+                ip += 2;
+                int matchLen = token & 0x0F;
+                if (matchLen == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        matchLen += b;
+                    } while (b == 255);
+                }
+                matchLen += MIN_MATCH;
+                int ref = op - offset;
+                if (offset == 0 || ref < 0) {
+                    throw new RuntimeException("corrupt compressed block");
+                }
+                // 匹配可以和正在写入的区域重叠(例如一长串相同的字节)，所以逐字节复制
+                for (int i = 0; i < matchLen; i++) {
+                    dst[op++] = dst[ref++];
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new RuntimeException("corrupt compressed block");
+        }
+        if (op != dstLen) {
+            throw new RuntimeException("corrupt compressed block");
+        }
+    }
+
+    private static int writeSequence(byte[] src, int litStart, int litLen, int offset, int matchLen,
+                                     byte[] dst, int op) {
+        int tokenPos = op++;
+        int token;
+        if (litLen >= 15) {
+            token = 15 << 4;
+            op = writeLength(litLen - 15, dst, op);
+        } else {
+            token = litLen << 4;
+        }
+        System.arraycopy(src, litStart, dst, op, litLen);
+        op += litLen;
+        dst[op++] = (byte) offset;
+        dst[op++] = (byte) (offset >>> 8);
+        int ml = matchLen - MIN_MATCH;
+        if (ml >= 15) {
+            token |= 15;
+            op = writeLength(ml - 15, dst, op);
+        } else {
+            token |= ml;
+        }
+        dst[tokenPos] = (byte) token;
+        return op;
+    }
+
+    private static int writeLastLiterals(byte[] src, int litStart, int litLen, byte[] dst, int op) {
+        if (litLen >= 15) {
+            dst[op++] = (byte) (15 << 4);
+            op = writeLength(litLen - 15, dst, op);
+        } else {
+            dst[op++] = (byte) (litLen << 4);
+        }
+        System.arraycopy(src, litStart, dst, op, litLen);
+        return op + litLen;
+    }
+
+    private static int writeLength(int len, byte[] dst, int op) {
+        while (len >= 255) {
+            dst[op++] = (byte) 255;
+            len -= 255;
+        }
+        dst[op++] = (byte) len;
+        return op;
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+    }
+
+    private static int hash(int seq) {
+        return (seq * -1640531535) >>> (32 - HASH_LOG);
+    }
+}
@@ -0,0 +1,170 @@
+package simpledb.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 使用内存映射文件的文件管理器。
+ * <p>
+ * 每个文件按SEGMENT_BLOCKS个块为一段映射成MappedByteBuffer，读写块时直接在映射区和内存页之间复制，
+ * 缓冲区缺页不再需要一次read/write系统调用。小的表(如目录表)只有一段，整个文件都被映射。
+ * <p>
+ * 内存页仍然拥有自己的字节缓冲区，映射区只在read/write时被访问：
+ * 如果让内存页直接指向映射区，操作系统可能在日志记录落盘之前就把修改过的页写回磁盘，破坏WAL。
+ * <p>
+ * 超出文件末尾的块(还没有被append的块)和压缩存储的文件交给父类的通道读写处理。
+ */
+public class MappedFileMgr extends FileMgr {
+    /**
+     * 每个映射段包含的块数
+     */
+    public static int SEGMENT_BLOCKS = 2048;
+    private Map<String, List<MappedByteBuffer>> mappedFiles = new ConcurrentHashMap<>();
+
+    public MappedFileMgr(File dbDirectory, int blockSize) {
+        super(dbDirectory, blockSize);
+    }
+
+    public MappedFileMgr(File dbDirectory, int blockSize, SyncPolicy syncPolicy) {
+        super(dbDirectory, blockSize, syncPolicy);
+    }
+
+    /**
+     * 将映射区中指定块的内容复制到内存页
+     *
+     * @param blk 出发磁盘块
+     * @param p   目的内存页
+     */
+    @Override
+    public void read(BlockId blk, Page p) {
+        long start = System.nanoTime();
+        try {
+            MappedByteBuffer seg = isCompressed(blk.fileName()) ? null : segment(blk);
+            if (seg == null) {
+                super.read(blk, p);
+                return;
+            }
+            // 绝对位置的批量复制，不会移动映射区的位置，多个线程可以同时读同一段
+            int size = blockSize(blk.fileName());
+            p.contents().put(0, seg, segmentOffset(blk), size);
+            recordRead(blk.fileName(), 1, size, start);
+        } catch (IOException e) {
+            throw new RuntimeException("cannot read block " + blk);
+        }
+    }
+
+    /**
+     * 将内存页的内容复制到映射区中指定的块。
+     * 映射区的写不受"rws"的影响，所以PER_WRITE策略下需要自己强制写回磁盘
+     *
+     * @param blk 指定的磁盘上的文件的块的对象
+     * @param p   指定的内存上的缓冲区的对象
+     */
+    @Override
+    public void write(BlockId blk, Page p) {
+        long start = System.nanoTime();
+        try {
+            MappedByteBuffer seg = isCompressed(blk.fileName()) ? null : segment(blk);
+            if (seg == null) {
+                super.write(blk, p);
+                return;
+            }
+            int offset = segmentOffset(blk);
+            int size = blockSize(blk.fileName());
+            seg.put(offset, p.contents(), 0, size);
+            if (forcesEachWrite(blk.fileName())) {
+                seg.force(offset, size);
+            }
+            noteWrite(blk);
+            recordWrite(blk.fileName(), 1, size, start);
+        } catch (IOException e) {
+            throw new RuntimeException("cannot write block" + blk);
+        }
+    }
+
+    /**
+     * 映射区的读取本来就没有系统调用，逐块复制即可
+     *
+     * @param first 第一个要读取的块
+     * @param pages 目的内存页
+     */
+    @Override
+    public void readBlocks(BlockId first, Page[] pages) {
+        for (int i = 0; i < pages.length; i++) {
+            read(new BlockId(first.fileName(), first.number() + i), pages[i]);
+        }
+    }
+
+    /**
+     * 同步通道之外还要强制写回该文件的每个映射段
+     */
+    @Override
+    protected void force(String fileName) throws IOException {
+        List<MappedByteBuffer> segs = mappedFiles.get(fileName);
+        if (segs != null) {
+            synchronized (segs) {
+                for (MappedByteBuffer seg : segs) {
+                    if (seg != null) {
+                        seg.force();
+                    }
+                }
+            }
+        }
+        super.force(fileName);
+    }
+
+    /**
+     * 映射段不能显式地解除映射，这里只是丢弃它们；文件删除之后映射的内存在段被回收时释放
+     */
+    @Override
+    public void delete(String fileName) {
+        mappedFiles.remove(fileName);
+        super.delete(fileName);
+    }
+
+    /**
+     * 返回包含指定块的映射段。段只映射到文件的当前末尾，
+     * 文件通过append变长之后，最后一段会在下一次访问时被重新映射。
+     *
+     * @param blk 磁盘块
+     * @return 包含该块的映射段，如果该块在文件末尾之后则返回null
+     * @throws IOException IO异常
+     */
+    private MappedByteBuffer segment(BlockId blk) throws IOException {
+        List<MappedByteBuffer> segs = mappedFiles.computeIfAbsent(blk.fileName(), f -> new ArrayList<>());
+        int index = blk.number() / SEGMENT_BLOCKS;
+        int needed = segmentOffset(blk) + blockSize(blk.fileName());
+        synchronized (segs) {
+            MappedByteBuffer seg = index < segs.size() ? segs.get(index) : null;
+            if (seg != null && seg.capacity() >= needed) {
+                return seg;
+            }
+            FileChannel fc = getFile(blk.fileName());
+            long segStart = (long) index * segmentSize(blk.fileName());
+            long mapSize = Math.min(segmentSize(blk.fileName()), fc.size() - segStart);
+            if (mapSize < needed) {
+                return null;
+            }
+            seg = fc.map(FileChannel.MapMode.READ_WRITE, segStart, mapSize);
+            while (segs.size() <= index) {
+                segs.add(null);
+            }
+            segs.set(index, seg);
+            return seg;
+        }
+    }
+
+    private int segmentOffset(BlockId blk) {
+        return (blk.number() % SEGMENT_BLOCKS) * blockSize(blk.fileName());
+    }
+
+    private long segmentSize(String fileName) {
+        return (long) SEGMENT_BLOCKS * blockSize(fileName);
+    }
+}
@@ -0,0 +1,41 @@
+package simpledb.file;
+
+import simpledb.server.SimpleDB;
+
+/**
+ * 分别用STANDARD和MAPPED两种存储方式写入一个文件，再顺序地读回所有的块，
+ * 检查读到的内容并比较两种方式的读取耗时。
+ */
+public class MappedFileMgrTest {
+    private static final int NUM_BLOCKS = 5000;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        for (StorageMode mode : StorageMode.values()) {
+            SimpleDB db = new SimpleDB("mappedfiletest-" + mode.name().toLowerCase(), 400, 8, mode);
+            FileMgr fm = db.fileMgr();
+            Page p = new Page(fm.blockSize());
+            for (int b = 0; b < NUM_BLOCKS; b++) {
+                BlockId blk = fm.append("testfile");
+                p.setInt(0, blk.number());
+                p.setString(Integer.BYTES, "block" + blk.number());
+                fm.write(blk, p);
+            }
+
+            int errors = 0;
+            long start = System.nanoTime();
+            for (int r = 0; r < ROUNDS; r++) {
+                for (int b = 0; b < NUM_BLOCKS; b++) {
+                    fm.read(new BlockId("testfile", b), p);
+                    if (p.getInt(0) != b || !p.getString(Integer.BYTES).equals("block" + b)) {
+                        errors++;
+                    }
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.println(mode + ": read " + (ROUNDS * NUM_BLOCKS) + " blocks in "
+                    + (elapsed / 1_000_000) + " ms (" + (elapsed / (ROUNDS * NUM_BLOCKS)) + " ns/block), "
+                    + errors + " errors");
+        }
+    }
+}
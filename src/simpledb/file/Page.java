@@ -1,12 +1,8 @@
 package simpledb.file;
 
-import java.nio.BufferOverflowException;
-import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 
 /**
@@ -17,12 +13,14 @@ import java.util.Date;
  * Page类有两个构造函数，每个构造函数对应于一种不同类型的底层字节数组。
  * <p>
  * 各种get和set方法使客户机能够存储或访问页的指定位置上的值
+ * <p>
+ * 所有的get和set方法都使用绝对位置，不会修改ByteBuffer的position，
+ * 所以多个线程可以同时读取同一个页(例如同一个被固定的缓冲区)而不会互相干扰
  *
  * @author Edward Sciore
  */
 public class Page {
-    private ByteBuffer bb;
-    private static int BLOCK_SIZE;
+    private final ByteBuffer bb;
     private final int BYTE_HEAD_SIZE = 4;
     private final int CHAR_SIZE = 2;
     /**
@@ -43,7 +41,6 @@ public class Page {
         // 也就是说，它将尝试避免在每次调用其中一个底层操作系统的本机I / O操作之前（或之后）将缓冲区的内容复制到（或从）中间缓冲区。
         // 新缓冲区的位置将为零，其限制将为其容量，其标记将不定义，并且其每个元素将被初始化为零。 它是否有后备数组未指定。
         bb = ByteBuffer.allocateDirect(blocksize);
-        BLOCK_SIZE = blocksize;
     }
 
     /**
@@ -63,6 +60,29 @@ public class Page {
         bb = ByteBuffer.wrap(b);
     }
 
+    /**
+     * 创建一个使用已有直接缓冲区(例如{@link PageArena}的页帧)的页
+     *
+     * @param bb 页的内存
+     */
+    Page(ByteBuffer bb) {
+        this.bb = bb;
+    }
+
+    /**
+     * 创建一个内存地址按alignment对齐的页，用于直接I/O
+     *
+     * @param blocksize 页的大小
+     * @param alignment 对齐单位，必须是2的幂
+     * @return 新的页
+     */
+    public static Page allocateAligned(int blocksize, int alignment) {
+        // alignedSlice(int unitSize)
+        // 返回一个从对齐的地址开始、到对齐的地址结束的切片，多分配alignment个字节保证切片足够大
+        ByteBuffer aligned = ByteBuffer.allocateDirect(blocksize + alignment).alignedSlice(alignment);
+        return new Page(aligned.slice(0, blocksize));
+    }
+
     public boolean getBoolean(int offset) {
         // boolean bl = (bb.get(offset) == 0x01) ? true : false;
         boolean bl = (bb.get(offset) == 0x01);
@@ -84,27 +104,40 @@ public class Page {
         bb.putShort(offset, shorts);
     }
 
+    /**
+     * 读取offset位置的日期。日期按8个字节的纪元毫秒数存储，读取时不需要解析字符串
+     *
+     * @param offset 在当前缓冲区的offset位置读取要读取的数据
+     * @return 日期
+     */
     public Date getDate(int offset) {
-        byte[] b = getBytes(offset);
-        String timeStr = new String(b, CHARSET);
-        SimpleDateFormat sdf2 = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss:SSS");
-        Date dateTime = null;
-        try {
-            dateTime = sdf2.parse(timeStr);
-        } catch (ParseException e) {
-            e.printStackTrace();
-        }
-        return dateTime;
+        return new Date(bb.getLong(offset));
     }
 
     /**
-     * 将输入的表示日期的字符串转换为byte[]输入字节缓冲流
+     * 把日期作为8个字节的纪元毫秒数写入offset位置
      *
      * @param offset 在当前缓冲区的offset位置写入要写入的数据
-     * @param date   日期字符串,格式为"yyyy-MM-dd HH:mm:ss:SSS"
+     * @param date   日期
      */
-    public void setDate(int offset, String date) {
-        setString(offset, date);
+    public void setDate(int offset, Date date) {
+        bb.putLong(offset, date.getTime());
+    }
+
+    public long getLong(int offset) {
+        return bb.getLong(offset);
+    }
+
+    public void setLong(int offset, long n) {
+        bb.putLong(offset, n);
+    }
+
+    public double getDouble(int offset) {
+        return bb.getDouble(offset);
+    }
+
+    public void setDouble(int offset, double d) {
+        bb.putDouble(offset, d);
     }
 
     /**
@@ -144,11 +177,11 @@ public class Page {
      * @return 在缓冲区获取到的数据
      */
     public byte[] getBytes(int offset) {
-        bb.position(offset);
         // 读取字符串的长度，用来恢复二进制化的字符串
-        int length = bb.getInt();
+        int length = bb.getInt(offset);
         byte[] b = new byte[length];
-        bb.get(b);
+        // 绝对位置的批量读取，不移动position
+        bb.get(offset + BYTE_HEAD_SIZE, b);
         return b;
     }
 
@@ -165,11 +198,9 @@ public class Page {
     public void setBytes(int offset, byte[] b) throws RuntimeException {
         // 4个字节的int头
 //        final int BYTE_HEAD_SIZE = 4;
-        // position(int newPosition)
-        // 设置这个缓冲区的位置。
-        bb.position(offset);
         // 自定义抛出异常{https://www.bilibili.com/video/BV1Rx411876f?p=655}
-        if (offset + BYTE_HEAD_SIZE + b.length > BLOCK_SIZE) {
+        // 用这个页自己的容量检查，日志页和数据页的大小可以不同
+        if (offset + BYTE_HEAD_SIZE + b.length > bb.capacity()) {
             // BufferOverflowException boex = new BufferOverflowException("缓冲区容量过小，文件写入缓冲区失败");
             // 这里的BufferOverflowException没有打印信息的方法，所以不能打印信息
 //            RuntimeException rte = new RuntimeException("缓冲区容量过小，文件写入缓冲区失败");
@@ -179,8 +210,8 @@ public class Page {
         // putInt(int value)
         // 编写int值的相对 put方法 （可选操作） 。
         // 这里把字节流的长度 用4个字节的长度写入了缓冲区 这些数据的作用就是索引
-        bb.putInt(b.length);
-        bb.put(b);
+        bb.putInt(offset, b.length);
+        bb.put(offset + BYTE_HEAD_SIZE, b);
 
     }
 
@@ -214,19 +245,101 @@ public class Page {
         }
     }
 
+    /**
+     * 比较缓冲区中offset位置的字符串和一个已经编码好的字符串，结果和String.compareTo的符号相同。
+     * <p>
+     * 直接比较UTF-8字节，不创建byte[]和String。第一个不同的字节都是ASCII字符时按字节比较就是按字符比较；
+     * 否则UTF-8的字节顺序(码点顺序)和String.compareTo使用的UTF-16顺序可能不同，这时才解码后比较。
+     *
+     * @param offset 字符串在缓冲区中的位置
+     * @param key    用CHARSET编码的字符串
+     * @return 小于0、等于0或大于0，分别表示缓冲区中的字符串小于、等于或大于key
+     */
+    public int compareString(int offset, byte[] key) {
+        int length = bb.getInt(offset);
+        int start = offset + BYTE_HEAD_SIZE;
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            byte b = bb.get(start + i);
+            if (b != key[i]) {
+                if (b >= 0 && key[i] >= 0) {
+                    return b - key[i];
+                }
+                return getString(offset).compareTo(new String(key, CHARSET));
+            }
+        }
+        return length - key.length;
+    }
+
+    /**
+     * 判断缓冲区中offset位置的字符串是否等于一个已经编码好的字符串，不创建byte[]和String
+     *
+     * @param offset 字符串在缓冲区中的位置
+     * @param key    用CHARSET编码的字符串
+     * @return 两个字符串相等时返回true
+     */
+    public boolean stringEquals(int offset, byte[] key) {
+        if (bb.getInt(offset) != key.length) {
+            return false;
+        }
+        int start = offset + BYTE_HEAD_SIZE;
+        for (int i = 0; i < key.length; i++) {
+            if (bb.get(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 计算缓冲区中offset位置的字符串的哈希值，等于getString(offset).hashCode()，但不创建byte[]和String。
+     * 这里把UTF-8逐个解码成UTF-16的字符，按String.hashCode的公式累加
+     *
+     * @param offset 字符串在缓冲区中的位置
+     * @return 字符串的哈希值
+     */
+    public int hashString(int offset) {
+        int length = bb.getInt(offset);
+        int pos = offset + BYTE_HEAD_SIZE;
+        int end = pos + length;
+        int h = 0;
+        while (pos < end) {
+            int b = bb.get(pos++) & 0xFF;
+            int cp;
+            if (b < 0x80) {
+                cp = b;
+            } else if (b < 0xE0) {
+                cp = (b & 0x1F) << 6 | (bb.get(pos++) & 0x3F);
+            } else if (b < 0xF0) {
+                cp = (b & 0x0F) << 12 | (bb.get(pos++) & 0x3F) << 6 | (bb.get(pos++) & 0x3F);
+            } else {
+                cp = (b & 0x07) << 18 | (bb.get(pos++) & 0x3F) << 12 | (bb.get(pos++) & 0x3F) << 6
+                        | (bb.get(pos++) & 0x3F);
+            }
+            if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                h = 31 * h + cp;
+            } else {
+                h = 31 * h + Character.highSurrogate(cp);
+                h = 31 * h + Character.lowSurrogate(cp);
+            }
+        }
+        return h;
+    }
+
     public String getStringForChar(int offset) {
         // 获取到char转换成字节流的长度
         int length = bb.getInt(offset);
 
         StringBuilder sb = new StringBuilder();
+        int pos = offset + BYTE_HEAD_SIZE;
         try {
-            bb.position(offset + BYTE_HEAD_SIZE);
-        } catch (BufferUnderflowException e) {
+            for (int position = BYTE_HEAD_SIZE; position <= length; position = position + CHAR_SIZE) {
+                sb.append(bb.getChar(pos));
+                pos += CHAR_SIZE;
+            }
+        } catch (IndexOutOfBoundsException e) {
             e.printStackTrace();
         }
-        for (int position = BYTE_HEAD_SIZE; position <= length; position = position + CHAR_SIZE) {
-            sb.append(bb.getChar());
-        }
         return sb.toString();
     }
 
@@ -244,15 +357,16 @@ public class Page {
             chars[i] = s.charAt(i);
         }
         try {
-            bb.position(offset);
             // 将char转换成字节流的长度写入数据头
             // char的字节大小是byte的两倍,最后还要加上一个分隔符'\0'
-            bb.putInt((s.length() + 1) * 2);
+            bb.putInt(offset, (s.length() + 1) * 2);
+            int pos = offset + BYTE_HEAD_SIZE;
             for (char c : chars) {
-                bb.putChar(c);
+                bb.putChar(pos, c);
+                pos += CHAR_SIZE;
             }
-            bb.putChar('\0');
-        } catch (BufferOverflowException e) {
+            bb.putChar(pos, '\0');
+        } catch (IndexOutOfBoundsException e) {
             e.printStackTrace();
         }
     }
@@ -280,17 +394,26 @@ public class Page {
         return Integer.BYTES + (strlen * (int) bytesPerChar);
     }
 
+    /**
+     * @return 页的大小(字节)
+     */
+    public int size() {
+        return bb.capacity();
+    }
+
     // a package private method, needed by FileMgr
 
     /**
-     * 将这个缓冲区的指针位置设置为0
+     * 返回和这个页共享内容的ByteBuffer视图，位置为0。
+     * <p>
+     * 视图有自己的position和limit，文件管理器的通道读写移动的是视图的position，
+     * 不会影响同时在读取这个页的其他线程，两个线程同时写出同一个页也不会互相干扰
      *
      * @return ByteBuffer对象
      */
     ByteBuffer contents() {
-        // position(int newPosition)
-        // 设置这个缓冲区的位置。
-        bb.position(0);
-        return bb;
+        // duplicate()
+        // 创建一个共享此缓冲区内容的新字节缓冲区，两个缓冲区的位置、限制和标记是相互独立的。
+        return bb.duplicate();
     }
 }
@@ -0,0 +1,113 @@
+package simpledb.file;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 一块连续的堆外内存，切分成大小相同的页帧，供缓冲池使用。
+ * <p>
+ * 每个页单独调用allocateDirect时，很大的缓冲池会有上百万个小的直接缓冲区，
+ * 启动时逐个分配很慢，每个缓冲区还各有一个Cleaner需要垃圾回收器处理。
+ * 页区只分配几个大的直接缓冲区，每个页帧是其中的一个切片，所有页帧共用所属缓冲区的Cleaner。
+ * <p>
+ * 一个直接缓冲区最多有Integer.MAX_VALUE个字节，所以页区按{@link #CHUNK_BYTES}分成若干块，
+ * 每块容纳整数个页帧。需要对齐时，每块的起始地址按对齐单位对齐，
+ * 页帧的大小是对齐单位的整数倍时每个页帧的地址也是对齐的。
+ * <p>
+ * 块大小不是默认大小的文件需要其他大小的页。页区按大小分类管理这些页：
+ * {@link #take(int)}从该大小的空闲页中取一个，没有时一次分配{@link #SIZE_CLASS_BATCH}个；
+ * {@link #give(Page)}把不再使用的页放回去。这些页分配之后不再释放，
+ * 所以不同块大小的文件交替使用缓冲区时不会反复分配堆外内存。
+ */
+public class PageArena {
+    /**
+     * 每块堆外内存最多的字节数
+     */
+    public static int CHUNK_BYTES = 1 << 30;
+    /**
+     * 每次为一个大小类分配的页数
+     */
+    public static int SIZE_CLASS_BATCH = 16;
+    private final Page[] frames;
+    private final int alignment;
+    /**
+     * 每个大小类的空闲页，键是页的大小
+     */
+    private final Map<Integer, ArrayDeque<Page>> spare = new HashMap<>();
+
+    /**
+     * 分配一个有frames个页帧的页区
+     *
+     * @param frames    页帧的个数
+     * @param frameSize 每个页帧的字节数
+     * @param alignment 页帧地址的对齐单位，必须是2的幂，1表示不需要对齐
+     */
+    public PageArena(int frames, int frameSize, int alignment) {
+        this.frames = new Page[frames];
+        this.alignment = alignment;
+        int perChunk = Math.max(1, Math.min(frames, (CHUNK_BYTES - alignment) / frameSize));
+        for (int start = 0; start < frames; start += perChunk) {
+            int n = Math.min(perChunk, frames - start);
+            // alignedSlice(int unitSize)
+            // 返回一个从对齐的地址开始的切片，多分配alignment个字节保证切片足够大
+            ByteBuffer chunk = ByteBuffer.allocateDirect(n * frameSize + alignment).alignedSlice(alignment);
+            for (int i = 0; i < n; i++) {
+                this.frames[start + i] = new Page(chunk.slice(i * frameSize, frameSize));
+            }
+        }
+    }
+
+    /**
+     * @return 页帧的个数
+     */
+    public int size() {
+        return frames.length;
+    }
+
+    /**
+     * 返回第i个页帧，多次调用返回同一个页
+     *
+     * @param i 页帧的编号
+     * @return 页帧
+     */
+    public Page frame(int i) {
+        return frames[i];
+    }
+
+    /**
+     * 取一个指定大小的空闲页，没有时为这个大小类分配一批新的页
+     *
+     * @param size 页的大小
+     * @return 指定大小的页，内容不确定
+     */
+    public synchronized Page take(int size) {
+        ArrayDeque<Page> pages = spare.computeIfAbsent(size, k -> new ArrayDeque<>());
+        if (pages.isEmpty()) {
+            ByteBuffer chunk = ByteBuffer.allocateDirect(SIZE_CLASS_BATCH * size + alignment).alignedSlice(alignment);
+            for (int i = 0; i < SIZE_CLASS_BATCH; i++) {
+                pages.add(new Page(chunk.slice(i * size, size)));
+            }
+        }
+        return pages.pop();
+    }
+
+    /**
+     * 放回一个由{@link #take(int)}取出的页，最近放回的页最先被再次取出
+     *
+     * @param p 不再使用的页
+     */
+    public synchronized void give(Page p) {
+        spare.get(p.size()).push(p);
+    }
+
+    /**
+     * @param size 页的大小
+     * @return 这个大小类已经分配的空闲页数
+     */
+    synchronized int spareCount(int size) {
+        ArrayDeque<Page> pages = spare.get(size);
+        return pages == null ? 0 : pages.size();
+    }
+}
@@ -0,0 +1,62 @@
+package simpledb.file;
+
+/**
+ * 页区测试。
+ * <p>
+ * 比较分配一个有NUM_FRAMES个页帧的页区和逐个分配同样多的页所用的时间，
+ * 然后把{@link PageArena#CHUNK_BYTES}调小，让页区分成多块，
+ * 检查每个页帧的大小和对齐，以及写入一个页帧不会改变相邻的页帧。
+ * 最后交替取出和放回另一个大小类的页，检查页被重新使用，而不是每次都分配新的内存。
+ */
+public class PageArenaTest {
+    private static final int FRAME_SIZE = 4096;
+    private static final int NUM_FRAMES = 65536;
+
+    public static void main(String[] args) {
+        long start = System.nanoTime();
+        PageArena arena = new PageArena(NUM_FRAMES, FRAME_SIZE, 1);
+        System.out.println("arena of " + arena.size() + " frames: "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+        start = System.nanoTime();
+        Page[] pages = new Page[NUM_FRAMES];
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            pages[i] = new Page(FRAME_SIZE);
+        }
+        System.out.println(pages.length + " separate pages: "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+
+        int saved = PageArena.CHUNK_BYTES;
+        PageArena.CHUNK_BYTES = 10 * FRAME_SIZE;
+        PageArena chunked = new PageArena(25, FRAME_SIZE, 512);
+        PageArena.CHUNK_BYTES = saved;
+        int errors = 0;
+        for (int i = 0; i < chunked.size(); i++) {
+            Page p = chunked.frame(i);
+            p.setInt(0, i);
+            p.setInt(FRAME_SIZE - Integer.BYTES, i);
+            if (p.size() != FRAME_SIZE || p.contents().alignmentOffset(0, 512) != 0) {
+                errors++;
+            }
+        }
+        for (int i = 0; i < chunked.size(); i++) {
+            Page p = chunked.frame(i);
+            if (p.getInt(0) != i || p.getInt(FRAME_SIZE - Integer.BYTES) != i) {
+                errors++;
+            }
+        }
+        System.out.println("chunked arena of " + chunked.size() + " frames: " + errors + " errors");
+
+        Page first = chunked.take(128);
+        int reused = 0;
+        for (int i = 0; i < 1000; i++) {
+            Page p = chunked.take(128);
+            chunked.give(p);
+            Page q = chunked.take(128);
+            reused += q == p && q.size() == 128 ? 1 : 0;
+            chunked.give(q);
+        }
+        chunked.give(first);
+        System.out.println("size class of 128 bytes: " + reused + " of 1000 pages reused (expected 1000), "
+                + chunked.spareCount(128) + " pages allocated (expected " + PageArena.SIZE_CLASS_BATCH + ")");
+    }
+}
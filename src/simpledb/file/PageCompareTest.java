@@ -0,0 +1,81 @@
+package simpledb.file;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * 页内字符串比较测试。
+ * <p>
+ * 用随机的ASCII、中文和增补字符组成的字符串检查compareString、stringEquals和hashString
+ * 的结果是否和先解码成String再比较的结果一致，然后比较两种方式的耗时和分配的内存。
+ */
+public class PageCompareTest {
+    private static final int NUM_STRINGS = 2000;
+    private static final int ROUNDS = 200;
+    private static final String[] PIECES = {"a", "b", "z", "A", "0", "数", "据", "é", "😀", "\uFFFD"};
+
+    public static void main(String[] args) {
+        Random rand = new Random(7);
+        String[] strs = new String[NUM_STRINGS];
+        for (int i = 0; i < NUM_STRINGS; i++) {
+            StringBuilder sb = new StringBuilder();
+            int len = rand.nextInt(6);
+            for (int j = 0; j < len; j++) {
+                // 大部分是ASCII，少数是多字节字符
+                sb.append(PIECES[rand.nextInt(10) < 8 ? rand.nextInt(5) : 5 + rand.nextInt(5)]);
+            }
+            strs[i] = sb.toString();
+        }
+        Page p = new Page(Page.maxLength(20));
+        int errors = 0;
+        for (int i = 0; i < NUM_STRINGS; i++) {
+            p.setString(0, strs[i]);
+            if (p.hashString(0) != strs[i].hashCode()) {
+                errors++;
+            }
+            for (int k = 0; k < 50; k++) {
+                String other = strs[rand.nextInt(NUM_STRINGS)];
+                byte[] key = other.getBytes(Page.CHARSET);
+                if (Integer.signum(p.compareString(0, key)) != Integer.signum(strs[i].compareTo(other))
+                        || p.stringEquals(0, key) != strs[i].equals(other)) {
+                    errors++;
+                }
+            }
+        }
+        System.out.println("correctness: " + errors + " errors");
+
+        p.setString(0, "customer-000123");
+        byte[] key = "customer-000124".getBytes(Page.CHARSET);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        int n = ROUNDS * NUM_STRINGS;
+        int sink = 0;
+        for (int warm = 0; warm < 2; warm++) {
+            long bytes = threads.getThreadAllocatedBytes(tid);
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                sink += p.getString(0).compareTo("customer-000124");
+            }
+            long decodeNs = System.nanoTime() - start;
+            long decodeBytes = threads.getThreadAllocatedBytes(tid) - bytes;
+
+            bytes = threads.getThreadAllocatedBytes(tid);
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                sink += p.compareString(0, key);
+            }
+            long inPlaceNs = System.nanoTime() - start;
+            long inPlaceBytes = threads.getThreadAllocatedBytes(tid) - bytes;
+            if (warm == 1) {
+                System.out.println("getString + compareTo: " + decodeNs / n + " ns, " + decodeBytes / n
+                        + " bytes allocated per comparison");
+                System.out.println("compareString:         " + inPlaceNs / n + " ns, " + inPlaceBytes / n
+                        + " bytes allocated per comparison");
+            }
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package simpledb.file;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多个线程同时读取同一个页的测试。
+ * <p>
+ * 一个页里放多个长度不同的字符串，多个线程同时用getString、getBytes和getInt读取不同位置的值，
+ * 同时另一个线程不断通过文件管理器把这个页写到磁盘。所有读到的值都应该和写入的一致。
+ */
+public class PageConcurrencyTest {
+    private static final int NUM_THREADS = 8;
+    private static final int READS_PER_THREAD = 200000;
+    private static final int NUM_STRINGS = 10;
+    private static final int SLOT_SIZE = 36;
+
+    public static void main(String[] args) throws Exception {
+        FileMgr fm = new FileMgr(new java.io.File("pageconcurrencytest"), 400);
+        Page p = new Page(fm.blockSize());
+        String[] strs = new String[NUM_STRINGS];
+        for (int i = 0; i < NUM_STRINGS; i++) {
+            strs[i] = "value" + "-".repeat(i * 2) + i;
+            p.setString(i * SLOT_SIZE, strs[i]);
+        }
+        p.setInt(NUM_STRINGS * SLOT_SIZE, 12345);
+        BlockId blk = fm.append("pagetest");
+
+        AtomicInteger errors = new AtomicInteger();
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int t = 0; t < NUM_THREADS; t++) {
+            int seed = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < READS_PER_THREAD; i++) {
+                    int k = (i + seed) % NUM_STRINGS;
+                    if (!p.getString(k * SLOT_SIZE).equals(strs[k])
+                            || p.getBytes(k * SLOT_SIZE).length != strs[k].length()
+                            || p.getInt(NUM_STRINGS * SLOT_SIZE) != 12345) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+        }
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 2000; i++) {
+                fm.write(blk, p);
+            }
+        });
+        for (Thread t : threads) {
+            t.start();
+        }
+        writer.start();
+        for (Thread t : threads) {
+            t.join();
+        }
+        writer.join();
+
+        Page copy = new Page(fm.blockSize());
+        fm.read(blk, copy);
+        for (int i = 0; i < NUM_STRINGS; i++) {
+            if (!copy.getString(i * SLOT_SIZE).equals(strs[i])) {
+                errors.incrementAndGet();
+            }
+        }
+        System.out.println("concurrent reads: " + (long) NUM_THREADS * READS_PER_THREAD
+                + ", errors: " + errors.get() + " (expected 0)");
+    }
+}
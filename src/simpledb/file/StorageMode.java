@@ -0,0 +1,23 @@
+package simpledb.file;
+
+/**
+ * 文件管理器的存储方式，在构造SimpleDB时选择。
+ */
+public enum StorageMode {
+    /**
+     * 使用FileChannel的定位读写，见{@link FileMgr}
+     */
+    STANDARD,
+    /**
+     * 使用内存映射文件，见{@link MappedFileMgr}
+     */
+    MAPPED,
+    /**
+     * 使用AsynchronousFileChannel，缓冲区缺页时只开始读取，见{@link AsyncFileMgr}
+     */
+    ASYNC,
+    /**
+     * 使用直接I/O(O_DIRECT)，绕过操作系统的页缓存，见{@link DirectFileMgr}
+     */
+    DIRECT
+}
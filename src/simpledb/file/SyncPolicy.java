@@ -0,0 +1,22 @@
+package simpledb.file;
+
+/**
+ * 文件管理器把写入的数据同步到磁盘的时机。
+ * <p>
+ * 临时表文件(以"temp"开头的文件)在崩溃后没有意义，无论选择哪种策略都不会被同步。
+ */
+public enum SyncPolicy {
+    /**
+     * 每次写都同步写入数据和元数据(以"rws"方式打开文件)
+     */
+    PER_WRITE,
+    /**
+     * 写操作只进入操作系统的缓存，只在提交和检查点时
+     * (LogMgr.flush和BufferMgr.flushAll)对写过的文件执行一次FileChannel.force(false)
+     */
+    AT_COMMIT,
+    /**
+     * 从不主动同步，由操作系统决定何时写回磁盘
+     */
+    NONE
+}
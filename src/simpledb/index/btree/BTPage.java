@@ -1,6 +1,8 @@
 package simpledb.index.btree;
 
-import static java.sql.Types.INTEGER;
+import static java.sql.Types.*;
+import java.sql.Date;
+import java.sql.Timestamp;
 import simpledb.file.BlockId;
 import simpledb.tx.Transaction;
 import simpledb.record.*;
@@ -40,7 +42,7 @@ public class BTPage {
     */
    public int findSlotBefore(Constant searchkey) {
       int slot = 0;
-      while (slot < getNumRecs() && getDataVal(slot).compareTo(searchkey) < 0)
+      while (slot < getNumRecs() && compareDataVal(slot, searchkey) < 0)
          slot++;
       return slot-1;
    }
@@ -59,7 +61,7 @@ public class BTPage {
     * @return true if the block is full
     */
    public boolean isFull() {
-      return slotpos(getNumRecs()+1) >= tx.blockSize();
+      return slotpos(getNumRecs()+1) >= tx.blockSize(currentblk.fileName());
    }
    
    /**
@@ -88,6 +90,43 @@ public class BTPage {
       return getVal(slot, "dataval");
    }
    
+   /**
+    * Compare the dataval of the record at the specified slot
+    * with the specified key, without decoding a string dataval.
+    * @param slot the integer slot of an index record
+    * @param key the key to compare against
+    * @return a negative, zero, or positive value as the dataval
+    *         is less than, equal to, or greater than the key
+    */
+   public int compareDataVal(int slot, Constant key) {
+      int pos = fldpos(slot, "dataval");
+      int type = layout.schema().type("dataval");
+      if (type == INTEGER && key.type() == INTEGER)
+         return Integer.compare(tx.getInt(currentblk, pos), key.asInt());
+      else if (type == VARCHAR)
+         return tx.compareString(currentblk, pos, key.asBytes());
+      else
+         return getDataVal(slot).compareTo(key);
+   }
+   
+   /**
+    * Return true if the dataval of the record at the specified slot
+    * equals the specified key, without decoding a string dataval.
+    * @param slot the integer slot of an index record
+    * @param key the key to compare against
+    * @return true if the dataval equals the key
+    */
+   public boolean dataValEquals(int slot, Constant key) {
+      int pos = fldpos(slot, "dataval");
+      int type = layout.schema().type("dataval");
+      if (type == INTEGER && key.type() == INTEGER)
+         return tx.getInt(currentblk, pos) == key.asInt();
+      else if (type == VARCHAR)
+         return tx.stringEquals(currentblk, pos, key.asBytes());
+      else
+         return getDataVal(slot).equals(key);
+   }
+   
    /**
     * Return the value of the page's flag field
     * @return the value of the page's flag field
@@ -121,17 +160,21 @@ public class BTPage {
       tx.setInt(blk, 0, flag, false);
       tx.setInt(blk, Integer.BYTES, 0, false);  // #records = 0
       int recsize = layout.slotSize();
-      for (int pos=2*Integer.BYTES; pos+recsize<=tx.blockSize(); pos += recsize)
+      int blocksize = tx.blockSize(blk.fileName());
+      for (int pos=2*Integer.BYTES; pos+recsize<=blocksize; pos += recsize)
          makeDefaultRecord(blk, pos);
    }
    
    private void makeDefaultRecord(BlockId blk, int pos) {
       for (String fldname : layout.schema().fields()) {
          int offset = layout.offset(fldname);
-         if (layout.schema().type(fldname) == INTEGER)
+         int type = layout.schema().type(fldname);
+         if (type == INTEGER)
             tx.setInt(blk, pos + offset, 0, false);
-         else
+         else if (type == VARCHAR)
             tx.setString(blk, pos + offset, "", false);
+         else
+            tx.setLong(blk, pos + offset, 0, false);
       }
    }
    // Methods called only by BTreeDir
@@ -213,12 +256,20 @@ public class BTPage {
       return tx.getString(currentblk, pos);
    }
    
+   private long getLong(int slot, String fldname) {
+      int pos = fldpos(slot, fldname);
+      return tx.getLong(currentblk, pos);
+   }
+   
    private Constant getVal(int slot, String fldname) {
-      int type = layout.schema().type(fldname);
-      if (type == INTEGER)
-         return new Constant(getInt(slot, fldname));
-      else
-         return new Constant(getString(slot, fldname));
+      switch (layout.schema().type(fldname)) {
+         case INTEGER:   return new Constant(getInt(slot, fldname));
+         case BIGINT:    return new Constant(getLong(slot, fldname));
+         case DOUBLE:    return new Constant(tx.getDouble(currentblk, fldpos(slot, fldname)));
+         case DATE:      return new Constant(new Date(getLong(slot, fldname)));
+         case TIMESTAMP: return new Constant(new Timestamp(getLong(slot, fldname)));
+         default:        return new Constant(getString(slot, fldname));
+      }
    }
    
    private void setInt(int slot, String fldname, int val) {
@@ -231,12 +282,29 @@ public class BTPage {
       tx.setString(currentblk, pos, val, true);
    }
    
+   private void setLong(int slot, String fldname, long val) {
+      int pos = fldpos(slot, fldname);
+      tx.setLong(currentblk, pos, val, true);
+   }
+   
    private void setVal(int slot, String fldname, Constant val) {
-      int type = layout.schema().type(fldname);
-      if (type == INTEGER)
-         setInt(slot, fldname, val.asInt());
-      else
-         setString(slot, fldname, val.asString());
+      int fldtype = layout.schema().type(fldname);
+      val.checkFieldType(fldtype);
+      switch (fldtype) {
+         case INTEGER:
+            setInt(slot, fldname, val.asInt());
+            break;
+         case BIGINT:
+         case DATE:
+         case TIMESTAMP:
+            setLong(slot, fldname, val.asLong());
+            break;
+         case DOUBLE:
+            tx.setDouble(currentblk, fldpos(slot, fldname), val.asDouble(), true);
+            break;
+         default:
+            setString(slot, fldname, val.asString());
+      }
    }
    
    private void setNumRecs(int n) {
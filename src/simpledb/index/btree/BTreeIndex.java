@@ -1,6 +1,9 @@
 package simpledb.index.btree;
 
-import static java.sql.Types.INTEGER;
+import static java.sql.Types.*;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.*;
 import simpledb.file.BlockId;
 import simpledb.tx.Transaction;
 import simpledb.record.*;
@@ -51,10 +54,7 @@ public class BTreeIndex implements Index {
          BTPage node = new BTPage(tx, rootblk, dirLayout);
          node.format(rootblk, 0);
          // insert initial directory entry
-         int fldtype = dirsch.type("dataval");
-         Constant minval = (fldtype == INTEGER) ?
-               new Constant(Integer.MIN_VALUE) :
-               new Constant("");
+         Constant minval = minValue(dirsch.type("dataval"));
          node.insertDir(0, minval, 0);
          node.close();
       }
@@ -144,6 +144,16 @@ public class BTreeIndex implements Index {
          leaf.close();
    }
 
+   /**
+    * Return the names of the leaf and directory files
+    * of the specified index.
+    * @param idxname the name of the index
+    * @return the names of the index's files
+    */
+   public static List<String> fileNames(String idxname) {
+      return Arrays.asList(idxname + "leaf", idxname + "dir");
+   }
+
    /**
     * Estimate the number of block accesses
     * required to find all index records having
@@ -155,4 +165,21 @@ public class BTreeIndex implements Index {
    public static int searchCost(int numblocks, int rpb) {
       return 1 + (int)(Math.log(numblocks) / Math.log(rpb));
    }
+
+   /**
+    * Return the smallest value of the specified type,
+    * which is used as the key of the initial directory entry.
+    * @param fldtype the type of the indexed field
+    * @return the smallest value of that type
+    */
+   private static Constant minValue(int fldtype) {
+      switch (fldtype) {
+         case INTEGER:   return new Constant(Integer.MIN_VALUE);
+         case BIGINT:    return new Constant(Long.MIN_VALUE);
+         case DOUBLE:    return new Constant(Double.NEGATIVE_INFINITY);
+         case DATE:      return new Constant(new Date(Long.MIN_VALUE));
+         case TIMESTAMP: return new Constant(new Timestamp(Long.MIN_VALUE));
+         default:        return new Constant("");
+      }
+   }
 }
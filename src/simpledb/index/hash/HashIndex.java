@@ -1,5 +1,6 @@
 package simpledb.index.hash;
 
+import java.util.*;
 import simpledb.tx.Transaction;
 import simpledb.record.*;
 import simpledb.index.Index;
@@ -57,7 +58,7 @@ public class HashIndex implements Index {
 	 */
 	public boolean next() {
 		while (ts.next())
-			if (ts.getVal("dataval").equals(searchkey))
+			if (ts.fieldEquals("dataval", searchkey))
 				return true;
 		return false;
 	}
@@ -110,6 +111,20 @@ public class HashIndex implements Index {
 			ts.close();
 	}
 
+	/**
+	 * Returns the names of the bucket files of the specified index.
+	 * A bucket number is the remainder of the search key's hash code,
+	 * so it is negative for a negative hash code.
+	 * @param idxname the name of the index
+	 * @return the names of the bucket files
+	 */
+	public static List<String> fileNames(String idxname) {
+		List<String> names = new ArrayList<>();
+		for (int bucket=1-NUM_BUCKETS; bucket<NUM_BUCKETS; bucket++)
+			names.add(idxname + bucket + ".tbl");
+		return names;
+	}
+
 	/**
 	 * Returns the cost of searching an index file having the
 	 * specified number of blocks.
@@ -53,6 +53,11 @@ public class IndexJoinScan implements Scan {
     * Otherwise, it moves to the next LHS record and the
     * first index record.
     * If there are no more LHS records, the method returns false.
+    * <P>
+    * Moving the RHS scan to the data RID only starts loading
+    * its block; with an asynchronous file manager the read
+    * overlaps whatever the caller does before it first
+    * accesses an RHS field.
     * @see Scan#next()
     */
    public boolean next() {
@@ -89,6 +94,13 @@ public class IndexJoinScan implements Scan {
          return lhs.getVal(fldname);
    }
    
+   public boolean fieldEquals(String fldname, Constant val) {
+      if (rhs.hasField(fldname))
+         return rhs.fieldEquals(fldname, val);
+      else
+         return lhs.fieldEquals(fldname, val);
+   }
+   
    /**
     * Returns the string value of the specified field.
     * @see Scan#getVal(String)
@@ -80,6 +80,10 @@ public class IndexSelectScan implements Scan {
       return ts.getVal(fldname);
    }
    
+   public boolean fieldEquals(String fldname, Constant val) {
+      return ts.fieldEquals(fldname, val);
+   }
+   
    /**
     * Returns whether the data record has the specified field.
     * @see Scan#hasField(String)
@@ -54,8 +54,8 @@ class EmbeddedConnection extends ConnectionAdapter {
       currentTx.commit();
       currentTx = db.newTx();
       FileMgr fm = db.fileMgr();
-      System.out.println("写了" + fm.countWriteBlockNums() + "页内存缓冲区的文件到磁盘上的文件的块");
-      System.out.println("读了" + fm.countReadBlockNums() + "块磁盘上的文件的块到内存缓冲区");
+      System.out.println("写了" + fm.ioStats().getTotalWrites() + "页内存缓冲区的文件到磁盘上的文件的块");
+      System.out.println("读了" + fm.ioStats().getTotalReads() + "块磁盘上的文件的块到内存缓冲区");
    }
 
    /**
@@ -66,8 +66,8 @@ class EmbeddedConnection extends ConnectionAdapter {
       currentTx.rollback();
       currentTx = db.newTx();
       FileMgr fm = db.fileMgr();
-      System.out.println("写了" + fm.countWriteBlockNums() + "页内存缓冲区的文件到磁盘上的文件的块");
-      System.out.println("读了" + fm.countReadBlockNums() + "块磁盘上的文件的块到内存缓冲区");
+      System.out.println("写了" + fm.ioStats().getTotalWrites() + "页内存缓冲区的文件到磁盘上的文件的块");
+      System.out.println("读了" + fm.ioStats().getTotalReads() + "块磁盘上的文件的块到内存缓冲区");
    }
 
    /**
@@ -57,13 +57,77 @@ public class EmbeddedResultSet extends ResultSetAdapter {
    }
 
    /**
-    * Returns the integer value of the specified field,
+    * Returns the long value of the specified field,
+    * by returning the corresponding value on the saved scan.
+    */
+   public long getLong(String fldname) throws SQLException {
+      try {
+         fldname = fldname.toLowerCase(); // to ensure case-insensitivity
+         return s.getVal(fldname).asLong();
+      }
+      catch(RuntimeException e) {
+         conn.rollback();
+         throw new SQLException(e);
+      }
+   }
+
+   /**
+    * Returns the double value of the specified field,
+    * by returning the corresponding value on the saved scan.
+    */
+   public double getDouble(String fldname) throws SQLException {
+      try {
+         fldname = fldname.toLowerCase(); // to ensure case-insensitivity
+         return s.getVal(fldname).asDouble();
+      }
+      catch(RuntimeException e) {
+         conn.rollback();
+         throw new SQLException(e);
+      }
+   }
+
+   /**
+    * Returns the date value of the specified field,
+    * by returning the corresponding value on the saved scan.
+    */
+   public Date getDate(String fldname) throws SQLException {
+      try {
+         fldname = fldname.toLowerCase(); // to ensure case-insensitivity
+         return s.getVal(fldname).asDate();
+      }
+      catch(RuntimeException e) {
+         conn.rollback();
+         throw new SQLException(e);
+      }
+   }
+
+   /**
+    * Returns the timestamp value of the specified field,
+    * by returning the corresponding value on the saved scan.
+    */
+   public Timestamp getTimestamp(String fldname) throws SQLException {
+      try {
+         fldname = fldname.toLowerCase(); // to ensure case-insensitivity
+         return s.getVal(fldname).asTimestamp();
+      }
+      catch(RuntimeException e) {
+         conn.rollback();
+         throw new SQLException(e);
+      }
+   }
+
+   /**
+    * Returns the string value of the specified field,
     * by returning the corresponding value on the saved scan.
+    * A field that is not a string is converted to one.
     */
    public String getString(String fldname) throws SQLException {
       try {
          fldname = fldname.toLowerCase(); // to ensure case-insensitivity
-         return s.getString(fldname);
+         if (sch.type(fldname) == Types.VARCHAR)
+            return s.getString(fldname);
+         else
+            return s.getVal(fldname).toString();
       }
       catch(RuntimeException e) {
          conn.rollback();
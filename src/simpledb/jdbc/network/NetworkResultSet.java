@@ -34,6 +34,42 @@ public class NetworkResultSet extends ResultSetAdapter {
       }
    }
    
+   public long getLong(String fldname) throws SQLException {
+      try {
+         return rrs.getLong(fldname);
+      }
+      catch (Exception e) {
+         throw new SQLException(e);
+      }
+   }
+   
+   public double getDouble(String fldname) throws SQLException {
+      try {
+         return rrs.getDouble(fldname);
+      }
+      catch (Exception e) {
+         throw new SQLException(e);
+      }
+   }
+   
+   public Date getDate(String fldname) throws SQLException {
+      try {
+         return rrs.getDate(fldname);
+      }
+      catch (Exception e) {
+         throw new SQLException(e);
+      }
+   }
+   
+   public Timestamp getTimestamp(String fldname) throws SQLException {
+      try {
+         return rrs.getTimestamp(fldname);
+      }
+      catch (Exception e) {
+         throw new SQLException(e);
+      }
+   }
+   
    public String getString(String fldname) throws SQLException {
       try {
          return rrs.getString(fldname);
@@ -75,10 +75,10 @@ class RemoteConnectionImpl extends UnicastRemoteObject implements RemoteConnecti
         currentTx.commit();
         currentTx = db.newTx();
         FileMgr fm = db.fileMgr();
-        System.out.println("写了" + fm.countWriteBlockNums() + "页内存缓冲区的文件到磁盘上的文件的块");
-        System.out.println("读了" + fm.countReadBlockNums() + "块磁盘上的文件的块到内存缓冲区");
-//        fm.countReadBlockNums();
-//        fm.countWriteBlockNums();
+        System.out.println("写了" + fm.ioStats().getTotalWrites() + "页内存缓冲区的文件到磁盘上的文件的块");
+        System.out.println("读了" + fm.ioStats().getTotalReads() + "块磁盘上的文件的块到内存缓冲区");
+//        fm.ioStats().getTotalReads();
+//        fm.ioStats().getTotalWrites();
     }
 
     /**
@@ -90,8 +90,8 @@ class RemoteConnectionImpl extends UnicastRemoteObject implements RemoteConnecti
         currentTx.rollback();
         currentTx = db.newTx();
         FileMgr fm = db.fileMgr();
-        System.out.println("写了" + fm.countWriteBlockNums() + "页内存缓冲区的文件到磁盘上的文件的块");
-        System.out.println("读了" + fm.countReadBlockNums() + "块磁盘上的文件的块到内存缓冲区");
+        System.out.println("写了" + fm.ioStats().getTotalWrites() + "页内存缓冲区的文件到磁盘上的文件的块");
+        System.out.println("读了" + fm.ioStats().getTotalReads() + "块磁盘上的文件的块到内存缓冲区");
     }
 }
 
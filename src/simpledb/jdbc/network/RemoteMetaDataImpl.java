@@ -1,7 +1,7 @@
 package simpledb.jdbc.network;
 
 import simpledb.record.Schema;
-import static java.sql.Types.INTEGER;
+import static java.sql.Types.*;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.*;
@@ -68,12 +68,22 @@ public class RemoteMetaDataImpl extends UnicastRemoteObject implements RemoteMet
     * Here, the method arbitrarily chooses 6 characters,
     * which means that integers over 999,999 will  
     * probably get displayed improperly.
+    * The other numeric and date types are given similarly
+    * arbitrary widths.
     * @see RemoteMetaData#getColumnDisplaySize(int)
     */
    public int getColumnDisplaySize(int column) throws RemoteException {
       String fldname = getColumnName(column);
       int fldtype = sch.type(fldname);
-      int fldlength = (fldtype == INTEGER) ? 6 : sch.length(fldname);
+      int fldlength;
+      switch (fldtype) {
+         case INTEGER:   fldlength = 6;  break;
+         case BIGINT:    fldlength = 12; break;
+         case DOUBLE:    fldlength = 12; break;
+         case DATE:      fldlength = 10; break; // yyyy-mm-dd
+         case TIMESTAMP: fldlength = 23; break; // yyyy-mm-dd hh:mm:ss.fff
+         default:        fldlength = sch.length(fldname);
+      }
       return Math.max(fldname.length(), fldlength) + 1;
    }
 }
@@ -1,6 +1,8 @@
 package simpledb.jdbc.network;
 
 import java.rmi.*;
+import java.sql.Date;
+import java.sql.Timestamp;
 
 /**
  * The RMI remote interface corresponding to ResultSet.
@@ -11,6 +13,10 @@ import java.rmi.*;
 public interface RemoteResultSet extends Remote {
    public boolean next()                   throws RemoteException;
    public int getInt(String fldname)       throws RemoteException;
+   public long getLong(String fldname)     throws RemoteException;
+   public double getDouble(String fldname) throws RemoteException;
+   public Date getDate(String fldname)     throws RemoteException;
+   public Timestamp getTimestamp(String fldname) throws RemoteException;
    public String getString(String fldname) throws RemoteException;
    public RemoteMetaData getMetaData()     throws RemoteException;
    public void close()                     throws RemoteException;
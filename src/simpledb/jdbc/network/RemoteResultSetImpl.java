@@ -5,6 +5,9 @@ import simpledb.query.*;
 import simpledb.record.Schema;
 
 import java.rmi.RemoteException;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.rmi.server.UnicastRemoteObject;
 
 /**
@@ -62,14 +65,82 @@ class RemoteResultSetImpl extends UnicastRemoteObject implements RemoteResultSet
    }
 
    /**
-    * Returns the integer value of the specified field,
+    * Returns the long value of the specified field,
     * by returning the corresponding value on the saved scan.
-    * @see RemoteResultSet#getInt(String)
+    * @see RemoteResultSet#getLong(String)
+    */
+   public long getLong(String fldname) throws RemoteException {
+		try {
+	      fldname = fldname.toLowerCase(); // to ensure case-insensitivity
+	      return s.getVal(fldname).asLong();
+      }
+      catch(RuntimeException e) {
+         rconn.rollback();
+         throw e;
+      }
+   }
+
+   /**
+    * Returns the double value of the specified field,
+    * by returning the corresponding value on the saved scan.
+    * @see RemoteResultSet#getDouble(String)
+    */
+   public double getDouble(String fldname) throws RemoteException {
+		try {
+	      fldname = fldname.toLowerCase(); // to ensure case-insensitivity
+	      return s.getVal(fldname).asDouble();
+      }
+      catch(RuntimeException e) {
+         rconn.rollback();
+         throw e;
+      }
+   }
+
+   /**
+    * Returns the date value of the specified field,
+    * by returning the corresponding value on the saved scan.
+    * @see RemoteResultSet#getDate(String)
+    */
+   public Date getDate(String fldname) throws RemoteException {
+		try {
+	      fldname = fldname.toLowerCase(); // to ensure case-insensitivity
+	      return s.getVal(fldname).asDate();
+      }
+      catch(RuntimeException e) {
+         rconn.rollback();
+         throw e;
+      }
+   }
+
+   /**
+    * Returns the timestamp value of the specified field,
+    * by returning the corresponding value on the saved scan.
+    * @see RemoteResultSet#getTimestamp(String)
+    */
+   public Timestamp getTimestamp(String fldname) throws RemoteException {
+		try {
+	      fldname = fldname.toLowerCase(); // to ensure case-insensitivity
+	      return s.getVal(fldname).asTimestamp();
+      }
+      catch(RuntimeException e) {
+         rconn.rollback();
+         throw e;
+      }
+   }
+
+   /**
+    * Returns the string value of the specified field,
+    * by returning the corresponding value on the saved scan.
+    * A field that is not a string is converted to one.
+    * @see RemoteResultSet#getString(String)
     */
    public String getString(String fldname) throws RemoteException {
 		try {
 	      fldname = fldname.toLowerCase(); // to ensure case-insensitivity
-	      return s.getString(fldname);
+	      if (sch.type(fldname) == Types.VARCHAR)
+	         return s.getString(fldname);
+	      else
+	         return s.getVal(fldname).toString();
       }
       catch(RuntimeException e) {
          rconn.rollback();
@@ -5,6 +5,8 @@ import simpledb.file.FileMgr;
 import simpledb.file.Page;
 
 import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * A class that provides the ability to move through the
@@ -13,11 +15,26 @@ import java.util.Iterator;
  * @author Edward Sciore
  */
 class LogIterator implements Iterator<byte[]> {
+    /**
+     * 一次分散读最多读取的日志块数
+     */
+    private static final int BATCH_BLOCKS = 8;
     private FileMgr fm;
     private BlockId blk;
     private Page p;
     private int currentPos;
     private int boundary;
+    /**
+     * 最近一次分散读读入的日志页，pages[i]保存块batchStart + i
+     */
+    private Page[] pages = new Page[0];
+    private int batchStart;
+    /**
+     * 在后台预读的前一批日志页，prefetched[i]保存块prefetchStart + i；没有预读时为null
+     */
+    private Page[] prefetched;
+    private int prefetchStart;
+    private CompletableFuture<Void> prefetch;
 
     /**
      * 为日志文件中的记录创建迭代器，位于最后一条日志记录之后。
@@ -28,10 +45,6 @@ class LogIterator implements Iterator<byte[]> {
     public LogIterator(FileMgr fm, BlockId blk) {
         this.fm = fm;
         this.blk = blk;
-        // 创建一个大小为400的字节数组
-        byte[] b = new byte[fm.blockSize()];
-        // 在缓冲区创建一个大小为400的字节数组的页，这个页并不是第一个被创建出来的页，
-        p = new Page(b);
         moveToBlock(blk);
     }
 
@@ -76,10 +89,58 @@ class LogIterator implements Iterator<byte[]> {
      * Moves to the specified log block
      * and positions it at the first record in that block
      * (i.e., the most recent one).
+     * <p>
+     * 迭代器从后向前读日志，所以块不在上一次读入的范围内时，
+     * 用一次分散读读入该块以及它前面的最多BATCH_BLOCKS - 1个块。
+     * 读入一批之后立即在后台开始读它前面的一批，迭代器处理完这一批时，前一批通常已经读完了。
      */
     private void moveToBlock(BlockId blk) {
-        fm.read(blk, p);
+        int blknum = blk.number();
+        if (blknum < batchStart || blknum >= batchStart + pages.length) {
+            if (prefetch != null && blknum >= prefetchStart && blknum < prefetchStart + prefetched.length) {
+                awaitPrefetch();
+                pages = prefetched;
+                batchStart = prefetchStart;
+            } else {
+                batchStart = Math.max(0, blknum - BATCH_BLOCKS + 1);
+                pages = newPages(blknum - batchStart + 1);
+                fm.readBlocks(new BlockId(blk.fileName(), batchStart), pages);
+            }
+            prefetch = null;
+            if (batchStart > 0) {
+                prefetchStart = Math.max(0, batchStart - BATCH_BLOCKS);
+                prefetched = newPages(batchStart - prefetchStart);
+                prefetch = fm.readBlocksAsync(new BlockId(blk.fileName(), prefetchStart), prefetched);
+            }
+        }
+        p = pages[blknum - batchStart];
         boundary = p.getInt(0);
         currentPos = boundary;
     }
+
+    private Page[] newPages(int n) {
+        Page[] result = new Page[n];
+        for (int i = 0; i < n; i++) {
+            // 每一页都由一个大小为blockSize的字节数组构成
+            result[i] = new Page(new byte[fm.blockSize()]);
+        }
+        return result;
+    }
+
+    /**
+     * 等待后台预读完成。读失败时抛出RuntimeException
+     */
+    private void awaitPrefetch() {
+        if (prefetch == null) {
+            return;
+        }
+        try {
+            prefetch.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
 }
@@ -67,10 +67,12 @@ public class LogMgr {
      * Ensures that the log record corresponding to the
      * specified LSN has been written to disk.
      * All earlier log records will also be written to disk.
+     * Buffers are flushed by several threads at once, including the
+     * background writer, so the method is synchronized with append.
      *
      * @param lsn the LSN of a log record
      */
-    public void flush(int lsn) {
+    public synchronized void flush(int lsn) {
         if (lsn >= lastSavedLSN) {
             flush();
         }
@@ -84,7 +86,7 @@ public class LogMgr {
      *
      * @return 返回日志记录的Java迭代器
      */
-    public Iterator<byte[]> iterator() {
+    public synchronized Iterator<byte[]> iterator() {
         // 将缓冲区中存在的内容强制输出到磁盘上
         // 第一次的话由于缓冲区刚在SimpleDB的作用下让logMgr new出来，没有内容
         flush();
@@ -158,10 +160,12 @@ public class LogMgr {
     /**
      * 调用flush方法将特定的日志记录强制保存到磁盘上。
      * 参数是日志记录的LSN;该方法确保将此日志记录(以及以前的所有日志记录)写入磁盘。
+     * 如果文件管理器只在提交时同步，这里就是日志文件的同步点。
      * Write the buffer to the log file.
      */
     private void flush() {
         fm.write(currentBlk, logPage);
+        fm.sync(logFile);
         lastSavedLSN = latestLSN;
     }
 }
@@ -26,14 +26,15 @@ public class MaterializePlan implements Plan {
    /**
     * This method loops through the underlying query,
     * copying its output records into a temporary table.
-    * It then returns a table scan for that table.
+    * It then returns a scan for that table;
+    * closing the scan drops the table.
     * @see Plan#open()
     */
    public Scan open() {
       Schema sch = srcplan.schema();
       TempTable temp = new TempTable(tx, sch);
       Scan src = srcplan.open();
-      UpdateScan dest = temp.open();
+      UpdateScan dest = temp.open(true);
       while (src.next()) {
          dest.insert();
          for (String fldname : sch.fields())
@@ -119,8 +119,9 @@ public class SortPlan implements Plan {
    }
    
    private TempTable mergeTwoRuns(TempTable p1, TempTable p2) {
-      Scan src1 = p1.open();
-      Scan src2 = p2.open();
+      // the two runs are not needed after the merge
+      Scan src1 = p1.open(true);
+      Scan src2 = p2.open(true);
       TempTable result = new TempTable(tx, sch);
       UpdateScan dest = result.open();
       
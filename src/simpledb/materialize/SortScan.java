@@ -23,15 +23,16 @@ public class SortScan implements Scan {
     * Create a sort scan, given a list of 1 or 2 runs.
     * If there is only 1 run, then s2 will be null and
     * hasmore2 will be false.
+    * Closing the scan drops the runs.
     * @param runs the list of runs
     * @param comp the record comparator
     */
    public SortScan(List<TempTable> runs, RecordComparator comp) {
       this.comp = comp;
-      s1 = (UpdateScan) runs.get(0).open();
+      s1 = (UpdateScan) runs.get(0).open(true);
       hasmore1 = s1.next();
       if (runs.size() > 1) {
-         s2 = (UpdateScan) runs.get(1).open();
+         s2 = (UpdateScan) runs.get(1).open(true);
          hasmore2 = s2.next();
       }
    }
@@ -84,7 +85,8 @@ public class SortScan implements Scan {
    }
    
    /**
-    * Close the two underlying scans.
+    * Close the two underlying scans,
+    * which drops the runs.
     * @see Scan#close()
     */
    public void close() {
@@ -102,6 +104,10 @@ public class SortScan implements Scan {
       return currentscan.getVal(fldname);
    }
    
+   public boolean fieldEquals(String fldname, Constant val) {
+      return currentscan.fieldEquals(fldname, val);
+   }
+   
    /**
     * Get the integer value of the specified field
     * of the current scan.
@@ -0,0 +1,263 @@
+package simpledb.materialize;
+
+import static java.sql.Types.*;
+import java.sql.Date;
+import java.sql.Timestamp;
+import simpledb.buffer.Buffer;
+import simpledb.buffer.BufferRing;
+import simpledb.buffer.TempBufferMgr;
+import simpledb.file.BlockId;
+import simpledb.file.Page;
+import simpledb.query.*;
+import simpledb.record.*;
+
+/**
+ * A scan of a temporary table.
+ * The records are laid out in the blocks exactly as
+ * {@link RecordPage} lays them out, but the scan reads and
+ * writes the pages of the temporary buffer manager directly,
+ * without locking the blocks or logging the changes.
+ * The scan keeps one block pinned at a time.
+ * Once the table is large compared to the temporary buffer pool
+ * (see {@link TableScan#RING_THRESHOLD}), the scan pins the blocks
+ * it moves through in order via a {@link BufferRing}, so that a
+ * sort's runs and merges do not push out the blocks of the other
+ * temporary tables of the query.
+ */
+class TempScan implements UpdateScan {
+   private TempTable table;
+   private TempBufferMgr tempbm;
+   private String filename;
+   private Layout layout;
+   private boolean dropOnClose;
+   private int blocksize;
+   private Buffer buff;
+   private int currentslot;
+   private BufferRing ring;
+
+   TempScan(TempTable table, TempBufferMgr tempbm, String filename, Layout layout, boolean dropOnClose) {
+      this.table = table;
+      this.tempbm = tempbm;
+      this.filename = filename;
+      this.layout = layout;
+      this.dropOnClose = dropOnClose;
+      blocksize = tempbm.blockSize(filename);
+      int size = tempbm.size(filename);
+      if (isLarge(size))
+         ring = tempbm.newRing();
+      if (size == 0)
+         moveToNewBlock();
+      else
+         moveToBlock(0);
+   }
+
+   // Methods that implement Scan
+
+   public void beforeFirst() {
+      moveToBlock(0);
+   }
+
+   public boolean next() {
+      currentslot = searchAfter(currentslot, RecordPage.USED);
+      while (currentslot < 0) {
+         if (atLastBlock())
+            return false;
+         moveToBlock(buff.block().number()+1);
+         currentslot = searchAfter(currentslot, RecordPage.USED);
+      }
+      return true;
+   }
+
+   public int getInt(String fldname) {
+      return page().getInt(fieldPos(fldname));
+   }
+
+   public String getString(String fldname) {
+      return page().getString(fieldPos(fldname));
+   }
+
+   public Constant getVal(String fldname) {
+      Page p = page();
+      int fldpos = fieldPos(fldname);
+      switch (layout.schema().type(fldname)) {
+         case INTEGER:   return new Constant(p.getInt(fldpos));
+         case BIGINT:    return new Constant(p.getLong(fldpos));
+         case DOUBLE:    return new Constant(p.getDouble(fldpos));
+         case DATE:      return new Constant(new Date(p.getLong(fldpos)));
+         case TIMESTAMP: return new Constant(new Timestamp(p.getLong(fldpos)));
+         default:        return new Constant(p.getString(fldpos));
+      }
+   }
+
+   public boolean fieldEquals(String fldname, Constant val) {
+      int fldtype = layout.schema().type(fldname);
+      if (fldtype == INTEGER && val.type() == INTEGER)
+         return getInt(fldname) == val.asInt();
+      else if (fldtype == VARCHAR)
+         return val.type() == VARCHAR && page().stringEquals(fieldPos(fldname), val.asBytes());
+      else
+         return val.equals(getVal(fldname));
+   }
+
+   public boolean hasField(String fldname) {
+      return layout.schema().hasField(fldname);
+   }
+
+   /**
+    * Unpin the current block, and drop the table
+    * if the scan was opened to do so.
+    */
+   public void close() {
+      unpinCurrent();
+      if (dropOnClose) {
+         table.drop();
+         dropOnClose = false;
+      }
+   }
+
+   // Methods that implement UpdateScan
+
+   public void setInt(String fldname, int val) {
+      page().setInt(fieldPos(fldname), val);
+      tempbm.setModified(buff);
+   }
+
+   public void setString(String fldname, String val) {
+      page().setString(fieldPos(fldname), val);
+      tempbm.setModified(buff);
+   }
+
+   public void setVal(String fldname, Constant val) {
+      Page p = page();
+      int fldpos = fieldPos(fldname);
+      int fldtype = layout.schema().type(fldname);
+      val.checkFieldType(fldtype);
+      switch (fldtype) {
+         case INTEGER:
+            p.setInt(fldpos, val.asInt());
+            break;
+         case BIGINT:
+         case DATE:
+         case TIMESTAMP:
+            p.setLong(fldpos, val.asLong());
+            break;
+         case DOUBLE:
+            p.setDouble(fldpos, val.asDouble());
+            break;
+         default:
+            p.setString(fldpos, val.asString());
+      }
+      tempbm.setModified(buff);
+   }
+
+   public void insert() {
+      currentslot = searchAfter(currentslot, RecordPage.EMPTY);
+      while (currentslot < 0) {
+         if (atLastBlock())
+            moveToNewBlock();
+         else
+            moveToBlock(buff.block().number()+1);
+         currentslot = searchAfter(currentslot, RecordPage.EMPTY);
+      }
+      setFlag(RecordPage.USED);
+   }
+
+   public void delete() {
+      setFlag(RecordPage.EMPTY);
+   }
+
+   public void moveToRid(RID rid) {
+      pin(new BlockId(filename, rid.blockNumber()), null);
+      currentslot = rid.slot();
+   }
+
+   public RID getRid() {
+      return new RID(buff.block().number(), currentslot);
+   }
+
+   // Private auxiliary methods
+
+   private void moveToBlock(int blknum) {
+      pin(new BlockId(filename, blknum), ring);
+      currentslot = -1;
+   }
+
+   /**
+    * Append a block and format its slots as empty.
+    */
+   private void moveToNewBlock() {
+      BlockId blk = tempbm.append(filename);
+      if (ring == null && isLarge(blk.number() + 1))
+         ring = tempbm.newRing();
+      pin(blk, ring);
+      Page p = buff.contents();
+      Schema sch = layout.schema();
+      for (int slot = 0; isValidSlot(slot); slot++) {
+         p.setInt(offset(slot), RecordPage.EMPTY);
+         for (String fldname : sch.fields()) {
+            int fldpos = offset(slot) + layout.offset(fldname);
+            int fldtype = sch.type(fldname);
+            if (fldtype == INTEGER)
+               p.setInt(fldpos, 0);
+            else if (fldtype == VARCHAR)
+               p.setString(fldpos, "");
+            else
+               p.setLong(fldpos, 0);
+         }
+      }
+      tempbm.setModified(buff);
+      currentslot = -1;
+   }
+
+   private void pin(BlockId blk, BufferRing ring) {
+      unpinCurrent();
+      buff = tempbm.pin(blk, ring);
+   }
+
+   private void unpinCurrent() {
+      if (buff != null) {
+         tempbm.unpin(buff);
+         buff = null;
+      }
+   }
+
+   private boolean isLarge(int size) {
+      return size > tempbm.poolSize() * TableScan.RING_THRESHOLD;
+   }
+
+   private boolean atLastBlock() {
+      return buff.block().number() == tempbm.size(filename) - 1;
+   }
+
+   private Page page() {
+      return buff.contents();
+   }
+
+   private void setFlag(int flag) {
+      page().setInt(offset(currentslot), flag);
+      tempbm.setModified(buff);
+   }
+
+   private int searchAfter(int slot, int flag) {
+      Page p = page();
+      slot++;
+      while (isValidSlot(slot)) {
+         if (p.getInt(offset(slot)) == flag)
+            return slot;
+         slot++;
+      }
+      return -1;
+   }
+
+   private int fieldPos(String fldname) {
+      return offset(currentslot) + layout.offset(fldname);
+   }
+
+   private boolean isValidSlot(int slot) {
+      return offset(slot+1) <= blocksize;
+   }
+
+   private int offset(int slot) {
+      return slot * layout.slotSize();
+   }
+}
@@ -1,5 +1,6 @@
 package simpledb.materialize;
 
+import simpledb.buffer.TempBufferMgr;
 import simpledb.tx.Transaction;
 import simpledb.query.*;
 import simpledb.record.*;
@@ -9,12 +10,23 @@ import simpledb.record.*;
  * A temporary table is not registered in the catalog.
  * The class therefore has a method getTableInfo to return the 
  * table's metadata. 
+ * <p>
+ * The records of a temporary table are stored by the
+ * transaction's {@link TempBufferMgr}, bypassing the
+ * transaction itself: they are not locked, their changes
+ * are not logged, and the table's file is deleted as soon
+ * as the table is dropped.
  * @author Edward Sciore
  */
 public class TempTable {
    private static int nextTableNum = 0;
    private Transaction tx;
+   private TempBufferMgr tempbm;
    private String tblname;
+   /**
+    * Whether the table may have blocks in the main buffer pool
+    */
+   private boolean flushed = false;
    private Layout layout;
    
    /**
@@ -25,21 +37,41 @@ public class TempTable {
     */
    public TempTable(Transaction tx, Schema sch) {
       this.tx = tx;
+      tempbm = tx.tempBufferMgr();
       tblname = nextTableName();
       layout = new Layout(sch);
    }
    
    /**
-    * Open a table scan for the temporary table.
+    * Open a scan for the temporary table.
+    * Closing the scan does not drop the table.
     */
    public UpdateScan open() {
-      return new TableScan(tx, tblname, layout);
+      return open(false);
+   }
+   
+   /**
+    * Open a scan for the temporary table.
+    * If dropOnClose is true, closing the scan drops the table,
+    * so the scan must be the last one opened on it.
+    * @param dropOnClose whether closing the scan drops the table
+    */
+   public UpdateScan open(boolean dropOnClose) {
+      return new TempScan(this, tempbm, fileName(), layout, dropOnClose);
    }
    
    public String tableName() {
       return tblname;
    }
    
+   /**
+    * Return the name of the file that holds the table's records.
+    * @return the name of the table's file
+    */
+   public String fileName() {
+      return tblname + ".tbl";
+   }
+   
    /**
     * Return the table's metadata.
     * @return the table's metadata
@@ -47,9 +79,31 @@ public class TempTable {
    public Layout getLayout() {
       return layout;
    }
+   
+   /**
+    * Write the table's modified buffers to its file,
+    * so that the table can be read through the main
+    * buffer pool, as a chunk scan does.
+    * No scan may be modifying the table.
+    */
+   public void flush() {
+      tempbm.flushFile(fileName());
+      flushed = true;
+   }
+   
+   /**
+    * Delete the table's file, discarding its buffers,
+    * including those of the main pool if the table was flushed.
+    * No scan of the table may still be open.
+    */
+   public void drop() {
+      if (flushed)
+         tx.discardBuffers(fileName());
+      tempbm.drop(fileName());
+   }
 
    private static synchronized String nextTableName() {
       nextTableNum++;
       return "temp" + nextTableNum;
    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,93 @@
+package simpledb.materialize;
+
+import java.io.File;
+import java.util.*;
+import simpledb.server.SimpleDB;
+import simpledb.tx.Transaction;
+import simpledb.file.BlockId;
+import simpledb.file.IOStats;
+import simpledb.plan.*;
+import simpledb.query.*;
+import simpledb.record.*;
+import simpledb.multibuffer.MultibufferProductPlan;
+
+/**
+ * Sorts a table and takes the product of two tables, checking
+ * that the temporary tables write nothing to the log and
+ * that their files are deleted when the scans close, leaving
+ * no buffers of them behind in the main pool.
+ */
+public class TempTableTest {
+   private static final String LOG = "simpledb.log";
+
+   public static void main(String[] args) {
+      SimpleDB db = new SimpleDB("temptabletest");
+      Transaction tx = db.newTx();
+      Planner planner = db.planner();
+      planner.executeUpdate("create table T(A int, B varchar(10))", tx);
+      planner.executeUpdate("create table U(C int)", tx);
+      Layout layout = db.mdMgr().getLayout("t", tx);
+      TableScan ts = new TableScan(tx, "t", layout);
+      Random rand = new Random(1);
+      int n = 3000;
+      for (int i=0; i<n; i++) {
+         ts.insert();
+         ts.setInt("a", i);
+         ts.setString("b", "rec" + rand.nextInt(100000));
+      }
+      ts.close();
+      ts = new TableScan(tx, "u", db.mdMgr().getLayout("u", tx));
+      for (int i=0; i<10; i++) {
+         ts.insert();
+         ts.setInt("c", i);
+      }
+      ts.close();
+      tx.commit();
+
+      tx = db.newTx();
+      IOStats stats = db.fileMgr().ioStats();
+      long logBytes = stats.bytesWritten(LOG);
+      Plan p = new SortPlan(tx, new TablePlan(tx, "t", db.mdMgr()), Arrays.asList("b"));
+      Scan s = p.open();
+      int count = 0, errors = 0;
+      String prev = "";
+      while (s.next()) {
+         count++;
+         String b = s.getString("b");
+         if (b.compareTo(prev) < 0)
+            errors++;
+         prev = b;
+      }
+      System.out.println("temporary files while the sort scan is open: " + tempFiles());
+      s.close();
+      System.out.println("sorted " + count + " records (expected " + n + "), "
+                         + errors + " out of order");
+      System.out.println("log bytes written by the sort: "
+                         + (stats.bytesWritten(LOG) - logBytes) + " (expected 0)");
+      System.out.println("temporary files after closing: " + tempFiles() + " (expected 0)");
+
+      p = new MultibufferProductPlan(tx, new TablePlan(tx, "u", db.mdMgr()),
+                                     new TablePlan(tx, "u", db.mdMgr()));
+      s = p.open();
+      count = 0;
+      while (s.next())
+         count++;
+      s.close();
+      System.out.println("product of U with itself: " + count + " records (expected 100), "
+                         + tempFiles() + " temporary files left");
+      int tempBlocks = 0;
+      for (BlockId blk : db.bufferMgr().residentBlocks())
+         if (blk.fileName().startsWith("temp"))
+            tempBlocks++;
+      System.out.println("main pool buffers of dropped temporary files: " + tempBlocks + " (expected 0)");
+      tx.commit();
+   }
+
+   private static int tempFiles() {
+      int count = 0;
+      for (String name : new File("temptabletest").list())
+         if (name.startsWith("temp"))
+            count++;
+      return count;
+   }
+}
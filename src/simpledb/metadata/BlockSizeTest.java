@@ -0,0 +1,129 @@
+package simpledb.metadata;
+
+import simpledb.server.SimpleDB;
+import simpledb.tx.Transaction;
+import simpledb.file.FileMgr;
+import simpledb.record.*;
+import simpledb.index.Index;
+import simpledb.query.Constant;
+
+/**
+ * Run this test twice. The first run creates tables and an index
+ * with different block sizes, checks that a table created by a
+ * transaction that rolls back loses its block size and compression,
+ * and stops in the middle of a transaction; the second run recovers
+ * the database and checks that the block sizes were restored and
+ * the changes undone.
+ */
+public class BlockSizeTest {
+   public static void main(String[] args) {
+      SimpleDB db = new SimpleDB("blocksizetest");
+      if (db.fileMgr().isNew())
+         create(db);
+      else
+         check(db);
+   }
+
+   private static void create(SimpleDB db) {
+      MetadataMgr mdm = db.mdMgr();
+      Transaction tx = db.newTx();
+
+      Schema sch = new Schema();
+      sch.addIntField("A");
+      sch.addStringField("B", 20);
+      mdm.createTable("big", sch, tx, false, 4096);
+      mdm.createTable("small", sch, tx, false, 128);
+      mdm.createIndex("bigidx", "big", "A", tx, 1024);
+      Layout biglayout = mdm.getLayout("big", tx);
+      Layout smalllayout = mdm.getLayout("small", tx);
+      Index idx = mdm.getIndexInfo("big", tx).get("A").open();
+
+      // interleave the two tables so that frames move between page sizes
+      TableScan big = new TableScan(tx, "big", biglayout);
+      TableScan small = new TableScan(tx, "small", smalllayout);
+      for (int i=0; i<2000; i++) {
+         big.insert();
+         big.setInt("A", i);
+         big.setString("B", "rec" + i);
+         idx.insert(new Constant(i), big.getRid());
+         if (i % 10 == 0) {
+            small.insert();
+            small.setInt("A", i);
+            small.setString("B", "small" + i);
+         }
+      }
+      big.close();
+      small.close();
+      idx.close();
+      tx.commit();
+
+      FileMgr fm = db.fileMgr();
+      System.out.println("big: " + fm.length("big.tbl") + " blocks of " + fm.blockSize("big.tbl")
+                         + " bytes, small: " + fm.length("small.tbl") + " blocks of "
+                         + fm.blockSize("small.tbl") + " bytes");
+
+      // a table created by a transaction that rolls back
+      // must not keep its block size or compression
+      tx = db.newTx();
+      mdm.createTable("dropped", sch, tx, true, 2048);
+      TableScan dropped = new TableScan(tx, "dropped", mdm.getLayout("dropped", tx));
+      for (int i=0; i<100; i++) {
+         dropped.insert();
+         dropped.setInt("A", i);
+      }
+      dropped.close();
+      tx.rollback();
+      System.out.println("after rollback, dropped.tbl: block size " + fm.blockSize("dropped.tbl")
+                         + " (expected " + fm.blockSize() + "), compressed " + fm.isCompressed("dropped.tbl")
+                         + " (expected false), " + fm.length("dropped.tbl") + " blocks (expected 0)");
+      tx = db.newTx();
+      mdm.createTable("dropped", sch, tx, false, 256);
+      tx.commit();
+
+      // change every record; the transaction stops without
+      // committing, so recovery must undo the changes that
+      // buffer replacement wrote to disk
+      tx = db.newTx();
+      big = new TableScan(tx, "big", biglayout);
+      while (big.next())
+         big.setString("B", "changed");
+      big.close();
+      small = new TableScan(tx, "small", smalllayout);
+      while (small.next())
+         small.setInt("A", -1);
+      small.close();
+      System.out.println("Run the test again to check recovery.");
+   }
+
+   private static void check(SimpleDB db) {
+      FileMgr fm = db.fileMgr();
+      MetadataMgr mdm = db.mdMgr();
+      Transaction tx = db.newTx();
+      System.out.println("after recovery, block sizes: big " + fm.blockSize("big.tbl")
+                         + ", small " + fm.blockSize("small.tbl")
+                         + ", bigidx " + fm.blockSize("bigidx0.tbl"));
+      int errors = 0;
+      int count = 0;
+      TableScan big = new TableScan(tx, "big", mdm.getLayout("big", tx));
+      while (big.next()) {
+         count++;
+         if (!big.getString("B").equals("rec" + big.getInt("A")))
+            errors++;
+      }
+      big.close();
+      TableScan small = new TableScan(tx, "small", mdm.getLayout("small", tx));
+      while (small.next())
+         if (small.getInt("A") < 0)
+            errors++;
+      small.close();
+      Index idx = mdm.getIndexInfo("big", tx).get("A").open();
+      for (int i=0; i<2000; i+=97) {
+         idx.beforeFirst(new Constant(i));
+         if (!idx.next())
+            errors++;
+      }
+      idx.close();
+      tx.commit();
+      System.out.println(count + " records (expected 2000), " + errors + " errors");
+   }
+}
@@ -1,6 +1,6 @@
 package simpledb.metadata;
 
-import static java.sql.Types.INTEGER;
+import java.util.List;
 import simpledb.tx.Transaction;
 import simpledb.record.*;
 import simpledb.index.Index;
@@ -50,6 +50,17 @@ public class IndexInfo {
 //    return new BTreeIndex(tx, idxname, idxLayout);
    }
    
+   /**
+    * Return the names of the files that the index
+    * opened by {@link #open()} can use.
+    * @param idxname the name of the index
+    * @return the names of the index's files
+    */
+   public static List<String> fileNames(String idxname) {
+      return HashIndex.fileNames(idxname);
+//    return BTreeIndex.fileNames(idxname);
+   }
+   
    /**
     * Estimate the number of block accesses required to
     * find all index records having a particular search key.
@@ -62,7 +73,8 @@ public class IndexInfo {
     * @return the number of block accesses required to traverse the index
     */
    public int blocksAccessed() {
-      int rpb = tx.blockSize() / idxLayout.slotSize();
+      int blocksize = tx.blockSize(fileNames(idxname).get(0));
+      int rpb = blocksize / idxLayout.slotSize();
       int numblocks = si.recordsOutput() / rpb;
       return HashIndex.searchCost(numblocks, rpb);
 //    return BTreeIndex.searchCost(numblocks, rpb);
@@ -101,12 +113,8 @@ public class IndexInfo {
       Schema sch = new Schema();
       sch.addIntField("block");
       sch.addIntField("id");
-      if (tblSchema.type(fldname) == INTEGER)
-         sch.addIntField("dataval");
-      else {
-         int fldlen = tblSchema.length(fldname);
-         sch.addStringField("dataval", fldlen);
-      }
+      sch.addField("dataval", tblSchema.type(fldname),
+                   tblSchema.length(fldname));
       return new Layout(sch);
    }
 }
@@ -46,6 +46,23 @@ class IndexMgr {
     * @param tx the calling transaction
     */
    public void createIndex(String idxname, String tblname, String fldname, Transaction tx) {
+      createIndex(idxname, tblname, fldname, tx, tx.blockSize());
+   }
+   
+   /**
+    * Create an index whose files have the specified block size.
+    * The block size of each index file is recorded
+    * by the table manager.
+    * @param idxname the name of the index
+    * @param tblname the name of the indexed table
+    * @param fldname the name of the indexed field
+    * @param tx the calling transaction
+    * @param blocksize the size of the index's blocks
+    */
+   public void createIndex(String idxname, String tblname, String fldname,
+                           Transaction tx, int blocksize) {
+      for (String filename : IndexInfo.fileNames(idxname))
+         tblmgr.setBlockSize(filename, blocksize, tx);
       TableScan ts = new TableScan(tx, "idxcat", layout);
       ts.insert();
       ts.setString("indexname", idxname);
@@ -21,6 +21,15 @@ public class MetadataMgr {
       tblmgr.createTable(tblname, sch, tx);
    }
    
+   public void createTable(String tblname, Schema sch, Transaction tx, boolean compressed) {
+      tblmgr.createTable(tblname, sch, tx, compressed);
+   }
+   
+   public void createTable(String tblname, Schema sch, Transaction tx,
+                           boolean compressed, int blocksize) {
+      tblmgr.createTable(tblname, sch, tx, compressed, blocksize);
+   }
+   
    public Layout getLayout(String tblname, Transaction tx) {
       return tblmgr.getLayout(tblname, tx);
    }
@@ -37,6 +46,19 @@ public class MetadataMgr {
       idxmgr.createIndex(idxname, tblname, fldname, tx);
    }
    
+   public void createIndex(String idxname, String tblname, String fldname,
+                           Transaction tx, int blocksize) {
+      idxmgr.createIndex(idxname, tblname, fldname, tx, blocksize);
+   }
+   
+   /**
+    * Give the file manager the block sizes recorded in the catalog.
+    * This must happen at startup before recovery.
+    */
+   public static void loadBlockSizes(Transaction tx) {
+      TableMgr.loadBlockSizes(tx);
+   }
+   
    public Map<String,IndexInfo> getIndexInfo(String tblname, Transaction tx) {
       return idxmgr.getIndexInfo(tblname, tx);
    }
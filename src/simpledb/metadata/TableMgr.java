@@ -14,11 +14,15 @@ import simpledb.record.*;
 class TableMgr {
    // The max characters a tablename or fieldname can have.
    public static final int MAX_NAME = 16;
+   // The max characters a file name can have: a table or
+   // index name plus a suffix such as "leaf" or "17.tbl".
+   public static final int MAX_FILENAME = MAX_NAME + 8;
    private Layout tcatLayout, fcatLayout;
+   private static Layout bcatLayout = blkcatLayout();
 
    /**
     * Create a new catalog manager for the database system.
-    * If the database is new, the two catalog tables
+    * If the database is new, the three catalog tables
     * are created.
     * @param isNew has the value true if the database is new
     * @param tx the startup transaction
@@ -40,6 +44,7 @@ class TableMgr {
       if (isNew) {
          createTable("tblcat", tcatSchema, tx);
          createTable("fldcat", fcatSchema, tx);
+         createTable("blkcat", bcatLayout.schema(), tx);
       }
    }
 
@@ -50,6 +55,40 @@ class TableMgr {
     * @param tx the transaction creating the table
     */
    public void createTable(String tblname, Schema sch, Transaction tx) {
+      createTable(tblname, sch, tx, false);
+   }
+
+   /**
+    * Create a new table having the specified name and schema,
+    * optionally storing its pages compressed.
+    * Whether a table is compressed is recorded by the file manager,
+    * so the catalog tables are unchanged.
+    * @param tblname the name of the new table
+    * @param sch the table's schema
+    * @param tx the transaction creating the table
+    * @param compressed whether the table's pages are stored compressed
+    */
+   public void createTable(String tblname, Schema sch, Transaction tx, boolean compressed) {
+      createTable(tblname, sch, tx, compressed, tx.blockSize());
+   }
+
+   /**
+    * Create a new table having the specified name and schema,
+    * optionally storing its pages compressed,
+    * with the specified block size.
+    * A block size other than the default is recorded
+    * in the blkcat catalog table.
+    * @param tblname the name of the new table
+    * @param sch the table's schema
+    * @param tx the transaction creating the table
+    * @param compressed whether the table's pages are stored compressed
+    * @param blocksize the size of the table's blocks
+    */
+   public void createTable(String tblname, Schema sch, Transaction tx,
+                           boolean compressed, int blocksize) {
+      setBlockSize(tblname + ".tbl", blocksize, tx);
+      if (compressed)
+         tx.setCompressed(tblname + ".tbl");
       Layout layout = new Layout(sch);
       // insert one record into tblcat
       TableScan tcat = new TableScan(tx, "tblcat", tcatLayout);
@@ -71,6 +110,51 @@ class TableMgr {
       fcat.close();
    }
 
+   /**
+    * Set the block size of the specified file, which
+    * must not have any blocks yet.
+    * If the size is not the default, one record
+    * is inserted into blkcat.
+    * @param filename the name of the file
+    * @param blocksize the size of the file's blocks
+    * @param tx the calling transaction
+    */
+   public void setBlockSize(String filename, int blocksize, Transaction tx) {
+      if (blocksize == tx.blockSize())
+         return;
+      tx.setBlockSize(filename, blocksize);
+      TableScan bcat = new TableScan(tx, "blkcat", bcatLayout);
+      bcat.insert();
+      bcat.setString("filename", filename);
+      bcat.setInt("blksize", blocksize);
+      bcat.close();
+   }
+
+   /**
+    * Give the file manager the block size of every file
+    * recorded in blkcat.
+    * This method is called at system startup before recovery,
+    * because undoing a change to a block requires the block's size.
+    * It does not need the other catalog tables, since
+    * the layout of blkcat is fixed.
+    * @param tx the startup transaction
+    */
+   public static void loadBlockSizes(Transaction tx) {
+      if (tx.size("blkcat.tbl") == 0)
+         return;
+      TableScan bcat = new TableScan(tx, "blkcat", bcatLayout);
+      while (bcat.next())
+         tx.setBlockSize(bcat.getString("filename"), bcat.getInt("blksize"));
+      bcat.close();
+   }
+
+   private static Layout blkcatLayout() {
+      Schema bcatSchema = new Schema();
+      bcatSchema.addStringField("filename", MAX_FILENAME);
+      bcatSchema.addIntField("blksize");
+      return new Layout(bcatSchema);
+   }
+
    /**
     * Retrieve the layout of the specified table
     * from the catalog.
@@ -1,6 +1,5 @@
 package simpledb.multibuffer;
 
-import static java.sql.Types.INTEGER;
 import java.util.*;
 import simpledb.file.BlockId;
 import simpledb.query.*;
@@ -33,6 +32,10 @@ public class ChunkScan implements Scan {
       this.layout = layout;
       this.startbnum = startbnum;
       this.endbnum   = endbnum;
+      // start reading the whole chunk in the background; the record
+      // pages then find their blocks buffered, and the first access
+      // to each page waits only for the batch that holds it
+      tx.prefetch(new BlockId(filename, startbnum), endbnum - startbnum + 1);
       for (int i=startbnum; i<=endbnum; i++) {
          BlockId blk = new BlockId(filename, i);
          buffs.add(new RecordPage(tx, blk, layout));
@@ -41,6 +44,8 @@ public class ChunkScan implements Scan {
    }
 
    /**
+    * Unpin the chunk's blocks. Closing the scan
+    * a second time has no effect.
     * @see Scan#close()
     */
    public void close() {
@@ -48,6 +53,7 @@ public class ChunkScan implements Scan {
          BlockId blk = new BlockId(filename, startbnum+i);
          tx.unpin(blk);
       }
+      buffs.clear();
    }
 
    /**
@@ -93,10 +99,14 @@ public class ChunkScan implements Scan {
     * @see Scan#getVal(String)
     */
    public Constant getVal(String fldname) {
-      if (layout.schema().type(fldname) == INTEGER)
-         return new Constant(getInt(fldname));
-      else
-         return new Constant(getString(fldname));
+      return rp.getVal(currentslot, fldname);
+   }
+
+   /**
+    * @see Scan#fieldEquals(String, Constant)
+    */
+   public boolean fieldEquals(String fldname, Constant val) {
+      return rp.fieldEquals(currentslot, fldname, val);
    }
 
   /**
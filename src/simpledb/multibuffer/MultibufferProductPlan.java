@@ -38,13 +38,14 @@ public class MultibufferProductPlan implements Plan {
     * number of available buffers.
     * It creates a chunk plan for each chunk, saving them in a list.
     * Finally, it creates a multiscan for this list of plans,
-    * and returns that scan.
+    * and returns that scan. Closing the scan drops the
+    * materialized tables.
     * @see Plan#open()
     */
    public Scan open() {
       Scan leftscan = lhs.open();
       TempTable tt = copyRecordsFrom(rhs);
-      return new MultibufferProductScan(tx, leftscan, tt.tableName(), tt.getLayout());
+      return new MultibufferProductScan(tx, leftscan, tt);
    }
 
    /**
@@ -110,6 +111,8 @@ public class MultibufferProductPlan implements Plan {
       }
       src.close();
       dest.close();
+      // the chunks are read through the main buffer pool
+      t.flush();
       return t;
    }
 }
@@ -1,6 +1,8 @@
 package simpledb.multibuffer;
 
+import simpledb.file.BlockId;
 import simpledb.tx.Transaction;
+import simpledb.materialize.TempTable;
 import simpledb.query.*;
 import simpledb.record.*;
 
@@ -14,6 +16,7 @@ public class MultibufferProductScan implements Scan {
    private Scan lhsscan, rhsscan=null, prodscan;
    private String filename;
    private Layout layout;
+   private TempTable rhstable = null;
    private int chunksize, nextblknum, filesize;
    
    
@@ -34,6 +37,19 @@ public class MultibufferProductScan implements Scan {
       beforeFirst();
    }
    
+   /**
+    * Creates the scan class for the product of the LHS scan
+    * and a temporary table, which is dropped when the scan closes.
+    * The table's buffers must have been flushed.
+    * @param lhsscan the LHS scan
+    * @param rhstable the RHS temporary table
+    * @param tx the current transaction
+    */
+   public MultibufferProductScan(Transaction tx, Scan lhsscan, TempTable rhstable) {
+      this(tx, lhsscan, rhstable.fileName(), rhstable.getLayout());
+      this.rhstable = rhstable;
+   }
+   
    /**
     * Positions the scan before the first record.
     * That is, the LHS scan is positioned at its first record,
@@ -61,11 +77,16 @@ public class MultibufferProductScan implements Scan {
    }
    
    /**
-    * Closes the current scans.
+    * Closes the current scans, and drops
+    * the RHS table if it is temporary.
     * @see Scan#close()
     */
    public void close() {
       prodscan.close();
+      if (rhstable != null) {
+         rhstable.drop();
+         rhstable = null;
+      }
    }
    
    /** 
@@ -78,6 +99,10 @@ public class MultibufferProductScan implements Scan {
       return prodscan.getVal(fldname);
    }
    
+   public boolean fieldEquals(String fldname, Constant val) {
+      return prodscan.fieldEquals(fldname, val);
+   }
+   
    /** 
     * Returns the integer value of the specified field.
     * The value is obtained from whichever scan
@@ -115,6 +140,10 @@ public class MultibufferProductScan implements Scan {
       int end = nextblknum + chunksize - 1;
       if (end >= filesize)
          end = filesize - 1;
+      // the chunk's blocks must fit into their partitions of the pool
+      int fits = tx.availableBuffs(new BlockId(filename, nextblknum), end - nextblknum + 1);
+      if (fits > 0)
+         end = nextblknum + fits - 1;
       rhsscan = new ChunkScan(tx, filename, layout, nextblknum, end);
       lhsscan.beforeFirst();
       prodscan = new ProductScan(lhsscan, rhsscan);
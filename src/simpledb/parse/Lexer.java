@@ -20,6 +20,9 @@ public class Lexer {
       tok = new StreamTokenizer(new StringReader(s));
       tok.ordinaryChar('.');   //disallow "." in identifiers
       tok.wordChars('_', '_'); //allow "_" in identifiers
+      tok.ordinaryChars('0', '9'); //read numbers as text, not as doubles
+      tok.wordChars('0', '9');
+      tok.ordinaryChar('-');
       tok.lowerCaseMode(true); //ids and keywords are converted
       nextToken();
    }
@@ -37,11 +40,12 @@ public class Lexer {
    }
    
    /**
-    * Returns true if the current token is an integer.
-    * @return true if the current token is an integer
+    * Returns true if the current token starts a number,
+    * that is, if it is a run of digits or a minus sign.
+    * @return true if the current token starts a number
     */
    public boolean matchIntConstant() {
-      return tok.ttype == StreamTokenizer.TT_NUMBER;
+      return matchDigits() || matchDelim('-');
    }
    
    /**
@@ -66,7 +70,7 @@ public class Lexer {
     * @return true if the current token is an identifier
     */
    public boolean matchId() {
-      return  tok.ttype==StreamTokenizer.TT_WORD && !keywords.contains(tok.sval);
+      return  tok.ttype==StreamTokenizer.TT_WORD && !keywords.contains(tok.sval) && !matchDigits();
    }
    
 //Methods to "eat" the current token
@@ -90,11 +94,25 @@ public class Lexer {
     * @return the integer value of the current token
     */
    public int eatIntConstant() {
-      if (!matchIntConstant())
+      try {
+         return Integer.parseInt(eatNumber(false));
+      }
+      catch(NumberFormatException e) {
          throw new BadSyntaxException();
-      int i = (int) tok.nval;
-      nextToken();
-      return i;
+      }
+   }
+   
+   /**
+    * Throws an exception if the current tokens are not 
+    * a number: an optional minus sign, digits, and
+    * optionally a fraction. 
+    * Otherwise, returns the text of that number and moves
+    * past it, so that the caller can convert it without
+    * losing digits.
+    * @return the text of the number
+    */
+   public String eatNumericConstant() {
+      return eatNumber(true);
    }
    
    /**
@@ -138,6 +156,36 @@ public class Lexer {
       return s;
    }
    
+   private boolean matchDigits() {
+      return tok.ttype == StreamTokenizer.TT_WORD
+            && tok.sval.charAt(0) >= '0' && tok.sval.charAt(0) <= '9';
+   }
+   
+   private String eatNumber(boolean fraction) {
+      StringBuilder sb = new StringBuilder();
+      if (matchDelim('-')) {
+         sb.append('-');
+         nextToken();
+      }
+      sb.append(eatDigits());
+      if (fraction && matchDelim('.')) {
+         nextToken();
+         sb.append('.').append(eatDigits());
+      }
+      return sb.toString();
+   }
+   
+   private String eatDigits() {
+      if (!matchDigits())
+         throw new BadSyntaxException();
+      String s = tok.sval;
+      for (int i=0; i<s.length(); i++)
+         if (s.charAt(i) < '0' || s.charAt(i) > '9')
+            throw new BadSyntaxException();
+      nextToken();
+      return s;
+   }
+   
    private void nextToken() {
       try {
          tok.nextToken();
@@ -150,6 +198,7 @@ public class Lexer {
    private void initKeywords() {
       keywords = Arrays.asList("select", "from", "where", "and",
                                "insert", "into", "values", "delete", "update", "set", 
-                               "create", "table", "int", "varchar", "view", "as", "index", "on");
+                               "create", "table", "int", "varchar", "view", "as", "index", "on",
+                               "bigint", "double", "date", "timestamp");
    }
 }
\ No newline at end of file
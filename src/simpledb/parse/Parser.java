@@ -1,6 +1,8 @@
 package simpledb.parse;
 
 import java.util.*;
+import java.sql.Date;
+import java.sql.Timestamp;
 
 import simpledb.query.*;
 import simpledb.record.*;
@@ -25,8 +27,48 @@ public class Parser {
    public Constant constant() {
       if (lex.matchStringConstant())
          return new Constant(lex.eatStringConstant());
+      else if (lex.matchKeyword("date") || lex.matchKeyword("timestamp"))
+         return temporalConstant();
       else
-         return new Constant(lex.eatIntConstant());
+         return numericConstant();
+   }
+   
+   /**
+    * A number with a fraction is a double; any other number
+    * is an int if it fits, or else a bigint. A number that
+    * does not fit its type is a syntax error.
+    */
+   private Constant numericConstant() {
+      String n = lex.eatNumericConstant();
+      try {
+         if (n.indexOf('.') >= 0) {
+            double d = Double.parseDouble(n);
+            if (Double.isInfinite(d))
+               throw new BadSyntaxException();
+            return new Constant(d);
+         }
+         long l = Long.parseLong(n);
+         if (l == (int) l)
+            return new Constant((int) l);
+         else
+            return new Constant(l);
+      }
+      catch(NumberFormatException e) {
+         throw new BadSyntaxException();
+      }
+   }
+   
+   private Constant temporalConstant() {
+      boolean isDate = lex.matchKeyword("date");
+      lex.eatKeyword(isDate ? "date" : "timestamp");
+      String s = lex.eatStringConstant();
+      try {
+         return isDate ? new Constant(Date.valueOf(s))
+                       : new Constant(Timestamp.valueOf(s));
+      }
+      catch(IllegalArgumentException e) {
+         throw new BadSyntaxException();
+      }
    }
    
    public Expression expression() {
@@ -209,6 +251,22 @@ public class Parser {
          lex.eatKeyword("int");
          schema.addIntField(fldname);
       }
+      else if (lex.matchKeyword("bigint")) {
+         lex.eatKeyword("bigint");
+         schema.addLongField(fldname);
+      }
+      else if (lex.matchKeyword("double")) {
+         lex.eatKeyword("double");
+         schema.addDoubleField(fldname);
+      }
+      else if (lex.matchKeyword("date")) {
+         lex.eatKeyword("date");
+         schema.addDateField(fldname);
+      }
+      else if (lex.matchKeyword("timestamp")) {
+         lex.eatKeyword("timestamp");
+         schema.addTimestampField(fldname);
+      }
       else {
          lex.eatKeyword("varchar");
          lex.eatDelim('(');
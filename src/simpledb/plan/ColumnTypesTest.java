@@ -0,0 +1,134 @@
+package simpledb.plan;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import simpledb.server.SimpleDB;
+import simpledb.tx.Transaction;
+import simpledb.query.*;
+import simpledb.record.*;
+import simpledb.index.Index;
+import simpledb.index.btree.BTreeIndex;
+import simpledb.parse.BadSyntaxException;
+
+public class ColumnTypesTest {
+   public static void main(String[] args) {
+      SimpleDB db = new SimpleDB("columntypestest");
+      Transaction tx = db.newTx();
+      Planner planner = db.planner();
+
+      String cmd = "create table T(A int, B bigint, C double, D date, E timestamp)";
+      planner.executeUpdate(cmd, tx);
+      int n = 20;
+      System.out.println("Inserting " + n + " records into T.");
+      for (int i=0; i<n; i++) {
+         long b = 10000000000L * i;
+         cmd = "insert into T(A,B,C,D,E) values(" + i + ", " + b + ", " + (i + 0.5)
+               + ", date '2024-01-" + (10+i) + "', timestamp '2024-01-01 12:00:" + (10+i) + ".5')";
+         planner.executeUpdate(cmd, tx);
+      }
+      tx.commit();
+
+      tx = db.newTx();
+      String qry = "select A,B,C,D,E from T where D = date '2024-01-15'";
+      Plan p = planner.createQueryPlan(qry, tx);
+      Scan s = p.open();
+      while (s.next())
+         System.out.println(s.getVal("a") + " " + s.getVal("b") + " " + s.getVal("c")
+                            + " " + s.getVal("d") + " " + s.getVal("e"));
+      s.close();
+
+      // a numeric constant matches a field of any numeric type
+      qry = "select A from T where B = 30000000000";
+      System.out.println("B = 30000000000: " + count(planner, qry, tx) + " (expected 1)");
+      qry = "select A from T where C = 7.5";
+      System.out.println("C = 7.5: " + count(planner, qry, tx) + " (expected 1)");
+
+      // changes to the new types are undone on rollback
+      cmd = "update T set C = 99.25 where A = 3";
+      planner.executeUpdate(cmd, tx);
+      cmd = "update T set E = timestamp '1999-12-31 23:59:59' where A = 3";
+      planner.executeUpdate(cmd, tx);
+      tx.rollback();
+      tx = db.newTx();
+      qry = "select C,E from T where A = 3";
+      p = planner.createQueryPlan(qry, tx);
+      s = p.open();
+      while (s.next())
+         System.out.println("after rollback: " + s.getVal("c") + " " + s.getVal("e")
+                            + " (expected 3.5 2024-01-01 12:00:13.5)");
+      s.close();
+
+      // B-tree index on a date field
+      Schema sch = new Schema();
+      sch.addIntField("block");
+      sch.addIntField("id");
+      sch.addDateField("dataval");
+      Index idx = new BTreeIndex(tx, "tdateidx", new Layout(sch));
+      for (int i=0; i<30; i++)
+         idx.insert(new Constant(new Date(86400000L * (i % 10))), new RID(i, 0));
+      idx.beforeFirst(new Constant(new Date(86400000L * 7)));
+      int found = 0;
+      while (idx.next())
+         found++;
+      idx.close();
+      System.out.println("index entries for " + new Date(86400000L * 7) + ": " + found + " (expected 3)");
+      tx.commit();
+
+      // a value that does not fit a field is rejected instead of being changed
+      String[] bad = {"A = 'abc'", "B = 'abc'", "D = 'abc'", "D = 5", "C = date '2024-01-01'",
+                      "E = date '2024-01-01'", "A = 1.5", "A = 3000000000", "B = 2.5"};
+      tx = db.newTx();
+      int rejected = 0;
+      for (String set : bad) {
+         try {
+            planner.executeUpdate("update T set " + set + " where A = 4", tx);
+            System.out.println("not rejected: " + set);
+         }
+         catch (RuntimeException e) {
+            rejected++;
+         }
+      }
+      tx.rollback();
+      tx = db.newTx();
+      cmd = "insert into T(A,B,C,D,E) values(21, 21, 21, date '2024-02-01', timestamp '2024-02-01 00:00:00')";
+      planner.executeUpdate(cmd, tx);
+      qry = "select A from T where B = 21 and C = 21";
+      System.out.println(rejected + " mismatched values rejected (expected " + bad.length
+                         + "), whole numbers stored in bigint and double fields: "
+                         + count(planner, qry, tx) + " (expected 1)");
+      tx.rollback();
+
+      // numeric literals keep every digit; one that fits no type is a syntax error
+      tx = db.newTx();
+      cmd = "insert into T(A,B,C,D,E) values(-22, 9007199254740993, -0.25, date '2024-02-01', "
+            + "timestamp '2024-02-01 00:00:00')";
+      planner.executeUpdate(cmd, tx);
+      qry = "select B, C from T where A = -22";
+      p = planner.createQueryPlan(qry, tx);
+      s = p.open();
+      while (s.next())
+         System.out.println("literals: " + s.getVal("b") + " " + s.getVal("c")
+                            + " (expected 9007199254740993 -0.25)");
+      s.close();
+      qry = "select A from T where B = 9007199254740992";
+      System.out.println("B = 9007199254740992: " + count(planner, qry, tx) + " (expected 0)");
+      try {
+         planner.executeUpdate("update T set B = 9223372036854775808 where A = -22", tx);
+         System.out.println("9223372036854775808 not rejected");
+      }
+      catch (BadSyntaxException e) {
+         System.out.println("9223372036854775808 rejected");
+      }
+      tx.rollback();
+   }
+
+   private static int count(Planner planner, String qry, Transaction tx) {
+      Plan p = planner.createQueryPlan(qry, tx);
+      Scan s = p.open();
+      int count = 0;
+      while (s.next())
+         count++;
+      s.close();
+      return count;
+   }
+}
@@ -1,43 +1,235 @@
 package simpledb.query;
 
+import static java.sql.Types.*;
+import java.sql.Date;
+import java.sql.JDBCType;
+import java.sql.Timestamp;
+import simpledb.file.Page;
+
 /**
  * The class that denotes values stored in the database.
+ * Every constant has one of the types of {@link java.sql.Types}
+ * that a field can have: INTEGER, BIGINT, DOUBLE, VARCHAR,
+ * DATE or TIMESTAMP. Dates and timestamps are held as
+ * epoch milliseconds, the same as they are stored in a page.
+ * <p>
+ * Numeric constants compare by value regardless of type,
+ * so that an int literal can be compared against a bigint
+ * or double field; dates and timestamps compare with each other.
  * @author Edward Sciore
  */
 public class Constant implements Comparable<Constant> {
+   private int     type;
    private Integer ival = null;
    private String  sval = null;
-   
+   private long    lval;
+   private double  dval;
+   private byte[]  sbytes = null;
+
    public Constant(Integer ival) {
+      this.type = INTEGER;
       this.ival = ival;
    }
-   
+
    public Constant(String sval) {
+      this.type = VARCHAR;
       this.sval = sval;
    }
-   
+
+   public Constant(Long lval) {
+      this.type = BIGINT;
+      this.lval = lval;
+   }
+
+   public Constant(Double dval) {
+      this.type = DOUBLE;
+      this.dval = dval;
+   }
+
+   public Constant(Date date) {
+      this.type = DATE;
+      this.lval = date.getTime();
+   }
+
+   public Constant(Timestamp ts) {
+      this.type = TIMESTAMP;
+      this.lval = ts.getTime();
+   }
+
+   /**
+    * Return the type of the constant,
+    * using the constants in {@link java.sql.Types}.
+    * @return the type of the constant
+    */
+   public int type() {
+      return type;
+   }
+
+   /**
+    * Return the value as an int. A bigint or double
+    * constant must hold a whole number in the range of an int.
+    * @return the int value
+    * @throws RuntimeException if the value is not an int
+    */
    public int asInt() {
-      return ival;
+      if (ival != null)
+         return ival;
+      long n = asLong();
+      if (type == DATE || type == TIMESTAMP || n != (int) n)
+         throw new RuntimeException("cannot convert " + this + " to an int");
+      return (int) n;
+   }
+
+   /**
+    * Return the value as a long: the value of an integer or
+    * bigint constant, a double constant that holds a whole
+    * number in the range of a long, or the epoch milliseconds
+    * of a date or timestamp.
+    * @return the long value
+    * @throws RuntimeException if the value is not a long
+    */
+   public long asLong() {
+      if (type == VARCHAR
+            || type == DOUBLE && !(dval == Math.rint(dval) && dval >= -0x1p63 && dval < 0x1p63))
+         throw new RuntimeException("cannot convert " + this + " to a long");
+      return longValue();
+   }
+
+   /**
+    * Return the value of a numeric constant as a double.
+    * A bigint constant must be exactly representable as a double.
+    * @return the double value
+    * @throws RuntimeException if the value is not a double
+    */
+   public double asDouble() {
+      if (!isNumeric() || type == BIGINT && (long) (double) lval != lval)
+         throw new RuntimeException("cannot convert " + this + " to a double");
+      return doubleValue();
    }
-   
+
    public String asString() {
       return sval;
    }
-   
+
+   public Date asDate() {
+      return new Date(lval);
+   }
+
+   public Timestamp asTimestamp() {
+      return new Timestamp(lval);
+   }
+
+   /**
+    * Return the string value encoded as it is stored in a page,
+    * so that it can be compared against page contents
+    * without decoding them.
+    * The encoding is computed once and cached.
+    * @return the encoded string value
+    */
+   public byte[] asBytes() {
+      if (sbytes == null)
+         sbytes = sval.getBytes(Page.CHARSET);
+      return sbytes;
+   }
+
+   /**
+    * Check that the constant can be stored in a field of the
+    * specified type. A numeric constant can be stored in a field
+    * of any numeric type, provided asInt, asLong or asDouble
+    * accepts its value; any other constant only in a field of
+    * its own type.
+    * @param fldtype the type of the field, from {@link java.sql.Types}
+    * @throws RuntimeException if the constant does not fit the field
+    */
+   public void checkFieldType(int fldtype) {
+      boolean numericField = fldtype == INTEGER || fldtype == BIGINT || fldtype == DOUBLE;
+      if (isNumeric() ? !numericField : fldtype != type)
+         throw new RuntimeException("cannot store " + this + " in a field of type "
+                                    + JDBCType.valueOf(fldtype).getName());
+   }
+
+   /**
+    * Return true if the constant is an integer, bigint or double.
+    * @return true if the constant is numeric
+    */
+   public boolean isNumeric() {
+      return type == INTEGER || type == BIGINT || type == DOUBLE;
+   }
+
    public boolean equals(Object obj) {
       Constant c = (Constant) obj;
-      return (ival != null) ? ival.equals(c.ival) : sval.equals(c.sval);
+      return family() == c.family() && compareTo(c) == 0;
    }
-   
+
    public int compareTo(Constant c) {
-      return (ival != null) ? ival.compareTo(c.ival) : sval.compareTo(c.sval);
+      if (family() != c.family())
+         return Integer.compare(family(), c.family());
+      if (type == VARCHAR)
+         return sval.compareTo(c.sval);
+      if (type == DOUBLE || c.type == DOUBLE)
+         return Double.compare(doubleValue(), c.doubleValue());
+      return Long.compare(longValue(), c.longValue());
    }
-   
+
+   /**
+    * Numeric constants that are equal have the same hash code
+    * whatever their type; an integer hashes as it always has,
+    * so hash indexes built on int fields are unaffected.
+    */
    public int hashCode() {
-      return (ival != null) ? ival.hashCode() : sval.hashCode();
+      if (ival != null)
+         return ival.hashCode();
+      if (type == VARCHAR)
+         return sval.hashCode();
+      if (type == DOUBLE && dval != (long) dval)
+         return Double.hashCode(dval);
+      long n = longValue();
+      if (isNumeric() && n == (int) n)
+         return Integer.hashCode((int) n);
+      return Long.hashCode(n);
    }
-   
+
    public String toString() {
-      return (ival != null) ? ival.toString() : sval.toString();
-   }   
+      switch (type) {
+         case INTEGER:   return ival.toString();
+         case BIGINT:    return Long.toString(lval);
+         case DOUBLE:    return Double.toString(dval);
+         case DATE:      return asDate().toString();
+         case TIMESTAMP: return asTimestamp().toString();
+         default:        return sval;
+      }
+   }
+
+   /**
+    * The value of a numeric, date or timestamp constant
+    * as a long, a double being truncated, for comparisons.
+    */
+   private long longValue() {
+      if (ival != null)
+         return ival;
+      else if (type == DOUBLE)
+         return (long) dval;
+      else
+         return lval;
+   }
+
+   /**
+    * The value of a numeric constant as a double,
+    * a bigint being rounded, for comparisons.
+    */
+   private double doubleValue() {
+      return (type == DOUBLE) ? dval : longValue();
+   }
+
+   /**
+    * Values of the same family can be compared with each other.
+    */
+   private int family() {
+      if (isNumeric())
+         return 0;
+      else if (type == VARCHAR)
+         return 1;
+      else
+         return 2;
+   }
 }
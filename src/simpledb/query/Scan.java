@@ -44,6 +44,19 @@ public interface Scan {
     */
    public Constant getVal(String fldname);
    
+   /**
+    * Return true if the specified field of the current record
+    * has the specified value.
+    * Scans that read records directly from pages override this
+    * method to compare without decoding the stored value.
+    * @param fldname the name of the field
+    * @param val the value to compare against
+    * @return true if the field's value equals val
+    */
+   public default boolean fieldEquals(String fldname, Constant val) {
+      return val.equals(getVal(fldname));
+   }
+   
    /**
     * Return true if the scan has the specified field.
     * @param fldname the name of the field
@@ -77,10 +77,18 @@ public class Layout {
 
    private int lengthInBytes(String fldname) {
       int fldtype = schema.type(fldname);
-      if (fldtype == INTEGER)
-         return Integer.BYTES;
-      else // fldtype == VARCHAR
-         return Page.maxLength(schema.length(fldname));
+      switch (fldtype) {
+         case INTEGER:
+            return Integer.BYTES;
+         case BIGINT:
+         case DOUBLE:
+         case DATE:
+         case TIMESTAMP:
+            // dates and timestamps are stored as epoch milliseconds
+            return Long.BYTES;
+         default: // fldtype == VARCHAR
+            return Page.maxLength(schema.length(fldname));
+      }
    }
 }
 
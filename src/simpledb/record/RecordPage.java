@@ -1,7 +1,11 @@
 package simpledb.record;
 
-import static java.sql.Types.INTEGER;
+import static java.sql.Types.*;
+import java.sql.Date;
+import java.sql.Timestamp;
+import simpledb.buffer.BufferRing;
 import simpledb.file.*;
+import simpledb.query.Constant;
 import simpledb.tx.Transaction;
 
 /**
@@ -13,12 +17,23 @@ public class RecordPage {
    private Transaction tx;
    private BlockId blk;
    private Layout layout;
+   private int blocksize;
 
    public RecordPage(Transaction tx, BlockId blk, Layout layout) {
+      this(tx, blk, layout, null);
+   }
+
+   /**
+    * Create a record page whose block is pinned through
+    * the specified buffer ring.
+    * @param ring the ring of the scan, or null to use the whole pool
+    */
+   public RecordPage(Transaction tx, BlockId blk, Layout layout, BufferRing ring) {
       this.tx = tx;
       this.blk = blk;
       this.layout = layout;
-      tx.pin(blk);
+      this.blocksize = tx.blockSize(blk.fileName());
+      tx.pin(blk, ring);
    }
 
    /**
@@ -43,6 +58,64 @@ public class RecordPage {
       return tx.getString(blk, fldpos);
    }
 
+   /**
+    * Return the long value stored for the
+    * specified field of the specified slot.
+    * Bigint, date and timestamp fields are stored as longs.
+    * @param fldname the name of the field.
+    * @return the long stored in that field
+    */
+   public long getLong(int slot, String fldname) {
+      int fldpos = offset(slot) + layout.offset(fldname);
+      return tx.getLong(blk, fldpos);
+   }
+
+   /**
+    * Return the double value stored for the
+    * specified field of the specified slot.
+    * @param fldname the name of the field.
+    * @return the double stored in that field
+    */
+   public double getDouble(int slot, String fldname) {
+      int fldpos = offset(slot) + layout.offset(fldname);
+      return tx.getDouble(blk, fldpos);
+   }
+
+   /**
+    * Return the value stored for the specified field
+    * of the specified slot, whatever its type.
+    * @param fldname the name of the field.
+    * @return the value stored in that field
+    */
+   public Constant getVal(int slot, String fldname) {
+      switch (layout.schema().type(fldname)) {
+         case INTEGER:   return new Constant(getInt(slot, fldname));
+         case BIGINT:    return new Constant(getLong(slot, fldname));
+         case DOUBLE:    return new Constant(getDouble(slot, fldname));
+         case DATE:      return new Constant(new Date(getLong(slot, fldname)));
+         case TIMESTAMP: return new Constant(new Timestamp(getLong(slot, fldname)));
+         default:        return new Constant(getString(slot, fldname));
+      }
+   }
+
+   /**
+    * Return true if the specified field of the specified slot
+    * holds the given value, without decoding a string field.
+    * @param fldname the name of the field
+    * @param val the value to compare against
+    * @return true if the field's value equals val
+    */
+   public boolean fieldEquals(int slot, String fldname, Constant val) {
+      int fldpos = offset(slot) + layout.offset(fldname);
+      int fldtype = layout.schema().type(fldname);
+      if (fldtype == INTEGER && val.type() == INTEGER)
+         return tx.getInt(blk, fldpos) == val.asInt();
+      else if (fldtype == VARCHAR)
+         return val.type() == VARCHAR && tx.stringEquals(blk, fldpos, val.asBytes());
+      else
+         return val.equals(getVal(slot, fldname));
+   }
+
    /**
     * Store an integer at the specified field
     * of the specified slot.
@@ -65,6 +138,56 @@ public class RecordPage {
       tx.setString(blk, fldpos, val, true);
    }
    
+   /**
+    * Store a long at the specified field
+    * of the specified slot.
+    * @param fldname the name of the field
+    * @param val the long value stored in that field
+    */
+   public void setLong(int slot, String fldname, long val) {
+      int fldpos = offset(slot) + layout.offset(fldname);
+      tx.setLong(blk, fldpos, val, true);
+   }
+
+   /**
+    * Store a double at the specified field
+    * of the specified slot.
+    * @param fldname the name of the field
+    * @param val the double value stored in that field
+    */
+   public void setDouble(int slot, String fldname, double val) {
+      int fldpos = offset(slot) + layout.offset(fldname);
+      tx.setDouble(blk, fldpos, val, true);
+   }
+
+   /**
+    * Store a value at the specified field of the specified slot,
+    * converting a numeric value to the field's type.
+    * A value that does not fit the field is rejected,
+    * as {@link Constant#checkFieldType(int)} describes.
+    * @param fldname the name of the field
+    * @param val the value stored in that field
+    */
+   public void setVal(int slot, String fldname, Constant val) {
+      int fldtype = layout.schema().type(fldname);
+      val.checkFieldType(fldtype);
+      switch (fldtype) {
+         case INTEGER:
+            setInt(slot, fldname, val.asInt());
+            break;
+         case BIGINT:
+         case DATE:
+         case TIMESTAMP:
+            setLong(slot, fldname, val.asLong());
+            break;
+         case DOUBLE:
+            setDouble(slot, fldname, val.asDouble());
+            break;
+         default:
+            setString(slot, fldname, val.asString());
+      }
+   }
+   
    public void delete(int slot) {
       setFlag(slot, EMPTY);
    }
@@ -80,10 +203,13 @@ public class RecordPage {
          Schema sch = layout.schema();
          for (String fldname : sch.fields()) {
             int fldpos = offset(slot) + layout.offset(fldname);
-            if (sch.type(fldname) == INTEGER)
+            int fldtype = sch.type(fldname);
+            if (fldtype == INTEGER)
                tx.setInt(blk, fldpos, 0, false);
-            else
+            else if (fldtype == VARCHAR)
                tx.setString(blk, fldpos, "", false);
+            else
+               tx.setLong(blk, fldpos, 0, false);
          }
          slot++;
       }
@@ -124,7 +250,7 @@ public class RecordPage {
    }
 
    private boolean isValidSlot(int slot) {
-      return offset(slot+1) <= tx.blockSize();
+      return offset(slot+1) <= blocksize;
    }
 
    private int offset(int slot) {
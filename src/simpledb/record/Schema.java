@@ -18,7 +18,7 @@ public class Schema {
    /**
     * Add a field to the schema having a specified
     * name, type, and length.
-    * If the field type is "integer", then the length
+    * If the field type is not "varchar", then the length
     * value is irrelevant.
     * @param fldname the name of the field
     * @param type the type of the field, according to the constants in simpledb.sql.types
@@ -37,6 +37,38 @@ public class Schema {
       addField(fldname, INTEGER, 0);
    }
    
+   /**
+    * Add a bigint field to the schema.
+    * @param fldname the name of the field
+    */
+   public void addLongField(String fldname) {
+      addField(fldname, BIGINT, 0);
+   }
+   
+   /**
+    * Add a double field to the schema.
+    * @param fldname the name of the field
+    */
+   public void addDoubleField(String fldname) {
+      addField(fldname, DOUBLE, 0);
+   }
+   
+   /**
+    * Add a date field to the schema.
+    * @param fldname the name of the field
+    */
+   public void addDateField(String fldname) {
+      addField(fldname, DATE, 0);
+   }
+   
+   /**
+    * Add a timestamp field to the schema.
+    * @param fldname the name of the field
+    */
+   public void addTimestampField(String fldname) {
+      addField(fldname, TIMESTAMP, 0);
+   }
+   
    /**
     * Add a string field to the schema.
     * The length is the conceptual length of the field.
@@ -1,6 +1,6 @@
 package simpledb.record;
 
-import static java.sql.Types.INTEGER;
+import simpledb.buffer.BufferRing;
 import simpledb.file.BlockId;
 import simpledb.query.*;
 import simpledb.tx.Transaction;
@@ -11,22 +11,44 @@ import simpledb.tx.Transaction;
  * @author sciore
  */
 public class TableScan implements UpdateScan {
+   /**
+    * A scan of a table with more blocks than this share of the
+    * buffer pool pins the blocks it moves through in order via a
+    * {@link BufferRing}, so that it does not push the rest of
+    * the pool out
+    */
+   public static double RING_THRESHOLD = 0.25;
    private Transaction tx;
    private Layout layout;
    private RecordPage rp;
    private String filename;
    private int currentslot;
+   private BufferRing ring;
 
    public TableScan(Transaction tx, String tblname, Layout layout) {
       this.tx = tx;
       this.layout = layout;
       filename = tblname + ".tbl";
-      if (tx.size(filename) == 0)
+      int size = tx.size(filename);
+      if (isLarge(size))
+         ring = tx.newBufferRing();
+      if (size == 0)
          moveToNewBlock();
       else 
          moveToBlock(0);
    }
 
+   /**
+    * Pin the blocks that the scan moves through in order via
+    * a buffer ring from now on, however large the table is.
+    * A bulk load, which fills many new blocks that nobody
+    * reads soon, should call this before inserting.
+    */
+   public void useBufferRing() {
+      if (ring == null)
+         ring = tx.newBufferRing();
+   }
+
    // Methods that implement Scan
 
    public void beforeFirst() {
@@ -53,10 +75,11 @@ public class TableScan implements UpdateScan {
    }
 
    public Constant getVal(String fldname) {
-      if (layout.schema().type(fldname) == INTEGER)
-         return new Constant(getInt(fldname));
-      else
-         return new Constant(getString(fldname));
+      return rp.getVal(currentslot, fldname);
+   }
+
+   public boolean fieldEquals(String fldname, Constant val) {
+      return rp.fieldEquals(currentslot, fldname, val);
    }
 
    public boolean hasField(String fldname) {
@@ -79,10 +102,7 @@ public class TableScan implements UpdateScan {
    }
 
    public void setVal(String fldname, Constant val) {
-      if (layout.schema().type(fldname) == INTEGER)
-         setInt(fldname, val.asInt());
-      else
-         setString(fldname, val.asString());
+      rp.setVal(currentslot, fldname, val);
    }
 
    public void insert() {
@@ -116,18 +136,28 @@ public class TableScan implements UpdateScan {
    private void moveToBlock(int blknum) {
       close();
       BlockId blk = new BlockId(filename, blknum);
-      rp = new RecordPage(tx, blk, layout);
+      rp = new RecordPage(tx, blk, layout, ring);
       currentslot = -1;
    }
 
+   /**
+    * Append a block and format it. A table that grows
+    * large while being loaded starts using a buffer ring.
+    */
    private void moveToNewBlock() {
       close();
       BlockId blk = tx.append(filename);
-      rp = new RecordPage(tx, blk, layout);
+      if (ring == null && isLarge(blk.number() + 1))
+         ring = tx.newBufferRing();
+      rp = new RecordPage(tx, blk, layout, ring);
       rp.format();
       currentslot = -1;
    }
 
+   private boolean isLarge(int size) {
+      return size > tx.bufferPoolSize() * RING_THRESHOLD;
+   }
+
    private boolean atLastBlock() {
       return rp.block().number() == tx.size(filename) - 1;
    }
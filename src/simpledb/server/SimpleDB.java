@@ -1,9 +1,17 @@
 package simpledb.server;
 
 import java.io.File;
+import simpledb.file.AsyncFileMgr;
+import simpledb.file.DirectFileMgr;
 import simpledb.file.FileMgr;
+import simpledb.file.MappedFileMgr;
+import simpledb.file.StorageMode;
+import simpledb.file.SyncPolicy;
 import simpledb.log.LogMgr;
 import simpledb.buffer.BufferMgr;
+import simpledb.buffer.HotPageList;
+import simpledb.buffer.ReplacementPolicy;
+import simpledb.buffer.TempBufferMgr;
 import simpledb.tx.Transaction;
 import simpledb.metadata.MetadataMgr;
 import simpledb.plan.*;
@@ -18,10 +26,36 @@ import simpledb.opt.HeuristicQueryPlanner;
 public class SimpleDB {
    public static int BLOCK_SIZE = 400;
    public static int BUFFER_SIZE = 8;
+   public static int TEMP_BUFFER_SIZE = 8;
    public static String LOG_FILE = "simpledb.log";
+   public static StorageMode STORAGE_MODE = StorageMode.STANDARD;
+   public static SyncPolicy SYNC_POLICY = SyncPolicy.PER_WRITE;
+   public static ReplacementPolicy.Kind REPLACEMENT_POLICY = ReplacementPolicy.Kind.LRU;
+   /**
+    * The number of threads of the main pool's background writer;
+    * 0 leaves the writing of dirty victims to the misses
+    */
+   public static int BG_WRITER_THREADS = 1;
+   /**
+    * The file in the database directory that lists the blocks
+    * of the main pool, so that the pool can be warmed up on restart
+    */
+   public static String HOT_PAGES_FILE = "simpledb.hot";
+   /**
+    * How often the list of the main pool's blocks is saved,
+    * in milliseconds; 0 turns saving and warming up off.
+    * The 1-arg constructor warms the pool up once the block sizes
+    * are loaded and recovery is done, since the saved blocks must
+    * be read with their file's block size. The other constructors
+    * only start saving; their callers can warm up the pool with
+    * {@link HotPageList#warmUp(FileMgr)} when their files are set up
+    */
+   public static long HOT_PAGES_INTERVAL_MILLIS = 60000;
 
    private  FileMgr     fm;
    private  BufferMgr   bm;
+   private  TempBufferMgr tempbm;
+   private  HotPageList hotPages;
    private  LogMgr      lm;
    private  MetadataMgr mdm;
    private  Planner planner;
@@ -33,10 +67,38 @@ public class SimpleDB {
     * @param buffSize 缓冲区管理器的插槽个数(一个插槽可以容纳一个缓冲区)
     */
    public SimpleDB(String dirname, int blockSize, int buffSize) {
+      this(dirname, blockSize, buffSize, STORAGE_MODE);
+   }
+
+   /**
+    * A constructor that also chooses how the file manager
+    * accesses the database files.
+    * @param dirname 数据库目录的名称
+    * @param blockSize 磁盘上的块的大小
+    * @param buffSize 缓冲区管理器的插槽个数(一个插槽可以容纳一个缓冲区)
+    * @param mode 文件管理器的存储方式
+    */
+   public SimpleDB(String dirname, int blockSize, int buffSize, StorageMode mode) {
       File dbDirectory = new File(dirname);
-      fm = new FileMgr(dbDirectory, blockSize);
+      if (mode == StorageMode.MAPPED)
+         fm = new MappedFileMgr(dbDirectory, blockSize, SYNC_POLICY);
+      else if (mode == StorageMode.DIRECT)
+         fm = new DirectFileMgr(dbDirectory, blockSize, SYNC_POLICY);
+      else if (mode == StorageMode.ASYNC)
+         fm = new AsyncFileMgr(dbDirectory, blockSize, SYNC_POLICY);
+      else
+         fm = new FileMgr(dbDirectory, blockSize, SYNC_POLICY);
+      fm.ioStats().register(dirname);
       lm = new LogMgr(fm, LOG_FILE);
-      bm = new BufferMgr(fm, lm, buffSize);
+      bm = new BufferMgr(fm, lm, buffSize, REPLACEMENT_POLICY);
+      if (BG_WRITER_THREADS > 0)
+         bm.startWriter(BG_WRITER_THREADS);
+      tempbm = new TempBufferMgr(fm, lm, TEMP_BUFFER_SIZE);
+      bm.stats().register(dirname);
+      tempbm.stats().register(dirname + "-temp");
+      hotPages = new HotPageList(bm, new File(dbDirectory, HOT_PAGES_FILE));
+      if (HOT_PAGES_INTERVAL_MILLIS > 0)
+         hotPages.startSaving(HOT_PAGES_INTERVAL_MILLIS);
    }
    
    /**
@@ -54,6 +116,7 @@ public class SimpleDB {
          System.out.println("creating new database");
       } else {
          System.out.println("recovering existing database");
+         MetadataMgr.loadBlockSizes(tx);
          tx.recover();
       }
       mdm = new MetadataMgr(isnew, tx);
@@ -63,6 +126,11 @@ public class SimpleDB {
 //    UpdatePlanner up = new IndexUpdatePlanner(mdm);
       planner = new Planner(qp, up);
       tx.commit();
+      if (HOT_PAGES_INTERVAL_MILLIS > 0 && !isnew) {
+         // binds the saved blocks to buffers before returning;
+         // only their reads go on in the background
+         hotPages.warmUp(fm);
+      }
    }
    
    /**
@@ -70,7 +138,7 @@ public class SimpleDB {
     * and access the metadata.
     */
    public Transaction newTx() {
-      return new Transaction(fm, lm, bm);
+      return new Transaction(fm, lm, bm, tempbm);
    }
    
    public MetadataMgr mdMgr() {
@@ -101,4 +169,10 @@ public class SimpleDB {
    public BufferMgr bufferMgr() {
       return bm;
    }   
+   public TempBufferMgr tempBufferMgr() {
+      return tempbm;
+   }
+   public HotPageList hotPages() {
+      return hotPages;
+   }
  }
@@ -31,13 +31,29 @@ class BufferList {
    /**
     * Pin the block and keep track of the buffer internally.
     * @param blk a reference to the disk block
+    * @param ring the buffer ring to pin through, or null
     */
-   void pin(BlockId blk) {
-      Buffer buff = bm.pin(blk);
+   void pin(BlockId blk, BufferRing ring) {
+      Buffer buff = bm.pin(blk, ring);
       buffers.put(blk, buff);
       pins.add(blk);
    }
    
+   /**
+    * Pin the specified number of consecutive blocks,
+    * starting at the specified block, and keep track
+    * of their buffers internally.
+    * @param first a reference to the first disk block
+    * @param count the number of consecutive blocks
+    */
+   void pin(BlockId first, int count) {
+      Buffer[] buffs = bm.pin(first, count);
+      for (Buffer buff : buffs) {
+         buffers.put(buff.block(), buff);
+         pins.add(buff.block());
+      }
+   }
+   
    /**
     * Unpin the specified block.
     * @param blk a reference to the disk block
@@ -0,0 +1,38 @@
+package simpledb.tx;
+
+import simpledb.file.BlockId;
+import simpledb.file.SyncPolicy;
+import simpledb.server.SimpleDB;
+
+/**
+ * Measures commit throughput under each {@link SyncPolicy}.
+ * Every transaction updates one integer in each of a few blocks
+ * and commits, which flushes the modified buffers and the log.
+ */
+public class CommitThroughputTest {
+   private static final int NUM_TXS = 300;
+   private static final int BLOCKS_PER_TX = 3;
+
+   public static void main(String[] args) {
+      StringBuilder report = new StringBuilder();
+      for (SyncPolicy policy : SyncPolicy.values()) {
+         SimpleDB.SYNC_POLICY = policy;
+         SimpleDB db = new SimpleDB("committest-" + policy.name().toLowerCase(), 400, 8);
+         long start = System.nanoTime();
+         for (int i = 0; i < NUM_TXS; i++) {
+            Transaction tx = db.newTx();
+            for (int b = 0; b < BLOCKS_PER_TX; b++) {
+               BlockId blk = new BlockId("testfile", (i * BLOCKS_PER_TX + b) % 50);
+               tx.pin(blk);
+               tx.setInt(blk, 80, i, true);
+            }
+            tx.commit();
+         }
+         long elapsed = System.nanoTime() - start;
+         report.append(policy + ": " + NUM_TXS + " commits in " + (elapsed / 1_000_000) + " ms, "
+               + (NUM_TXS * 1_000_000_000L / elapsed) + " commits/s\n");
+      }
+      SimpleDB.SYNC_POLICY = SyncPolicy.PER_WRITE;
+      System.out.print(report);
+   }
+}
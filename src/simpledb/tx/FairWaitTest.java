@@ -0,0 +1,126 @@
+package simpledb.tx;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import simpledb.buffer.Buffer;
+import simpledb.buffer.BufferAbortException;
+import simpledb.buffer.BufferMgr;
+import simpledb.file.*;
+import simpledb.server.SimpleDB;
+import simpledb.tx.concurrency.ConcurrencyMgr;
+import simpledb.tx.concurrency.LockAbortException;
+
+/**
+ * Checks the wait lines of the buffer pool and the lock table.
+ * <p>
+ * Threads that start waiting for a buffer one after the other
+ * must get their buffers in the same order, however the unpins
+ * are spread over time. Readers waiting for an XLock must all get
+ * their SLocks when it is released. With short timeouts, a pin
+ * and a lock request must give up after about that long, and the
+ * timeouts must show up in the statistics.
+ */
+public class FairWaitTest {
+   private static final int POOL_SIZE = 4;
+   private static final int WAITERS = 8;
+
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("fairwaittest", 400, 8);
+      FileMgr fm = db.fileMgr();
+      while (fm.length("testfile") < POOL_SIZE + WAITERS)
+         fm.append("testfile");
+
+      // the buffer pool: all buffers pinned, then waiters arrive one by one
+      BufferMgr bm = new BufferMgr(fm, db.logMgr(), POOL_SIZE);
+      Buffer[] held = new Buffer[POOL_SIZE];
+      for (int i=0; i<POOL_SIZE; i++)
+         held[i] = bm.pin(new BlockId("testfile", i));
+      List<Integer> order = new CopyOnWriteArrayList<>();
+      Thread[] threads = new Thread[WAITERS];
+      for (int i=0; i<WAITERS; i++) {
+         int id = i;
+         threads[i] = new Thread(() -> {
+            Buffer buff = bm.pin(new BlockId("testfile", POOL_SIZE + id));
+            order.add(id);
+            sleep(20);
+            bm.unpin(buff);
+         });
+         threads[i].start();
+         sleep(20);
+      }
+      for (Buffer buff : held) {
+         bm.unpin(buff);
+         sleep(5);
+      }
+      for (Thread t : threads)
+         t.join();
+      System.out.println("buffers granted in the order " + order + " (expected 0 to " + (WAITERS-1) + ")");
+      System.out.println("pin waits: " + bm.pinWaits());
+
+      // the lock table: readers wait for a writer
+      BlockId blk = new BlockId("testfile", 0);
+      Transaction writer = db.newTx();
+      writer.pin(blk);
+      writer.setInt(blk, 0, 1, false);
+      List<Integer> readers = new CopyOnWriteArrayList<>();
+      for (int i=0; i<WAITERS; i++) {
+         int id = i;
+         threads[i] = new Thread(() -> {
+            Transaction tx = db.newTx();
+            tx.pin(blk);
+            tx.getInt(blk, 0);
+            readers.add(id);
+            tx.commit();
+         });
+         threads[i].start();
+      }
+      sleep(200);
+      int before = readers.size();
+      writer.commit();
+      for (Thread t : threads)
+         t.join();
+      System.out.println("readers with the lock before the writer committed: " + before
+                         + " (expected 0), after: " + readers.size() + " (expected " + WAITERS + ")");
+      System.out.println("lock waits: " + ConcurrencyMgr.lockWaits());
+
+      // timeouts
+      BufferMgr.MAX_WAIT_MILLIS = 200;
+      ConcurrencyMgr.MAX_WAIT_MILLIS = 200;
+      for (int i=0; i<POOL_SIZE; i++)
+         held[i] = bm.pin(new BlockId("testfile", i));
+      long start = System.currentTimeMillis();
+      try {
+         bm.pin(new BlockId("testfile", POOL_SIZE));
+         System.out.println("pin did not time out");
+      }
+      catch (BufferAbortException e) {
+         System.out.println("pin timed out after " + (System.currentTimeMillis() - start) + " ms");
+      }
+      writer = db.newTx();
+      writer.pin(blk);
+      writer.setInt(blk, 0, 2, false);
+      Transaction reader = db.newTx();
+      reader.pin(blk);
+      start = System.currentTimeMillis();
+      try {
+         reader.getInt(blk, 0);
+         System.out.println("lock request did not time out");
+      }
+      catch (LockAbortException e) {
+         System.out.println("lock request timed out after " + (System.currentTimeMillis() - start) + " ms");
+      }
+      reader.rollback();
+      writer.commit();
+      System.out.println("pin timeouts: " + bm.pinTimeouts() + ", lock timeouts: "
+                         + ConcurrencyMgr.lockTimeouts() + " (expected 1 and 1)");
+   }
+
+   private static void sleep(long millis) {
+      try {
+         Thread.sleep(millis);
+      }
+      catch (InterruptedException e) {
+         throw new RuntimeException(e);
+      }
+   }
+}
@@ -1,5 +1,9 @@
 package simpledb.tx;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import simpledb.file.*;
 import simpledb.log.LogMgr;
 import simpledb.buffer.*;
@@ -18,9 +22,13 @@ public class Transaction {
    private RecoveryMgr    recoveryMgr;
    private ConcurrencyMgr concurMgr;
    private BufferMgr bm;
+   private TempBufferMgr tempbm;
    private FileMgr fm;
+   private LogMgr lm;
    private int txnum;
    private BufferList mybuffers;
+   // the undo action of each file whose block size or compression this transaction changed
+   private Map<String, Runnable> fileUndos = new LinkedHashMap<>();
    
    /**
     * Create a new transaction and its associated 
@@ -35,8 +43,22 @@ public class Transaction {
     * is called first.
     */
    public Transaction(FileMgr fm, LogMgr lm, BufferMgr bm) {
+      this(fm, lm, bm, null);
+   }
+   
+   /**
+    * Create a new transaction whose temporary tables use
+    * the specified buffer manager, which is shared by
+    * all transactions of the database.
+    * A transaction created with the 3-argument constructor
+    * gets a small temporary buffer manager of its own,
+    * when it creates its first temporary table.
+    */
+   public Transaction(FileMgr fm, LogMgr lm, BufferMgr bm, TempBufferMgr tempbm) {
       this.fm = fm;
+      this.lm = lm;
       this.bm = bm;
+      this.tempbm = tempbm;
       txnum       = nextTxNumber();
       recoveryMgr = new RecoveryMgr(this, txnum, lm, bm);
       concurMgr   = new ConcurrencyMgr();
@@ -61,13 +83,19 @@ public class Transaction {
     * Undo any modified values,
     * flush those buffers,
     * write and flush a rollback record to the log,
-    * release all locks, and unpin any pinned buffers.
+    * unpin any pinned buffers,
+    * undo any changes to the block size or compression
+    * of a file, and release all locks.
     */
    public void rollback() {
       recoveryMgr.rollback();
       System.out.println("transaction " + txnum + " rolled back");
-      concurMgr.release();
       mybuffers.unpinAll();
+      List<Runnable> undos = new ArrayList<>(fileUndos.values());
+      for (int i = undos.size() - 1; i >= 0; i--)
+         undos.get(i).run();
+      fileUndos.clear();
+      concurMgr.release();
    }
    
    /**
@@ -89,7 +117,55 @@ public class Transaction {
     * @param blk a reference to the disk block
     */
    public void pin(BlockId blk) {
-      mybuffers.pin(blk);
+      mybuffers.pin(blk, null);
+   }
+   
+   /**
+    * Pin the specified block through the specified buffer ring.
+    * If the block is not buffered and the ring is full, the
+    * block reuses one of the ring's buffers instead of pushing
+    * another block out of the pool.
+    * @param blk a reference to the disk block
+    * @param ring the ring of the scan, or null to use the whole pool
+    * @see BufferRing
+    */
+   public void pin(BlockId blk, BufferRing ring) {
+      mybuffers.pin(blk, ring);
+   }
+   
+   /**
+    * Create a buffer ring for a scan that reads or writes
+    * each block of a large file once.
+    * @return a new buffer ring
+    */
+   public BufferRing newBufferRing() {
+      return bm.newRing();
+   }
+   
+   /**
+    * Pin the specified number of consecutive blocks,
+    * starting at the specified block.
+    * The blocks that are not already buffered are read
+    * together, with a single scatter read per run.
+    * Each block must later be unpinned individually.
+    * @param first a reference to the first disk block
+    * @param count the number of consecutive blocks
+    */
+   public void pin(BlockId first, int count) {
+      mybuffers.pin(first, count);
+   }
+   
+   /**
+    * Hint that the transaction is about to read the specified
+    * number of consecutive blocks, starting at the specified block.
+    * The buffer manager starts reading the blocks that are not
+    * already buffered in the background, without pinning them,
+    * so a later pin finds them buffered.
+    * @param first a reference to the first disk block
+    * @param count the number of consecutive blocks
+    */
+   public void prefetch(BlockId first, int count) {
+      bm.prefetch(first, count);
    }
    
    /**
@@ -132,6 +208,68 @@ public class Transaction {
       return buff.contents().getString(offset);
    }
    
+   /**
+    * Return the long value stored at the
+    * specified offset of the specified block.
+    * Bigints, dates and timestamps are stored as longs.
+    * The method first obtains an SLock on the block.
+    * @param blk a reference to a disk block
+    * @param offset the byte offset within the block
+    * @return the long stored at that offset
+    */
+   public long getLong(BlockId blk, int offset) {
+      concurMgr.sLock(blk);
+      Buffer buff = mybuffers.getBuffer(blk);
+      return buff.contents().getLong(offset);
+   }
+   
+   /**
+    * Return the double value stored at the
+    * specified offset of the specified block.
+    * The method first obtains an SLock on the block.
+    * @param blk a reference to a disk block
+    * @param offset the byte offset within the block
+    * @return the double stored at that offset
+    */
+   public double getDouble(BlockId blk, int offset) {
+      concurMgr.sLock(blk);
+      Buffer buff = mybuffers.getBuffer(blk);
+      return buff.contents().getDouble(offset);
+   }
+   
+   /**
+    * Compare the string stored at the specified offset
+    * of the specified block with an encoded string,
+    * without decoding the stored value.
+    * The method first obtains an SLock on the block.
+    * @param blk a reference to a disk block
+    * @param offset the byte offset within the block
+    * @param key the encoded string to compare against
+    * @return a negative, zero, or positive value as the stored string
+    *         is less than, equal to, or greater than the key
+    * @see Page#compareString(int, byte[])
+    */
+   public int compareString(BlockId blk, int offset, byte[] key) {
+      concurMgr.sLock(blk);
+      Buffer buff = mybuffers.getBuffer(blk);
+      return buff.contents().compareString(offset, key);
+   }
+   
+   /**
+    * Return true if the string stored at the specified offset
+    * of the specified block equals an encoded string.
+    * The method first obtains an SLock on the block.
+    * @param blk a reference to a disk block
+    * @param offset the byte offset within the block
+    * @param key the encoded string to compare against
+    * @return true if the stored string equals the key
+    */
+   public boolean stringEquals(BlockId blk, int offset, byte[] key) {
+      concurMgr.sLock(blk);
+      Buffer buff = mybuffers.getBuffer(blk);
+      return buff.contents().stringEquals(offset, key);
+   }
+   
    /**
     * Store an integer at the specified offset 
     * of the specified block.
@@ -156,6 +294,45 @@ public class Transaction {
       buff.setModified(txnum, lsn);
    }
    
+   /**
+    * Store a long at the specified offset
+    * of the specified block, logging the previous value
+    * as setInt does.
+    * @param blk a reference to the disk block
+    * @param offset a byte offset within that block
+    * @param val the value to be stored
+    */
+   public void setLong(BlockId blk, int offset, long val, boolean okToLog) {
+      concurMgr.xLock(blk);
+      Buffer buff = mybuffers.getBuffer(blk);
+      int lsn = -1;
+      if (okToLog)
+         lsn = recoveryMgr.setLong(buff, offset);
+      Page p = buff.contents();
+      p.setLong(offset, val);
+      buff.setModified(txnum, lsn);
+   }
+   
+   /**
+    * Store a double at the specified offset
+    * of the specified block.
+    * The previous value is logged as the 8 raw bytes
+    * of a setlong record, which undo restores unchanged.
+    * @param blk a reference to the disk block
+    * @param offset a byte offset within that block
+    * @param val the value to be stored
+    */
+   public void setDouble(BlockId blk, int offset, double val, boolean okToLog) {
+      concurMgr.xLock(blk);
+      Buffer buff = mybuffers.getBuffer(blk);
+      int lsn = -1;
+      if (okToLog)
+         lsn = recoveryMgr.setLong(buff, offset);
+      Page p = buff.contents();
+      p.setDouble(offset, val);
+      buff.setModified(txnum, lsn);
+   }
+   
    /**
     * Store a string at the specified offset 
     * of the specified block.
@@ -208,14 +385,131 @@ public class Transaction {
       return fm.append(filename);
    }
    
+   /**
+    * Store the blocks of the specified file compressed.
+    * The file must not have any blocks yet.
+    * This method first obtains an XLock on the
+    * "end of the file", as {@link #append(String)} does.
+    * The file manager stores the file compressed at once;
+    * if the transaction rolls back, the file is dropped
+    * as described in {@link #setBlockSize(String, int)}.
+    * @param filename the name of the file
+    */
+   public void setCompressed(String filename) {
+      BlockId dummyblk = new BlockId(filename, END_OF_FILE);
+      concurMgr.xLock(dummyblk);
+      if (!fm.isCompressed(filename))
+         rememberFileSettings(filename);
+      fm.setCompressed(filename);
+   }
+   
+   /**
+    * Set the block size of the specified file.
+    * The file must not have any blocks yet.
+    * This method first obtains an XLock on the
+    * "end of the file", as {@link #append(String)} does.
+    * The file manager uses the new size at once, since
+    * the transaction goes on to append blocks of that size.
+    * If the transaction rolls back, the blocks it appended
+    * hold nothing, so the file is dropped and its previous
+    * block size and compression are restored.
+    * @param filename the name of the file
+    * @param blocksize the size of the file's blocks
+    */
+   public void setBlockSize(String filename, int blocksize) {
+      BlockId dummyblk = new BlockId(filename, END_OF_FILE);
+      concurMgr.xLock(dummyblk);
+      if (blocksize != fm.blockSize(filename))
+         rememberFileSettings(filename);
+      fm.setBlockSize(filename, blocksize);
+   }
+   
+   /**
+    * Register the undo action of the specified file, which is
+    * still empty, the first time this transaction changes its
+    * block size or compression. The action runs on rollback,
+    * once the file's buffers are unpinned; the XLock on the
+    * end of the file keeps other transactions out of it.
+    * @param filename the name of the file
+    */
+   private void rememberFileSettings(String filename) {
+      if (fileUndos.containsKey(filename))
+         return;
+      int blocksize = fm.blockSize(filename);
+      boolean compressed = fm.isCompressed(filename);
+      fileUndos.put(filename, () -> {
+         bm.discard(filename);
+         fm.delete(filename);
+         fm.setBlockSize(filename, blocksize);
+         if (compressed)
+            fm.setCompressed(filename);
+      });
+   }
+   
    public int blockSize() {
       return fm.blockSize();
    }
    
+   /**
+    * Return the block size of the specified file,
+    * which is the default block size unless
+    * {@link #setBlockSize(String, int)} has changed it.
+    * @param filename the name of the file
+    * @return the size of the file's blocks
+    */
+   public int blockSize(String filename) {
+      return fm.blockSize(filename);
+   }
+   
    public int availableBuffs() {
       return bm.available();
    }
    
+   /**
+    * Return the number of buffers in the buffer pool,
+    * pinned or not.
+    * @return the size of the buffer pool
+    */
+   public int bufferPoolSize() {
+      return bm.poolSize();
+   }
+   
+   /**
+    * Return how many of the specified number of consecutive
+    * blocks, starting at the specified block, the buffer pool
+    * could pin right now. A block can only use the buffers of
+    * its own partition of the pool, so this can be less than
+    * {@link #availableBuffs()}.
+    * @param first a reference to the first disk block
+    * @param count the number of consecutive blocks
+    * @return the length of the longest run of blocks that could be pinned
+    */
+   public int availableBuffs(BlockId first, int count) {
+      return bm.available(first, count);
+   }
+   
+   /**
+    * Return the buffer manager of the temporary tables.
+    * Temporary tables bypass the transaction:
+    * their blocks are not locked and their changes are not logged.
+    * @return the buffer manager of the temporary tables
+    */
+   public TempBufferMgr tempBufferMgr() {
+      if (tempbm == null)
+         tempbm = new TempBufferMgr(fm, lm, 8);
+      return tempbm;
+   }
+   
+   /**
+    * Detach the unpinned buffers of the main pool that hold
+    * blocks of the specified file, without writing them,
+    * because the file is about to be deleted.
+    * @param filename the name of the file
+    */
+   public void discardBuffers(String filename) {
+      bm.discard(filename);
+   }
+   
    private static synchronized int nextTxNumber() {
       nextTxNum++;
       return nextTxNum;
@@ -2,6 +2,7 @@ package simpledb.tx.concurrency;
 
 import java.util.*;
 import simpledb.file.BlockId;
+import simpledb.file.LatencyHistogram;
 
 /**
  * The concurrency manager for the transaction.
@@ -12,6 +13,11 @@ import simpledb.file.BlockId;
  * @author Edward Sciore
  */
 public class ConcurrencyMgr {
+   /**
+    * How long a transaction waits for a lock before giving up
+    * with a {@link LockAbortException}
+    */
+   public static long MAX_WAIT_MILLIS = 10000;
 
    /**
     * The global lock table. This variable is static because 
@@ -58,6 +64,25 @@ public class ConcurrencyMgr {
       locks.clear();
    }
 
+   /**
+    * Return how long the lock requests of all transactions
+    * that had to wait waited, whether they got their lock or not.
+    * Requests that did not wait are not recorded.
+    * @return the histogram of the waiting times
+    */
+   public static LatencyHistogram lockWaits() {
+      return locktbl.waits();
+   }
+
+   /**
+    * Return the number of lock requests of all transactions
+    * that gave up waiting.
+    * @return the number of timeouts
+    */
+   public static long lockTimeouts() {
+      return locktbl.timeouts();
+   }
+
    private boolean hasXLock(BlockId blk) {
       String locktype = locks.get(blk);
       return locktype != null && locktype.equals("X");
@@ -1,103 +1,217 @@
 package simpledb.tx.concurrency;
 
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import simpledb.file.BlockId;
+import simpledb.file.LatencyHistogram;
 
 /**
  * The lock table, which provides methods to lock and unlock blocks.
  * If a transaction requests a lock that causes a conflict with an
- * existing lock, then that transaction is placed on a wait list.
- * There is only one wait list for all blocks.
- * When the last lock on a block is unlocked, then all transactions
- * are removed from the wait list and rescheduled.
- * If one of those transactions discovers that the lock it is waiting for
- * is still locked, it will place itself back on the wait list.
+ * existing lock, then that transaction is placed at the end of
+ * the block's wait list.
+ * Each block has its own wait list, and the waiting transactions
+ * get their locks in the order in which they asked for them:
+ * when a lock is released, the transactions at the head of the
+ * block's list whose locks have become compatible are granted
+ * their locks and woken, and nobody else is disturbed.
+ * <p>
+ * An SLock is granted whenever no XLock is held, even if a
+ * transaction is waiting to upgrade its SLock to an XLock:
+ * the upgrade waits for the SLocks already held in any case,
+ * and a reader that holds locks the other readers are waiting
+ * for would otherwise deadlock behind it.
+ * A transaction that waits longer than
+ * {@link ConcurrencyMgr#MAX_WAIT_MILLIS} leaves the list
+ * and gets a {@link LockAbortException}.
+ * <p>
+ * The table is guarded by a {@link ReentrantLock} rather than by
+ * synchronized methods, so a transaction running on a virtual
+ * thread does not hold on to its carrier thread while it waits.
  * @author Edward Sciore
  */
 class LockTable {
-   private static final long MAX_TIME = 10000; // 10 seconds
-   
+   private ReentrantLock mutex = new ReentrantLock();
    private Map<BlockId,Integer> locks = new HashMap<BlockId,Integer>();
-   
+   private Map<BlockId,ArrayDeque<Waiter>> waiting = new HashMap<BlockId,ArrayDeque<Waiter>>();
+   private LatencyHistogram waits = new LatencyHistogram();
+   private LongAdder timeouts = new LongAdder();
+
    /**
     * Grant an SLock on the specified block.
     * If an XLock exists when the method is called,
-    * then the calling thread will be placed on a wait list
-    * until the lock is released.
-    * If the thread remains on the wait list for a certain 
-    * amount of time (currently 10 seconds),
+    * then the calling thread will be placed on the
+    * block's wait list until it gets the lock.
+    * If the thread remains on the wait list for too long
+    * (see {@link ConcurrencyMgr#MAX_WAIT_MILLIS}),
     * then an exception is thrown.
     * @param blk a reference to the disk block
     */
-   public synchronized void sLock(BlockId blk) {
+   public void sLock(BlockId blk) {
+      mutex.lock();
       try {
-         long timestamp = System.currentTimeMillis();
-         while (hasXlock(blk) && !waitingTooLong(timestamp))
-            wait(MAX_TIME);
-         if (hasXlock(blk))
-            throw new LockAbortException();
-         int val = getLockVal(blk);  // will not be negative
-         locks.put(blk, val+1);
+         if (!hasXlock(blk)) {
+            int val = getLockVal(blk);  // will not be negative
+            locks.put(blk, val+1);
+         }
+         else
+            await(blk, new Waiter(false));
       }
-      catch(InterruptedException e) {
-         throw new LockAbortException();
+      finally {
+         mutex.unlock();
       }
    }
-   
+
    /**
     * Grant an XLock on the specified block.
     * If a lock of any type exists when the method is called,
-    * then the calling thread will be placed on a wait list
-    * until the locks are released.
-    * If the thread remains on the wait list for a certain 
-    * amount of time (currently 10 seconds),
+    * or other transactions are waiting for the block,
+    * then the calling thread will be placed on the
+    * block's wait list until it gets the lock.
+    * If the thread remains on the wait list for too long
+    * (see {@link ConcurrencyMgr#MAX_WAIT_MILLIS}),
     * then an exception is thrown.
     * @param blk a reference to the disk block
     */
-   synchronized void xLock(BlockId blk) {
+   void xLock(BlockId blk) {
+      mutex.lock();
       try {
-         long timestamp = System.currentTimeMillis();
-         while (hasOtherSLocks(blk) && !waitingTooLong(timestamp))
-            wait(MAX_TIME);
-         if (hasOtherSLocks(blk))
-            throw new LockAbortException();
-         locks.put(blk, -1);
+         if (!hasOtherSLocks(blk) && !waiting.containsKey(blk))
+            locks.put(blk, -1);
+         else
+            await(blk, new Waiter(true));
       }
-      catch(InterruptedException e) {
-         throw new LockAbortException();
+      finally {
+         mutex.unlock();
       }
    }
-   
+
    /**
     * Release a lock on the specified block.
-    * If this lock is the last lock on that block,
-    * then the waiting transactions are notified.
+    * If this makes the locks of the first waiting
+    * transactions compatible, they get their locks.
     * @param blk a reference to the disk block
     */
-   synchronized void unlock(BlockId blk) {
-      int val = getLockVal(blk);
-      if (val > 1)
-         locks.put(blk, val-1);
-      else {
-         locks.remove(blk);
-         notifyAll();
+   void unlock(BlockId blk) {
+      mutex.lock();
+      try {
+         int val = getLockVal(blk);
+         if (val > 1)
+            locks.put(blk, val-1);
+         else
+            locks.remove(blk);
+         grant(blk);
       }
+      finally {
+         mutex.unlock();
+      }
+   }
+
+   /**
+    * Return how long the lock requests that had to wait waited,
+    * whether they got their lock or not.
+    * @return the histogram of the waiting times
+    */
+   LatencyHistogram waits() {
+      return waits;
    }
-   
+
+   /**
+    * Return the number of lock requests that gave up waiting.
+    * @return the number of timeouts
+    */
+   long timeouts() {
+      return timeouts.sum();
+   }
+
+   /**
+    * Put the waiter at the end of the block's wait list
+    * and wait until it is granted its lock.
+    * The caller holds the mutex.
+    */
+   private void await(BlockId blk, Waiter w) {
+      waiting.computeIfAbsent(blk, b -> new ArrayDeque<Waiter>()).addLast(w);
+      long start = System.nanoTime();
+      long nanos = ConcurrencyMgr.MAX_WAIT_MILLIS * 1_000_000;
+      try {
+         while (!w.granted) {
+            if (nanos <= 0) {
+               timeouts.increment();
+               abandon(blk, w);
+            }
+            nanos = w.ready.awaitNanos(nanos);
+         }
+      }
+      catch(InterruptedException e) {
+         if (!w.granted)
+            abandon(blk, w);
+         Thread.currentThread().interrupt();
+      }
+      finally {
+         waits.record(System.nanoTime() - start);
+      }
+   }
+
+   /**
+    * Take the waiter off the block's wait list,
+    * letting the waiters behind it have their turn.
+    */
+   private void abandon(BlockId blk, Waiter w) {
+      ArrayDeque<Waiter> queue = waiting.get(blk);
+      queue.remove(w);
+      if (queue.isEmpty())
+         waiting.remove(blk);
+      grant(blk);
+      throw new LockAbortException();
+   }
+
+   /**
+    * Grant their locks to the waiters at the head of the
+    * block's wait list, as long as their locks are compatible
+    * with the locks already held.
+    */
+   private void grant(BlockId blk) {
+      ArrayDeque<Waiter> queue = waiting.get(blk);
+      if (queue == null)
+         return;
+      while (!queue.isEmpty()) {
+         Waiter w = queue.peekFirst();
+         if (w.exclusive ? hasOtherSLocks(blk) : hasXlock(blk))
+            break;
+         queue.removeFirst();
+         locks.put(blk, w.exclusive ? -1 : getLockVal(blk)+1);
+         w.granted = true;
+         w.ready.signal();
+      }
+      if (queue.isEmpty())
+         waiting.remove(blk);
+   }
+
    private boolean hasXlock(BlockId blk) {
       return getLockVal(blk) < 0;
    }
-   
+
    private boolean hasOtherSLocks(BlockId blk) {
       return getLockVal(blk) > 1;
    }
-   
-   private boolean waitingTooLong(long starttime) {
-      return System.currentTimeMillis() - starttime > MAX_TIME;
-   }
-   
+
    private int getLockVal(BlockId blk) {
       Integer ival = locks.get(blk);
       return (ival == null) ? 0 : ival.intValue();
    }
+
+   /**
+    * A transaction waiting for a lock on a block.
+    */
+   private class Waiter {
+      boolean exclusive;
+      boolean granted = false;
+      Condition ready = mutex.newCondition();
+
+      Waiter(boolean exclusive) {
+         this.exclusive = exclusive;
+      }
+   }
 }
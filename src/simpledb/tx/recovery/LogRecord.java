@@ -11,7 +11,7 @@ import simpledb.tx.Transaction;
 public interface LogRecord {
     static final int CHECKPOINT = 0, START = 1,
             COMMIT = 2, ROLLBACK = 3,
-            SETINT = 4, SETSTRING = 5;
+            SETINT = 4, SETSTRING = 5, SETLONG = 6;
 
     /**
      * Returns the log record's type.
@@ -31,7 +31,7 @@ public interface LogRecord {
     /**
      * Undoes the operation encoded by this log record.
      * The only log record types for which this method
-     * does anything interesting are SETINT and SETSTRING.
+     * does anything interesting are SETINT, SETSTRING and SETLONG.
      *
      * @param txnum the id of the transaction that is performing the undo.
      */
@@ -58,6 +58,8 @@ public interface LogRecord {
                 return new SetIntRecord(p);
             case SETSTRING:
                 return new SetStringRecord(p);
+            case SETLONG:
+                return new SetLongRecord(p);
             default:
                 return null;
         }
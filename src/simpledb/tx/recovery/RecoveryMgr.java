@@ -79,6 +79,20 @@ public class RecoveryMgr {
         return SetIntRecord.writeToLog(lm, txnum, blk, offset, oldval);
     }
 
+    /**
+     * Write a setlong record to the log and return its lsn.
+     * The record saves the 8 bytes at the offset,
+     * so it also serves doubles, dates and timestamps.
+     *
+     * @param buff   the buffer containing the page
+     * @param offset the offset of the value in the page
+     */
+    public int setLong(Buffer buff, int offset) {
+        long oldval = buff.contents().getLong(offset);
+        BlockId blk = buff.block();
+        return SetLongRecord.writeToLog(lm, txnum, blk, offset, oldval);
+    }
+
     /**
      * Write a setstring record to the log and return its lsn.
      *
@@ -0,0 +1,83 @@
+package simpledb.tx.recovery;
+
+import simpledb.file.*;
+import simpledb.log.LogMgr;
+import simpledb.tx.Transaction;
+
+/**
+ * The log record for an 8-byte value: a bigint, a date or timestamp
+ * (epoch milliseconds), or the raw bits of a double.
+ */
+public class SetLongRecord implements LogRecord {
+   private int txnum, offset;
+   private long val;
+   private BlockId blk;
+
+   /**
+    * Create a new setlong log record.
+    * @param p the page containing the log values
+    */
+   public SetLongRecord(Page p) {
+      int tpos = Integer.BYTES;
+      txnum = p.getInt(tpos);
+      int fpos = tpos + Integer.BYTES;
+      String filename = p.getString(fpos);
+      int bpos = fpos + Page.maxLength(filename.length());
+      int blknum = p.getInt(bpos);
+      blk = new BlockId(filename, blknum);
+      int opos = bpos + Integer.BYTES;
+      offset = p.getInt(opos);
+      int vpos = opos + Integer.BYTES;
+      val = p.getLong(vpos);
+   }
+
+   public int op() {
+      return SETLONG;
+   }
+
+   public int txNumber() {
+      return txnum;
+   }
+
+   public String toString() {
+      return "<SETLONG " + txnum + " " + blk + " " + offset + " " + val + ">";
+   }
+
+   /**
+    * Replace the specified data value with the value saved in the log record.
+    * The method pins a buffer to the specified block,
+    * calls setLong to restore the saved value,
+    * and unpins the buffer.
+    * @see LogRecord#undo(Transaction)
+    */
+   public void undo(Transaction tx) {
+      tx.pin(blk);
+      tx.setLong(blk, offset, val, false); // don't log the undo!
+      tx.unpin(blk);
+   }
+
+   /**
+    * A static method to write a setLong record to the log.
+    * This log record contains the SETLONG operator,
+    * followed by the transaction id, the filename, number,
+    * and offset of the modified block, and the previous
+    * 8-byte value at that offset.
+    * @return the LSN of the last log value
+    */
+   public static int writeToLog(LogMgr lm, int txnum, BlockId blk, int offset, long val) {
+      int tpos = Integer.BYTES;
+      int fpos = tpos + Integer.BYTES;
+      int bpos = fpos + Page.maxLength(blk.fileName().length());
+      int opos = bpos + Integer.BYTES;
+      int vpos = opos + Integer.BYTES;
+      byte[] rec = new byte[vpos + Long.BYTES];
+      Page p = new Page(rec);
+      p.setInt(0, SETLONG);
+      p.setInt(tpos, txnum);
+      p.setString(fpos, blk.fileName());
+      p.setInt(bpos, blk.number());
+      p.setInt(opos, offset);
+      p.setLong(vpos, val);
+      return lm.append(rec);
+   }
+}